@@ -0,0 +1,342 @@
+package core;
+
+import lombok.Getter;
+import org.joml.Vector3f;
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Stores the last levels of an octree as dense bricks of brickSize^3 voxels, instead of indirection grids down to
+ * max depth, as described in https://developer.nvidia.com/gpugems/GPUGems2/gpugems2_chapter37.html
+ *
+ * The levels above the bricks are nodes of 8 cells in the {@link WideCellEncoding}, with the root node first.
+ * A node at depth maxDepth - brickDepth that is not empty becomes a BRICK cell that points into the brick pool.
+ * A brick stores its voxels in x, y, z order, as encoded DATA cells or 0 for empty voxels. Traversal steps from
+ * voxel to voxel within a brick (DDA) instead of descending from the root for every voxel.
+ *
+ * Dense surfaces need no pointers for the last levels, but bricks also store the empty voxels around a surface.
+ * With a brick depth of 0 there are no bricks, and the nodes are the same as the octree.
+ */
+public class BrickMap {
+
+    @Getter
+    private final int maxDepth;
+    /** Number of levels stored in a brick */
+    @Getter
+    private final int brickDepth;
+    /** Voxels along each axis of a brick, 2^brickDepth */
+    @Getter
+    private final int brickSize;
+
+    private int[] nodes = new int[8 * 64];
+    @Getter
+    private int numNodes = 0;
+    private int[] bricks;
+    @Getter
+    private int numBricks = 0;
+
+    private final ArrayList<IndirectionGrid> pool;
+    /**
+     * The encoded node or brick of every grid of the pool, so that grids shared by a DAG are stored once per depth.
+     * Whether a grid becomes a brick depends on its depth, and a DAG can share a grid between depths, for example a
+     * leaf grid and a grid of collapsed subtrees higher up. The first depth of a grid is stored with it, other
+     * depths in a map
+     */
+    private final int[] encodedGrids;
+    private final int[] encodedDepths;
+    /** Encodings of grids at other depths than in encodedGrids, by grid index and depth, see {@link #getKey} */
+    private final HashMap<Long, Integer> encodedGridsAtOtherDepths = new HashMap<>();
+
+    /**
+     * Counts the work done by {@link #trace(Vector3f, Vector3f, TraversalSteps)}
+     */
+    public static class TraversalSteps {
+        /** Cells looked up while descending the nodes */
+        public long nodeVisits;
+        /** Voxels looked up while stepping through bricks */
+        public long brickSteps;
+    }
+
+    private BrickMap(SVO svo, int brickDepth) {
+        this.maxDepth = svo.getMaxDepth();
+        this.brickDepth = brickDepth;
+        this.brickSize = 1 << brickDepth;
+        this.pool = svo.getIndirectionPool();
+        this.encodedGrids = new int[pool.size()];
+        this.encodedDepths = new int[pool.size()];
+        this.bricks = new int[16 * brickSize * brickSize * brickSize];
+    }
+
+    /**
+     * @param brickDepth Number of levels stored in a brick: 2 for bricks of 4^3 voxels, 3 for 8^3 voxels,
+     *                   or 0 for none. Must be less than the max depth
+     */
+    public static BrickMap create(SVO svo, int brickDepth) {
+        if (brickDepth < 0 || brickDepth >= svo.getMaxDepth()) {
+            throw new IllegalArgumentException("Brick depth " + brickDepth + " must be between 0 and max depth " + svo.getMaxDepth());
+        }
+        if (svo.isSymmetricDag()) {
+            throw new IllegalStateException("Reflected grids of a symmetric DAG cannot be stored as nodes or bricks");
+        }
+        BrickMap brickMap = new BrickMap(svo, brickDepth);
+        if (svo.getIndirectionPool().isEmpty()) {
+            brickMap.numNodes = 1;
+        } else {
+            brickMap.writeNode(0, 0);
+        }
+        return brickMap;
+    }
+
+    /**
+     * @param depth Depth of the node of the grid, the root node is at depth 0
+     * @return Index of the new node
+     */
+    private int writeNode(int igIndex, int depth) {
+        int node = numNodes++;
+        if (8 * numNodes > nodes.length) {
+            nodes = Arrays.copyOf(nodes, 2 * nodes.length);
+        }
+
+        Cell[] children = pool.get(igIndex).getChildren();
+        for (int i = 0; i < 8; i++) {
+            // Writing children may grow the array, so it is indexed afterwards
+            int value = encodeChild(children[i], depth + 1);
+            nodes[8 * node + i] = value;
+        }
+        return node;
+    }
+
+    private int encodeChild(Cell cell, int depth) {
+        switch (cell.getNodeType()) {
+            case DATA:
+                return WideCellEncoding.encodeData(cell.getRGB());
+            case INDEX:
+                int igIndex = cell.getPointer();
+                if (encodedGrids[igIndex] == 0) {
+                    encodedDepths[igIndex] = depth;
+                    encodedGrids[igIndex] = encodeGrid(igIndex, depth);
+                    return encodedGrids[igIndex];
+                }
+                if (encodedDepths[igIndex] == depth) {
+                    return encodedGrids[igIndex];
+                }
+                // Not computeIfAbsent, since encoding the grid adds the grids below it to the map
+                Integer encoded = encodedGridsAtOtherDepths.get(getKey(igIndex, depth));
+                if (encoded == null) {
+                    encoded = encodeGrid(igIndex, depth);
+                    encodedGridsAtOtherDepths.put(getKey(igIndex, depth), encoded);
+                }
+                return encoded;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * @param depth Depth of the INDEX cell that points to the grid
+     */
+    private int encodeGrid(int igIndex, int depth) {
+        return depth == maxDepth - brickDepth
+                ? WideCellEncoding.encodeBrick(writeBrick(igIndex))
+                : WideCellEncoding.encodeIndex(writeNode(igIndex, depth));
+    }
+
+    private static long getKey(int igIndex, int depth) {
+        return (long) igIndex << 8 | depth;
+    }
+
+    /**
+     * @return Index of the new brick
+     */
+    private int writeBrick(int igIndex) {
+        int brick = numBricks++;
+        int brickVolume = brickSize * brickSize * brickSize;
+        if (numBricks * brickVolume > bricks.length) {
+            bricks = Arrays.copyOf(bricks, 2 * bricks.length);
+        }
+        fillBrick(brick * brickVolume, igIndex, 0, 0, 0, brickSize / 2);
+        return brick;
+    }
+
+    /**
+     * Writes the voxels of the subtree of a grid into a brick
+     * @param x, y, z Position of the grid within the brick
+     * @param childSize Voxels along each axis of a child of the grid
+     */
+    private void fillBrick(int brickStart, int igIndex, int x, int y, int z, int childSize) {
+        Cell[] children = pool.get(igIndex).getChildren();
+        for (int i = 0; i < 8; i++) {
+            int childX = x + (i & 1) * childSize, childY = y + ((i >> 1) & 1) * childSize, childZ = z + ((i >> 2) & 1) * childSize;
+            if (children[i].getNodeType() == Cell.NodeType.INDEX) {
+                fillBrick(brickStart, children[i].getPointer(), childX, childY, childZ, childSize / 2);
+            } else if (children[i].getNodeType() == Cell.NodeType.DATA) {
+                // A data cell above max depth fills its whole box
+                int value = WideCellEncoding.encodeData(children[i].getRGB());
+                for (int dz = 0; dz < childSize; dz++) {
+                    for (int dy = 0; dy < childSize; dy++) {
+                        int start = brickStart + getBrickIndex(childX, childY + dy, childZ + dz);
+                        Arrays.fill(bricks, start, start + childSize, value);
+                    }
+                }
+            }
+        }
+    }
+
+    private int getBrickIndex(int x, int y, int z) {
+        return x + brickSize * (y + brickSize * z);
+    }
+
+    /**
+     * @param x, y, z Coordinates of a voxel, between 0 and 2^maxDepth
+     * @return The encoded DATA cell of the voxel, or 0 if it is empty
+     */
+    public int lookup(int x, int y, int z) {
+        int node = 0;
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            int shift = maxDepth - depth;
+            int child = ((x >> shift) & 1) + 2 * ((y >> shift) & 1) + 4 * ((z >> shift) & 1);
+            int value = nodes[8 * node + child];
+            switch (WideCellEncoding.getType(value)) {
+                case WideCellEncoding.TYPE_INDEX:
+                    node = WideCellEncoding.getPointer(value);
+                    break;
+                case WideCellEncoding.TYPE_BRICK:
+                    int mask = brickSize - 1;
+                    int brickStart = WideCellEncoding.getPointer(value) * brickSize * brickSize * brickSize;
+                    return bricks[brickStart + getBrickIndex(x & mask, y & mask, z & mask)];
+                default:
+                    return value;
+            }
+        }
+        throw new IllegalStateException("INDEX cell below max depth " + maxDepth);
+    }
+
+    /**
+     * Traces a ray through the unit cube in the same way as treeLookupBrick in the shader: descends the nodes at
+     * the current position, steps through the voxels of a brick, and continues behind the box that was found
+     * @param steps Is incremented by the number of node visits and brick steps
+     * @return The encoded DATA cell of the first voxel that the ray hits, or 0 if it hits nothing
+     */
+    public int trace(Vector3f origin, Vector3f dir, TraversalSteps steps) {
+        float[] d = { dir.x, dir.y, dir.z };
+        float[] pos = { origin.x, origin.y, origin.z };
+        float[] boxStart = new float[3];
+
+        // Start where the ray enters the unit cube
+        float tEnter = 0, tExit = Float.MAX_VALUE;
+        for (int a = 0; a < 3; a++) {
+            float t0 = -pos[a] / d[a], t1 = (1 - pos[a]) / d[a];
+            tEnter = Math.max(tEnter, Math.min(t0, t1));
+            tExit = Math.min(tExit, Math.max(t0, t1));
+        }
+        if (tEnter > tExit) return 0;
+        for (int a = 0; a < 3; a++) pos[a] += d[a] * tEnter;
+
+        while (isInUnitCube(pos)) {
+            int node = 0;
+            float size = 1;
+            boxStart[0] = boxStart[1] = boxStart[2] = 0;
+            int value = 0;
+            for (int depth = 1; depth <= maxDepth; depth++) {
+                size /= 2;
+                int child = 0;
+                for (int a = 0; a < 3; a++) {
+                    int offset = pos[a] - boxStart[a] >= size ? 1 : 0;
+                    boxStart[a] += offset * size;
+                    child |= offset << a;
+                }
+                steps.nodeVisits++;
+                value = nodes[8 * node + child];
+                if (WideCellEncoding.getType(value) != WideCellEncoding.TYPE_INDEX) break;
+                node = WideCellEncoding.getPointer(value);
+            }
+
+            if (WideCellEncoding.getType(value) == WideCellEncoding.TYPE_DATA) return value;
+            if (WideCellEncoding.getType(value) == WideCellEncoding.TYPE_BRICK) {
+                int hit = traceBrick(WideCellEncoding.getPointer(value), pos, d, boxStart, size, steps);
+                if (hit != 0) return hit;
+            }
+
+            // Continue just behind the box of the empty cell or brick
+            float tBox = Float.MAX_VALUE;
+            for (int a = 0; a < 3; a++) {
+                if (d[a] > 0) tBox = Math.min(tBox, (boxStart[a] + size - pos[a]) / d[a]);
+                else if (d[a] < 0) tBox = Math.min(tBox, (boxStart[a] - pos[a]) / d[a]);
+            }
+            for (int a = 0; a < 3; a++) pos[a] += d[a] * tBox + Math.signum(d[a]) * 1e-6f;
+        }
+        return 0;
+    }
+
+    /**
+     * Steps through the voxels of a brick along the ray, starting at the voxel of the current position
+     * @return The first voxel that is not empty, or 0 if the ray leaves the brick
+     */
+    private int traceBrick(int brick, float[] pos, float[] d, float[] boxStart, float size, TraversalSteps steps) {
+        int brickStart = brick * brickSize * brickSize * brickSize;
+        float voxelSize = size / brickSize;
+        int[] voxel = new int[3], step = new int[3];
+        float[] tMax = new float[3], tDelta = new float[3];
+        for (int a = 0; a < 3; a++) {
+            voxel[a] = Math.max(0, Math.min(brickSize - 1, (int) ((pos[a] - boxStart[a]) / voxelSize)));
+            if (d[a] != 0) {
+                step[a] = d[a] > 0 ? 1 : -1;
+                float boundary = boxStart[a] + (voxel[a] + (d[a] > 0 ? 1 : 0)) * voxelSize;
+                tMax[a] = (boundary - pos[a]) / d[a];
+                tDelta[a] = voxelSize / Math.abs(d[a]);
+            } else {
+                tMax[a] = Float.MAX_VALUE;
+            }
+        }
+
+        while (true) {
+            steps.brickSteps++;
+            int value = bricks[brickStart + getBrickIndex(voxel[0], voxel[1], voxel[2])];
+            if (value != 0) return value;
+
+            // Step along the axis with the nearest voxel boundary
+            int a = tMax[0] < tMax[1] ? (tMax[0] < tMax[2] ? 0 : 2) : (tMax[1] < tMax[2] ? 1 : 2);
+            voxel[a] += step[a];
+            if (voxel[a] < 0 || voxel[a] >= brickSize) return 0;
+            tMax[a] += tDelta[a];
+        }
+    }
+
+    private static boolean isInUnitCube(float[] p) {
+        return p[0] >= 0 && p[1] >= 0 && p[2] >= 0 && p[0] < 1 && p[1] < 1 && p[2] < 1;
+    }
+
+    public long getNodeBytes() {
+        return 4L * 8 * numNodes;
+    }
+
+    public long getBrickBytes() {
+        return 4L * numBricks * brickSize * brickSize * brickSize;
+    }
+
+    /**
+     * @return The nodes as uints for a shader storage buffer, in a direct little endian buffer
+     */
+    public ByteBuffer getNodeData() {
+        return toByteBuffer(nodes, 8 * numNodes);
+    }
+
+    /**
+     * @return The voxels of all bricks as uints for a shader storage buffer, in a direct little endian buffer
+     */
+    public ByteBuffer getBrickData() {
+        // Buffers cannot be empty
+        return toByteBuffer(bricks, Math.max(1, numBricks * brickSize * brickSize * brickSize));
+    }
+
+    private static ByteBuffer toByteBuffer(int[] values, int length) {
+        ByteBuffer buffer = BufferUtils.createByteBuffer(4 * length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asIntBuffer().put(values, 0, length);
+        return buffer;
+    }
+}
@@ -1,9 +1,10 @@
 package core;
 
+import lombok.Getter;
 import org.joml.Vector3f;
-import org.joml.Vector4f;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 /**
  * core.SVO Node
@@ -13,14 +14,45 @@ import java.nio.ByteBuffer;
  */
 public class Cell {
 
-    private Vector4f data;
+    /**
+     * The 4 bytes of the cell as 0xRRGGBBAA, in the order in which they are stored in the texture.
+     * The floats that cells are created with are converted once, so that packing the texture only copies ints
+     */
+    @Getter
+    private int packed;
+
+    /** Empty cells carry no data, so all of them can share one instance */
+    private static final Cell EMPTY = new Cell(0);
 
-    private static Vector4f EMPTY_DATA = new Vector4f(0);
+    /**
+     * Position of a DATA cell in the volume, normalized to between 0 and 1. Null for other cells and for data cells
+     * that were created without one, which includes the shared empty cell
+     */
+    @Getter
+    private final Vector3f realLocation;
 
-    public Vector3f realLocation;
+    /** Index in the indirection pool of the grid that an INDEX cell points to, -1 for other cells */
+    @Getter
+    private int pointer = -1;
 
-    private Cell(Vector4f data) {
-        this.data = data;
+    /**
+     * Axes along which the grid that an INDEX cell points to is reflected, as bits x = 1, y = 2, z = 4.
+     * Only stored by {@link WideCellEncoding}
+     */
+    @Getter
+    private int mirror = 0;
+
+    private Cell(int packed) {
+        this(packed, null);
+    }
+
+    private Cell(int packed, Vector3f realLocation) {
+        this.packed = packed;
+        this.realLocation = realLocation;
+    }
+
+    private Cell(float x, float y, float z, NodeType type) {
+        this(pack(x, y, z, type.value));
     }
 
     public enum NodeType {
@@ -37,31 +69,84 @@ public class Cell {
 
 
     public NodeType getNodeType() {
-        if (data == null) return NodeType.EMPTY;
-
-        float type = data.w;
-        if (type < 0.1) return NodeType.EMPTY;
-        if (type < 0.6) return NodeType.INDEX;
+        // The type byte is 0, 127 or 255, see pack
+        int type = packed & 0xFF;
+        if (type == 0) return NodeType.EMPTY;
+        if (type < 0xFF) return NodeType.INDEX;
         return NodeType.DATA;
     }
 
     public void getData(int position, ByteBuffer buffer) {
-        Vector4f realData = data;
-        if (getNodeType() == NodeType.EMPTY) {
-            realData = EMPTY_DATA;
-        }
-//        realData.get(position, buffer);
-        buffer.put(position + 0, (byte) ((int) Math.floor(realData.x * 255f) & 0xFF));
-        buffer.put(position + 1, (byte) ((int) Math.floor(realData.y * 255f) & 0xFF));
-        buffer.put(position + 2, (byte) ((int) Math.floor(realData.z * 255f) & 0xFF));
-        buffer.put(position + 3, (byte) ((int) Math.floor(realData.w * 255f) & 0xFF));
+        buffer.putInt(position, getPacked(buffer.order()));
+    }
+
+    /**
+     * @return The cell as an int that a buffer with the given byte order stores as the bytes of {@link #getPacked()}
+     */
+    public int getPacked(ByteOrder order) {
+        return order == ByteOrder.BIG_ENDIAN ? packed : Integer.reverseBytes(packed);
+    }
+
+    /**
+     * @return The color of a DATA cell as 0xRRGGBB, rounded in the same way as {@link #getData(int, ByteBuffer)}
+     */
+    public int getRGB() {
+        return packed >>> 8;
+    }
+
+    private static int toByte(float value) {
+        return (int) Math.floor(value * 255f) & 0xFF;
+    }
+
+    private static int pack(float x, float y, float z, float w) {
+        return toByte(x) << 24 | toByte(y) << 16 | toByte(z) << 8 | toByte(w);
+    }
+
+    /**
+     * Writes the 4 bytes of a cell of the given type to a buffer, without creating the cell
+     */
+    public static void putData(ByteBuffer buffer, int position, float x, float y, float z, NodeType type) {
+        putData(buffer, position, x, y, z, type.value);
+    }
+
+    private static void putData(ByteBuffer buffer, int position, float x, float y, float z, float w) {
+        buffer.put(position + 0, (byte) toByte(x));
+        buffer.put(position + 1, (byte) toByte(y));
+        buffer.put(position + 2, (byte) toByte(z));
+        buffer.put(position + 3, (byte) toByte(w));
     }
 
     public static Cell createEmpty() {
-        return new Cell(null);
+        return EMPTY;
     }
     public static Cell createData(Vector3f rgb) {
-        return new Cell(new Vector4f(rgb, NodeType.DATA.value));
+        return new Cell(rgb.x, rgb.y, rgb.z, NodeType.DATA);
+    }
+    public static Cell createData(float r, float g, float b) {
+        return new Cell(r, g, b, NodeType.DATA);
+    }
+
+    /**
+     * @param realLocation Normalized position of the cell in the volume, which is copied
+     */
+    public static Cell createData(Vector3f rgb, Vector3f realLocation) {
+        return new Cell(pack(rgb.x, rgb.y, rgb.z, NodeType.DATA.value), new Vector3f(realLocation));
+    }
+
+    /**
+     * @param rgb Color as 0xRRGGBB, which {@link #getData(int, ByteBuffer)} writes back as the exact same bytes
+     * @return
+     */
+    public static Cell createData(int rgb) {
+        return new Cell((rgb & 0xFFFFFF) << 8 | 0xFF);
+    }
+
+    /**
+     * @param rgb Color as 0xRRGGBB, see {@link #createData(int)}
+     * @param realLocation Normalized position of the cell in the volume, which is copied
+     */
+    public static Cell createData(int rgb, Vector3f realLocation) {
+        return new Cell((rgb & 0xFFFFFF) << 8 | 0xFF, new Vector3f(realLocation));
     }
 
     /**
@@ -70,6 +155,43 @@ public class Cell {
      * @return
      */
     public static Cell createIndex(Vector3f index) {
-        return new Cell(new Vector4f(index, NodeType.INDEX.value));
+        return new Cell(index.x, index.y, index.z, NodeType.INDEX);
+    }
+
+    /**
+     *
+     * @param index Index in the 3D texture
+     * @param pointer Index of the indirection grid in the indirection pool
+     * @return
+     */
+    public static Cell createIndex(Vector3f index, int pointer) {
+        return createIndex(index.x, index.y, index.z, pointer);
+    }
+
+    public static Cell createIndex(float x, float y, float z, int pointer) {
+        Cell cell = new Cell(x, y, z, NodeType.INDEX);
+        cell.pointer = pointer;
+        return cell;
+    }
+
+    /**
+     * Points this INDEX cell to another indirection grid
+     * @param index Index in the 3D texture
+     * @param pointer Index of the indirection grid in the indirection pool
+     */
+    public void setIndex(Vector3f index, int pointer) {
+        setIndex(index.x, index.y, index.z, pointer);
+    }
+
+    public void setIndex(float x, float y, float z, int pointer) {
+        if (this == EMPTY) {
+            throw new IllegalStateException("The shared empty cell cannot point to a grid");
+        }
+        packed = pack(x, y, z, NodeType.INDEX.value);
+        this.pointer = pointer;
+    }
+
+    public void setMirror(int mirror) {
+        this.mirror = mirror;
     }
 }
@@ -0,0 +1,237 @@
+package core;
+
+import geometry.Geometry;
+import lombok.Getter;
+import lombok.Setter;
+import org.joml.Vector3f;
+import org.joml.Vector3i;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * Splits a world into a grid of cubic chunks of chunkSize world units, each with its own SVO.
+ * The chunks around the camera are built on background threads, and the chunks that are built stay resident
+ * until the estimated memory of all resident chunks exceeds the memory budget. Then the least recently used chunks
+ * are evicted, and built again when the camera returns. Chunks that are being built count against the budget as well.
+ * A chunk of which the build fails is dropped, and requested again by the next update.
+ *
+ * {@link #update(Vector3f)} should be called from a single thread, such as once per frame: the background threads
+ * only build the SVOs, and the resident chunks are only changed by update.
+ */
+public class ChunkManager {
+
+    @Getter
+    private final int maxDepth;
+    /** Size of a chunk in world units, the world size of its SVO */
+    @Getter
+    private final int chunkSize;
+    /** Chunks that are within this many chunks of the chunk of the camera along each axis are loaded */
+    @Getter @Setter
+    private int viewDistance;
+    /**
+     * Maximum estimated memory of the resident chunks in bytes, see {@link #getChunkBytes(SVO)}.
+     * Should fit all chunks within the view distance, else chunks in view are evicted and built again
+     */
+    @Getter @Setter
+    private long memoryBudget;
+
+    /**
+     * Geometries of the whole world. Every chunk is built from the geometries that overlap with it.
+     * Geometries can be added while chunks are being built, which then may or may not contain them
+     */
+    @Getter
+    private final List<Geometry> geometries = new CopyOnWriteArrayList<>();
+
+    private final Executor executor;
+
+    /** Built chunks in access order, so that the first one is the least recently used */
+    private final LinkedHashMap<Vector3i, SVO> residentChunks = new LinkedHashMap<>(16, 0.75f, true);
+    private final HashMap<Vector3i, CompletableFuture<SVO>> pendingChunks = new HashMap<>();
+
+    /** Estimated memory of the resident chunks in bytes */
+    @Getter
+    private long residentBytes = 0;
+    /** Number of chunks that were built, evicted, and requested while resident or not */
+    @Getter
+    private long numBuilt, numEvicted, numHits, numMisses;
+    /** Number of chunk builds that threw an exception */
+    @Getter
+    private long numFailed;
+    /** The exception of the last chunk build that failed, or null */
+    @Getter
+    private Throwable lastFailure;
+
+    /**
+     * @param executor Builds the chunks, for example a fixed thread pool
+     */
+    public ChunkManager(int maxDepth, int chunkSize, int viewDistance, long memoryBudget, Executor executor) {
+        this.maxDepth = maxDepth;
+        this.chunkSize = chunkSize;
+        this.viewDistance = viewDistance;
+        this.memoryBudget = memoryBudget;
+        this.executor = executor;
+    }
+
+    /**
+     * Adds the chunks that finished building, requests the chunks around the camera, and evicts chunks
+     * while the resident chunks exceed the memory budget
+     * @param cameraPosition Position of the camera in world space
+     */
+    public void update(Vector3f cameraPosition) {
+        collectBuiltChunks();
+
+        Vector3i center = getChunk(cameraPosition, new Vector3i());
+        for (int z = -viewDistance; z <= viewDistance; z++) {
+            for (int y = -viewDistance; y <= viewDistance; y++) {
+                for (int x = -viewDistance; x <= viewDistance; x++) {
+                    requestChunk(new Vector3i(center).add(x, y, z));
+                }
+            }
+        }
+
+        evictChunks();
+    }
+
+    /**
+     * Marks a chunk as used, and starts building it if it is not resident or being built already
+     * @return The SVO of the chunk if it is resident, else null
+     */
+    public SVO requestChunk(Vector3i chunk) {
+        SVO svo = residentChunks.get(chunk);
+        if (svo != null) {
+            numHits++;
+            return svo;
+        }
+        numMisses++;
+        if (!pendingChunks.containsKey(chunk)) {
+            Vector3i key = new Vector3i(chunk);
+            pendingChunks.put(key, CompletableFuture.supplyAsync(() -> buildChunk(key), executor));
+        }
+        return null;
+    }
+
+    /**
+     * @return The chunk that contains a position in world space
+     */
+    public Vector3i getChunk(Vector3f position, Vector3i dest) {
+        return dest.set(
+                (int) Math.floor(position.x / chunkSize),
+                (int) Math.floor(position.y / chunkSize),
+                (int) Math.floor(position.z / chunkSize));
+    }
+
+    /**
+     * Builds the SVO of a chunk from the geometries that overlap with it. Called on the threads of the executor
+     */
+    protected SVO buildChunk(Vector3i chunk) {
+        SVO svo = new SVO(maxDepth, chunkSize);
+        svo.setOrigin(new Vector3f(chunk).mul(chunkSize));
+
+        Vector3f chunkEnd = new Vector3f(svo.getOrigin()).add(chunkSize, chunkSize, chunkSize);
+        Vector3f min = new Vector3f(), max = new Vector3f();
+        for (Geometry geometry : geometries) {
+            geometry.getBounds(min, max);
+            if (min.x <= chunkEnd.x && min.y <= chunkEnd.y && min.z <= chunkEnd.z
+                    && max.x >= svo.getOrigin().x && max.y >= svo.getOrigin().y && max.z >= svo.getOrigin().z) {
+                svo.getGeometries().add(geometry);
+            }
+        }
+        svo.generateSVO();
+        return svo;
+    }
+
+    private void collectBuiltChunks() {
+        Iterator<Map.Entry<Vector3i, CompletableFuture<SVO>>> iterator = pendingChunks.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Vector3i, CompletableFuture<SVO>> entry = iterator.next();
+            if (!entry.getValue().isDone()) continue;
+            iterator.remove();
+
+            SVO svo;
+            try {
+                svo = entry.getValue().join();
+            } catch (CompletionException | CancellationException exception) {
+                // The chunk is not resident, so the next update requests it again
+                lastFailure = exception.getCause() != null ? exception.getCause() : exception;
+                numFailed++;
+                System.err.println("Building chunk " + entry.getKey() + " failed: " + lastFailure);
+                continue;
+            }
+            residentChunks.put(entry.getKey(), svo);
+            residentBytes += getChunkBytes(svo);
+            numBuilt++;
+        }
+    }
+
+    /**
+     * Evicts the least recently used chunks until the resident chunks and the chunks that are being built fit the
+     * memory budget. A chunk that is being built is estimated at the average size of the resident chunks
+     */
+    private void evictChunks() {
+        long pendingBytes = residentChunks.isEmpty() ? 0 : pendingChunks.size() * (residentBytes / residentChunks.size());
+        Iterator<SVO> iterator = residentChunks.values().iterator();
+        while (residentBytes + pendingBytes > memoryBudget && iterator.hasNext()) {
+            residentBytes -= getChunkBytes(iterator.next());
+            iterator.remove();
+            numEvicted++;
+        }
+    }
+
+    /**
+     * Waits until the chunks that are being built are done, and makes them resident
+     */
+    public void awaitPendingChunks() {
+        // Failed builds are handled by collectBuiltChunks
+        CompletableFuture.allOf(pendingChunks.values().toArray(new CompletableFuture[0])).handle((result, exception) -> null).join();
+        collectBuiltChunks();
+        evictChunks();
+    }
+
+    /**
+     * Estimated heap memory of an indirection grid: the grid, its array of 8 cells, and 8 cells with a location.
+     * Empty cells are shared, so this is an upper bound
+     */
+    static final long INDIRECTION_GRID_BYTES = 32 + 48 + 8 * (32 + 24);
+
+    /**
+     * The estimated memory of a chunk is the size of its indirection pool on the heap, see
+     * {@link #INDIRECTION_GRID_BYTES}, plus the size of its voxel texture: 4 bytes per cell of the packed texture
+     */
+    public static long getChunkBytes(SVO svo) {
+        return INDIRECTION_GRID_BYTES * svo.getIndirectionPool().size()
+                + 4L * svo.getTextureWidth() * svo.getTextureHeight() * svo.getTextureDepth();
+    }
+
+    /**
+     * @return The resident chunks, from the least to the most recently used. Iterating does not change the order
+     */
+    public Map<Vector3i, SVO> getResidentChunks() {
+        return Collections.unmodifiableMap(residentChunks);
+    }
+
+    public int getNumResident() {
+        return residentChunks.size();
+    }
+
+    public int getNumPending() {
+        return pendingChunks.size();
+    }
+
+    /**
+     * @return The fraction of requests for chunks that were resident
+     */
+    public float getHitRate() {
+        long numRequests = numHits + numMisses;
+        return numRequests == 0 ? 0 : numHits / (float) numRequests;
+    }
+}
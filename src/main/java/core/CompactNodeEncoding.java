@@ -0,0 +1,166 @@
+package core;
+
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Serializes an indirection pool into a compact stream of variable sized nodes, for a shader storage buffer.
+ *
+ * Every grid becomes a node of a 2 byte header followed by its non-empty children:
+ * <pre>
+ *     childMask  1 byte, bit i is set if child i is not empty
+ *     leafMask   1 byte, bit i is set if child i is a data cell
+ *     per non-empty child, in child order:
+ *         data cell:  3 bytes R, G, B
+ *         index cell: varint (offset &lt;&lt; 3 | mirror)
+ * </pre>
+ * Nodes are written in post order, so children are always before their parent in the stream and the offset is the
+ * distance back from the start of the parent to the start of the child. The last child of a node is written right
+ * before it, so most offsets fit in 1 or 2 bytes. The mirror bits are the reflection of a symmetric DAG, see
+ * {@link SVO#compressToDAG(boolean)}. Varints store 7 bits per byte, lowest bits first, with the highest bit set
+ * on every byte but the last.
+ *
+ * The stream starts with the position of the root node as a 4 byte little endian integer, and is padded to a multiple
+ * of 4 bytes, so that the shader can read it as an array of uints.
+ */
+public class CompactNodeEncoding {
+
+    private static final int HEADER_SIZE = 4;
+
+    private byte[] bytes = new byte[1024];
+    private int size = HEADER_SIZE;
+    private int[] positions;
+    private ArrayList<IndirectionGrid> pool;
+
+    private CompactNodeEncoding(ArrayList<IndirectionGrid> pool) {
+        this.pool = pool;
+        this.positions = new int[pool.size()];
+        Arrays.fill(positions, -1);
+    }
+
+    /**
+     * Grids that are shared by multiple parents, as in a DAG, are written once
+     * @return The serialized pool in a direct little endian buffer
+     */
+    public static ByteBuffer encode(SVO svo) {
+        CompactNodeEncoding encoding = new CompactNodeEncoding(svo.getIndirectionPool());
+        int root = svo.getIndirectionPool().isEmpty() ? 0 : encoding.write(0);
+
+        int paddedSize = (encoding.size + 3) & ~3;
+        ByteBuffer buffer = BufferUtils.createByteBuffer(paddedSize).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(encoding.bytes, 0, encoding.size);
+        buffer.putInt(0, root);
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * @return The position of the node of a grid
+     */
+    private int write(int igIndex) {
+        if (positions[igIndex] >= 0) return positions[igIndex];
+
+        Cell[] children = pool.get(igIndex).getChildren();
+        int[] childPositions = new int[8];
+        for (int i = 0; i < 8; i++) {
+            if (children[i].getNodeType() == Cell.NodeType.INDEX) {
+                childPositions[i] = write(children[i].getPointer());
+            }
+        }
+
+        int position = size;
+        int childMask = 0, leafMask = 0;
+        for (int i = 0; i < 8; i++) {
+            Cell.NodeType type = children[i].getNodeType();
+            if (type != Cell.NodeType.EMPTY) childMask |= 1 << i;
+            if (type == Cell.NodeType.DATA) leafMask |= 1 << i;
+        }
+        putByte(childMask);
+        putByte(leafMask);
+
+        for (int i = 0; i < 8; i++) {
+            Cell cell = children[i];
+            if (cell.getNodeType() == Cell.NodeType.DATA) {
+                int rgb = cell.getRGB();
+                putByte(rgb >> 16);
+                putByte(rgb >> 8);
+                putByte(rgb);
+            } else if (cell.getNodeType() == Cell.NodeType.INDEX) {
+                putVarint((long) (position - childPositions[i]) << 3 | cell.getMirror());
+            }
+        }
+
+        positions[igIndex] = position;
+        return position;
+    }
+
+    private void putByte(int value) {
+        if (size == bytes.length) {
+            bytes = Arrays.copyOf(bytes, 2 * bytes.length);
+        }
+        bytes[size++] = (byte) value;
+    }
+
+    private void putVarint(long value) {
+        while (value >= 0x80) {
+            putByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        putByte((int) value);
+    }
+
+    /**
+     * Traverses an encoded pool in the same way as treeLookupCompact in the shader
+     * @param x, y, z Coordinates of a voxel, between 0 and 2^maxDepth
+     * @return The cell of the voxel, encoded by {@link WideCellEncoding}: a DATA cell,
+     * or the EMPTY cell at which the traversal stopped
+     */
+    public static int lookup(ByteBuffer data, int maxDepth, int x, int y, int z) {
+        int node = data.getInt(0);
+        int mirror = 0;
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            int shift = maxDepth - depth;
+            int child = (((x >> shift) & 1) + 2 * ((y >> shift) & 1) + 4 * ((z >> shift) & 1)) ^ mirror;
+
+            int childMask = data.get(node) & 0xFF;
+            int leafMask = data.get(node + 1) & 0xFF;
+            if ((childMask >> child & 1) == 0) {
+                return 0;
+            }
+
+            // Skip the children before this one
+            int position = node + 2;
+            for (int i = 0; i < child; i++) {
+                if ((childMask >> i & 1) == 0) continue;
+                if ((leafMask >> i & 1) != 0) {
+                    position += 3;
+                } else {
+                    while ((data.get(position) & 0x80) != 0) position++;
+                    position++;
+                }
+            }
+
+            if ((leafMask >> child & 1) != 0) {
+                return WideCellEncoding.encodeData((data.get(position) & 0xFF) << 16
+                        | (data.get(position + 1) & 0xFF) << 8
+                        | (data.get(position + 2) & 0xFF));
+            }
+
+            long value = 0;
+            int b, bits = 0;
+            do {
+                b = data.get(position++);
+                value |= (long) (b & 0x7F) << bits;
+                bits += 7;
+            } while ((b & 0x80) != 0);
+
+            mirror ^= (int) (value & 7);
+            node -= (int) (value >>> 3);
+        }
+        throw new IllegalStateException("Index node below max depth " + maxDepth);
+    }
+}
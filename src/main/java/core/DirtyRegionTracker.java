@@ -0,0 +1,73 @@
+package core;
+
+import org.joml.Vector3i;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+
+/**
+ * Keeps track of which indirection grids changed since the texture was last updated.
+ * Every grid occupies a 2x2x2 block of texels, so only those blocks have to be written again
+ * instead of the whole texture.
+ */
+public class DirtyRegionTracker {
+
+    private final BitSet dirtyGrids = new BitSet();
+
+    /** Buffer for the 2x2x2 texels of a single grid */
+    private final ByteBuffer blockData = BufferUtils.createByteBuffer(2 * 2 * 2 * 4);
+
+    public void markDirty(int indirectionGridIndex) {
+        dirtyGrids.set(indirectionGridIndex);
+    }
+
+    /** Marks every grid of a pool that was rewritten as a whole, and forgets grids beyond it */
+    public void markAllDirty(int numGrids) {
+        dirtyGrids.clear();
+        dirtyGrids.set(0, numGrids);
+    }
+
+    public boolean isDirty(int indirectionGridIndex) {
+        return dirtyGrids.get(indirectionGridIndex);
+    }
+
+    public int getNumDirty() {
+        return dirtyGrids.cardinality();
+    }
+
+    public void clear() {
+        dirtyGrids.clear();
+    }
+
+    /**
+     * Writes the dirty grids into texture data on the CPU, which has the layout of {@link SVO#getTextureData()},
+     * and clears the dirty grids
+     */
+    public void apply(SVO svo, ByteBuffer textureData) {
+        Vector3i index = new Vector3i();
+        for (int i = dirtyGrids.nextSetBit(0); i >= 0; i = dirtyGrids.nextSetBit(i + 1)) {
+            svo.getTextureIndex(i, index);
+            svo.getIndirectionPool().get(i).get(svo.getTextureWidth(), svo.getTextureHeight(), index.x, index.y, index.z, textureData);
+        }
+        clear();
+    }
+
+    /**
+     * Uploads the dirty grids to the 3D texture with glTexSubImage3D, and clears the dirty grids
+     * @param texID A texture created by {@link SVO#uploadTexture(int, int, int, ByteBuffer)}
+     */
+    public void upload(SVO svo, int texID) {
+        Vector3i index = new Vector3i();
+        GL11.glBindTexture(GL12.GL_TEXTURE_3D, texID);
+        for (int i = dirtyGrids.nextSetBit(0); i >= 0; i = dirtyGrids.nextSetBit(i + 1)) {
+            svo.getTextureIndex(i, index);
+            svo.getIndirectionPool().get(i).get(2, 2, 0, 0, 0, blockData);
+            GL12.glTexSubImage3D(GL12.GL_TEXTURE_3D, 0, index.x, index.y, index.z, 2, 2, 2, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, blockData);
+        }
+        GL11.glBindTexture(GL12.GL_TEXTURE_3D, 0);
+        clear();
+    }
+}
@@ -8,6 +8,7 @@ import org.lwjgl.BufferUtils;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
+import java.util.List;
 
 public class IndirectionGrid {
 
@@ -31,6 +32,13 @@ public class IndirectionGrid {
     @Getter
     private int index = 0;
 
+    /**
+     * Average color of the subtree of this grid as 0xAARRGGBB, with the fraction of children that are not empty
+     * as alpha, see {@link SVO#updateLOD()}
+     */
+    @Getter
+    private int averageColor = 0;
+
     public IndirectionGrid() {
         children = new Cell[8];
         for (int i = 0; i < 8; i++)
@@ -50,23 +58,53 @@ public class IndirectionGrid {
         children[index] = node;
     }
 
-    public static int getTextureIndex(int textureSize, int x, int y, int z, int child) {
+    /**
+     * Updates the average color from the colors of the children. The average colors of the grids that the
+     * INDEX cells point to must be up to date.
+     * @param pool The pool that the INDEX cells point into
+     */
+    public void updateAverageColor(List<IndirectionGrid> pool) {
+        int numChildren = 0, r = 0, g = 0, b = 0;
+        for (Cell cell : children) {
+            int rgb;
+            if (cell.getNodeType() == Cell.NodeType.DATA) {
+                rgb = cell.getRGB();
+            } else if (cell.getNodeType() == Cell.NodeType.INDEX) {
+                rgb = pool.get(cell.getPointer()).averageColor;
+            } else {
+                continue;
+            }
+            r += (rgb >> 16) & 0xFF;
+            g += (rgb >> 8) & 0xFF;
+            b += rgb & 0xFF;
+            numChildren++;
+        }
+        if (numChildren == 0) {
+            averageColor = 0;
+            return;
+        }
+        int coverage = Math.round(255 * numChildren / 8f);
+        averageColor = coverage << 24 | (r / numChildren) << 16 | (g / numChildren) << 8 | (b / numChildren);
+    }
+
+    public static int getTextureIndex(int textureWidth, int textureHeight, int x, int y, int z, int child) {
         Vector3i of = CHILD_TEXTURE_OFFSETS[child];
-        return (x + of.x) + (y + of.y) * textureSize + (z + of.z) * textureSize * textureSize;
+        return (x + of.x) + (y + of.y) * textureWidth + (z + of.z) * textureWidth * textureHeight;
     }
 
     /**
      * Inserts the cells of this indirection grid in a 2x2x2 cube in a bytebuffer texture
-     * @param textureSize
+     * @param textureWidth
+     * @param textureHeight
      * @param x
      * @param y
      * @param z
      * @param buffer
      */
-    public void get(int textureSize, int x, int y, int z, ByteBuffer buffer) {
+    public void get(int textureWidth, int textureHeight, int x, int y, int z, ByteBuffer buffer) {
         for (int i = 0; i < 8; i++) {
             Cell cell = children[i];
-            int textureIndex = getTextureIndex(textureSize, x, y, z, i);
+            int textureIndex = getTextureIndex(textureWidth, textureHeight, x, y, z, i);
             int position = textureIndex * 4;
             if (position < buffer.limit()) {
                 cell.getData(position, buffer);
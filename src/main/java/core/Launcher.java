@@ -5,6 +5,7 @@ import input.KeyboardHandler;
 import input.MouseButtonHandler;
 import org.joml.Matrix4f;
 import org.joml.Vector3f;
+import org.joml.Vector3i;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.glfw.*;
 import org.lwjgl.opengl.GL;
@@ -20,6 +21,7 @@ import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.lwjgl.glfw.GLFW.*;
 import static org.lwjgl.glfw.GLFW.glfwDestroyWindow;
@@ -51,6 +53,7 @@ import static org.lwjgl.opengl.GL42.*;
 import static org.lwjgl.opengl.GL42.glBindImageTexture;
 import static org.lwjgl.opengl.GL43.GL_COMPUTE_SHADER;
 import static org.lwjgl.opengl.GL43.GL_COMPUTE_WORK_GROUP_SIZE;
+import static org.lwjgl.opengl.GL43.GL_SHADER_STORAGE_BUFFER;
 import static org.lwjgl.opengl.GL43.glDispatchCompute;
 import static org.lwjgl.system.MathUtil.mathRoundPoT;
 import static org.lwjgl.system.MemoryUtil.NULL;
@@ -82,6 +85,19 @@ public class Launcher {
 
     /** The texture containing the voxelized data structure */
     private int voxelTexture, voxelTextureDirect;
+    /** Size of voxelTexture in texels, to upload it again in full once the SVO is packed into a different size */
+    private final Vector3i voxelTextureSize = new Vector3i();
+    /** Voxels that can be set in empty regions before the texture has to be packed again, see {@link SVO#packTexture(int)} */
+    private static final int EDIT_RESERVE_VOXELS = 64;
+    /** The same data structure with integer cells, see {@link WideCellEncoding} */
+    private int voxelTextureWide;
+    /** Average colors of the subtrees of the data structure, see {@link SVO#getLODTextureData()} */
+    private int voxelTextureLOD;
+    /** Shader storage buffer with the same data structure as variable sized nodes, see {@link CompactNodeEncoding} */
+    private int compactNodeBuffer;
+    /** Shader storage buffers with the same data structure with its last levels as bricks, see {@link BrickMap} */
+    private int brickNodeBuffer, brickBuffer;
+    private BrickMap brickMap;
 
     /** The location of the 'eye' uniform declared in the compute shader holding the
      * world-space eye position. */
@@ -221,21 +237,36 @@ public class Launcher {
     }
 
     private void setStaticUniforms(SVO svo) {
-        float texSize = svo.getMaxTextureSize();
+        float resolution = 1 << svo.getMaxDepth();
 
         glUseProgram(computeProgram);
 
-        // Set number of indirection grids
-        glUniform1f(computeShader.getUniformId("invNumberOfIndGrids"), 2f / texSize);
-
         // Set voxel texture size
         glUniform3f(
-                computeShader.getUniformId("textureSize"),
-                texSize,
-                1 / texSize,
-                1 / (2f * texSize)
+                computeShader.getUniformId("invTextureSize"),
+                1f / svo.getTextureWidth(),
+                1f / svo.getTextureHeight(),
+                1f / svo.getTextureDepth()
+        );
+
+        // Set number of grids along x and y, to find grids in the wide texture
+        glUniform2i(
+                computeShader.getUniformId("textureBlocks"),
+                svo.getTextureWidth() / 2,
+                svo.getTextureHeight() / 2
+        );
+
+        // Set number of voxels along each axis
+        glUniform3f(
+                computeShader.getUniformId("voxelResolution"),
+                resolution,
+                1 / resolution,
+                1 / (2f * resolution)
         );
 
+        // Set number of voxels along each axis of a brick
+        glUniform1i(computeShader.getUniformId("brickSize"), brickMap.getBrickSize());
+
         glUseProgram(0);
     }
 
@@ -243,10 +274,39 @@ public class Launcher {
         SVO svo = new SVO(4, 100);
         int textureSize = svo.getMaxTextureSize();
         svo.generateDemoScene();
-        svo.generateSVO();
+        svo.generateSVO(ForkJoinPool.commonPool());
+        // A voxel in an empty region creates a grid at every depth
+        svo.packTexture(EDIT_RESERVE_VOXELS * svo.getMaxDepth());
 //        System.out.println("textureSize + \", \" + invNumberOfIndGrids = " + textureSize + ", " + invNumberOfIndGrids);
-        voxelTexture = SVO.uploadTexture(textureSize, svo.getTextureData());
+        voxelTexture = SVO.uploadTexture(svo.getTextureWidth(), svo.getTextureHeight(), svo.getTextureDepth(), svo.getTextureData());
+        voxelTextureSize.set(svo.getTextureWidth(), svo.getTextureHeight(), svo.getTextureDepth());
+        svo.getDirtyRegions().clear();
         voxelTextureDirect = SVO.uploadTexture(textureSize, svo.getNormalVolumeTextureData());
+        voxelTextureWide = SVO.uploadWideTexture(svo.getTextureWidth(), svo.getTextureHeight(), svo.getTextureDepth(), svo.getWideTextureData());
+        glActiveTexture(GL_TEXTURE1);
+        GL11.glBindTexture(GL12.GL_TEXTURE_3D, voxelTextureWide);
+        voxelTextureLOD = SVO.uploadTexture(svo.getTextureWidth(), svo.getTextureHeight(), svo.getTextureDepth(), svo.getLODTextureData());
+        glActiveTexture(GL_TEXTURE2);
+        GL11.glBindTexture(GL12.GL_TEXTURE_3D, voxelTextureLOD);
+
+        compactNodeBuffer = glGenBuffers();
+        glBindBuffer(GL_SHADER_STORAGE_BUFFER, compactNodeBuffer);
+        glBufferData(GL_SHADER_STORAGE_BUFFER, CompactNodeEncoding.encode(svo), GL_STATIC_DRAW);
+        glBindBuffer(GL_SHADER_STORAGE_BUFFER, 0);
+        glBindBufferBase(GL_SHADER_STORAGE_BUFFER, 1, compactNodeBuffer);
+
+        brickMap = BrickMap.create(svo, 2);
+        brickNodeBuffer = glGenBuffers();
+        glBindBuffer(GL_SHADER_STORAGE_BUFFER, brickNodeBuffer);
+        glBufferData(GL_SHADER_STORAGE_BUFFER, brickMap.getNodeData(), GL_STATIC_DRAW);
+        brickBuffer = glGenBuffers();
+        glBindBuffer(GL_SHADER_STORAGE_BUFFER, brickBuffer);
+        glBufferData(GL_SHADER_STORAGE_BUFFER, brickMap.getBrickData(), GL_STATIC_DRAW);
+        glBindBuffer(GL_SHADER_STORAGE_BUFFER, 0);
+        glBindBufferBase(GL_SHADER_STORAGE_BUFFER, 2, brickNodeBuffer);
+        glBindBufferBase(GL_SHADER_STORAGE_BUFFER, 3, brickBuffer);
+
+        glActiveTexture(GL_TEXTURE0);
         GL11.glBindTexture(GL12.GL_TEXTURE_3D, voxelTexture);
         return svo;
     }
@@ -259,6 +319,19 @@ public class Launcher {
         controller.update(dt);
         renderController.update(dt);
 
+        // Only upload the indirection grids changed by voxel edits, unless the texture was packed into a different size
+        if (svo.getTextureWidth() != voxelTextureSize.x || svo.getTextureHeight() != voxelTextureSize.y
+                || svo.getTextureDepth() != voxelTextureSize.z) {
+            voxelTextureSize.set(svo.getTextureWidth(), svo.getTextureHeight(), svo.getTextureDepth());
+            GL11.glBindTexture(GL12.GL_TEXTURE_3D, voxelTexture);
+            GL12.glTexImage3D(GL12.GL_TEXTURE_3D, 0, GL11.GL_RGBA, voxelTextureSize.x, voxelTextureSize.y, voxelTextureSize.z,
+                    0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, svo.getTextureData());
+            GL11.glBindTexture(GL12.GL_TEXTURE_3D, 0);
+            svo.getDirtyRegions().clear();
+        } else if (svo.getDirtyRegions().getNumDirty() > 0) {
+            svo.getDirtyRegions().upload(svo, voxelTexture);
+        }
+
         // Reset raw input controllers
         KeyboardHandler.update();
         MouseButtonHandler.update();
@@ -457,6 +530,10 @@ public class Launcher {
 
         // Set voxel texture location (TEXTURE0)
         glUniform1i(computeShader.getUniformId("voxelTexture"), 0);
+        glUniform1i(computeShader.getUniformId("wideVoxelTexture"), 1);
+        glUniform1i(computeShader.getUniformId("lodTexture"), 2);
+        // Size of a pixel at a distance of 1 from the eye, for the same 60 degree fov as the projection matrix
+        glUniform1f(computeShader.getUniformId("pixelSize"), 2 * (float) Math.tan(Math.toRadians(30.0f)) / height);
 
         /*
          * Bind level 0 of framebuffer texture as writable image in the shader. This
@@ -0,0 +1,81 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Morton (Z-order) codes of 3D voxel coordinates.
+ * The bits of x, y and z are interleaved as ...zyxzyx, so every 3 bits of a code are the child index
+ * (x + 2 * y + 4 * z) of a voxel at one depth of the octree, starting with the root at the highest bits.
+ */
+public class Morton {
+
+    /** Maximum number of bits per axis that fit in a 64 bit code */
+    public static final int MAX_BITS_PER_AXIS = 21;
+
+    private static long spreadBits(int value) {
+        long x = value & 0x1FFFFFL;
+        x = (x | x << 32) & 0x1F00000000FFFFL;
+        x = (x | x << 16) & 0x1F0000FF0000FFL;
+        x = (x | x << 8)  & 0x100F00F00F00F00FL;
+        x = (x | x << 4)  & 0x10C30C30C30C30C3L;
+        x = (x | x << 2)  & 0x1249249249249249L;
+        return x;
+    }
+
+    public static long encode(int x, int y, int z) {
+        return spreadBits(x) | spreadBits(y) << 1 | spreadBits(z) << 2;
+    }
+
+    /**
+     * @param code
+     * @param depth Depth of the child, between 1 and maxDepth
+     * @param maxDepth Number of 3-bit levels in the code
+     * @return The child index (x + 2 * y + 4 * z) of the voxel in its indirection grid at the given depth
+     */
+    public static int childIndex(long code, int depth, int maxDepth) {
+        return (int) (code >>> (3 * (maxDepth - depth))) & 7;
+    }
+
+    /**
+     * Sorts the codes with an LSD radix sort of 8 bits per pass
+     * @param codes The codes to sort, is left untouched
+     * @param bits Number of low bits that are used in the codes
+     * @return The indices of the codes in ascending order of their code
+     */
+    public static int[] sortedOrder(long[] codes, int bits) {
+        int n = codes.length;
+        int[] order = new int[n];
+        int[] orderTemp = new int[n];
+        long[] keys = codes.clone();
+        long[] keysTemp = new long[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+
+        int[] counts = new int[256];
+        for (int shift = 0; shift < bits; shift += 8) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < n; i++) {
+                counts[(int) (keys[i] >>> shift) & 0xFF]++;
+            }
+            // Skip passes in which all keys have the same digit
+            if (n == 0 || counts[(int) (keys[0] >>> shift) & 0xFF] == n) {
+                continue;
+            }
+            int offset = 0;
+            for (int d = 0; d < 256; d++) {
+                int count = counts[d];
+                counts[d] = offset;
+                offset += count;
+            }
+            for (int i = 0; i < n; i++) {
+                int position = counts[(int) (keys[i] >>> shift) & 0xFF]++;
+                keysTemp[position] = keys[i];
+                orderTemp[position] = order[i];
+            }
+            long[] keysSwap = keys; keys = keysTemp; keysTemp = keysSwap;
+            int[] orderSwap = order; order = orderTemp; orderTemp = orderSwap;
+        }
+        return order;
+    }
+}
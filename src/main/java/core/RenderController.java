@@ -19,7 +19,10 @@ public class RenderController {
     enum LookupMode {
         OCTREE(1),
         TEXTURE_DIRECT(2),
-        TEXTURE_LOOKUP(3);
+        TEXTURE_LOOKUP(3),
+        OCTREE_WIDE(4),
+        OCTREE_COMPACT(5),
+        OCTREE_BRICKS(6);
 
         private int value;
         LookupMode(int value) {
@@ -46,6 +49,12 @@ public class RenderController {
             newLookupMode = LookupMode.TEXTURE_DIRECT;
         else if (KeyboardHandler.isKeyPressed(GLFW.GLFW_KEY_3))
             newLookupMode = LookupMode.TEXTURE_LOOKUP;
+        else if (KeyboardHandler.isKeyPressed(GLFW.GLFW_KEY_4))
+            newLookupMode = LookupMode.OCTREE_WIDE;
+        else if (KeyboardHandler.isKeyPressed(GLFW.GLFW_KEY_5))
+            newLookupMode = LookupMode.OCTREE_COMPACT;
+        else if (KeyboardHandler.isKeyPressed(GLFW.GLFW_KEY_6))
+            newLookupMode = LookupMode.OCTREE_BRICKS;
 
         if (lookupMode != newLookupMode) {
             lookupMode = newLookupMode;
@@ -2,14 +2,25 @@ package core;
 
 import geometry.Geometry;
 import lombok.Getter;
+import lombok.Setter;
 import org.joml.Vector3f;
 import org.joml.Vector3i;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL12;
+import org.lwjgl.opengl.GL30;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.IntStream;
 
 import geometry.*;
 
@@ -25,9 +36,60 @@ public class SVO {
     @Getter
     private int worldSize;
 
+    /** Position of the minimum corner of the volume in world space, from where it spans worldSize along each axis */
+    @Getter @Setter
+    private Vector3f origin = new Vector3f();
+
     @Getter
     private ArrayList<Geometry> geometries;
 
+    /** Index over the bounds of the geometries, see {@link #updateGeometryIndex()} */
+    @Getter
+    private BVH geometryIndex;
+
+    /** Tests the ray of {@link #pickGeometry} against a geometry, down to the size of a voxel along the ray */
+    private final BVH.RayTest geometryRayTest = (item, originX, originY, originZ, dirX, dirY, dirZ, tMin, tMax) -> {
+        float voxelSize = (float) worldSize / (1 << maxDepth);
+        float precision = voxelSize / (float) Math.sqrt(dirX * dirX + dirY * dirY + dirZ * dirZ);
+        return geometries.get(item).intersectRay(originX, originY, originZ, dirX, dirY, dirZ, tMin, tMax, precision);
+    };
+
+    /** Nodes with more candidate geometries than this find the candidates of their children through the geometry index */
+    private static final int GEOMETRY_INDEX_THRESHOLD = 32;
+
+    /** Indirection grids that were freed by {@link #clearVoxel(int, int, int)}, reused before the pool grows */
+    private final ArrayDeque<Integer> freeIndirectionGrids = new ArrayDeque<>();
+
+    /** Indirection grids changed by {@link #setVoxel(int, int, int, int)} and {@link #clearVoxel(int, int, int)} */
+    @Getter
+    private final DirtyRegionTracker dirtyRegions = new DirtyRegionTracker();
+
+    /** Size of the texture that the indirection pool is stored in, in texels, see {@link #packTexture()} */
+    @Getter
+    private int textureWidth, textureHeight, textureDepth;
+
+    /** Index cells store the location of a grid in a byte per axis, which limits the number of grids per axis */
+    public static final int MAX_TEXTURE_BLOCKS = 256;
+
+    /**
+     * Maximum number of grids along each axis of the packed texture. Textures with more than {@link #MAX_TEXTURE_BLOCKS}
+     * can only be used with the {@link WideCellEncoding}, up to {@link WideCellEncoding#MAX_TEXTURE_BLOCKS}
+     */
+    @Getter @Setter
+    private int maxTextureBlocks = MAX_TEXTURE_BLOCKS;
+
+    /** Whether identical subtrees are shared, see {@link #compressToDAG()} */
+    @Getter
+    private boolean dag = false;
+
+    /** Whether index cells reflect the grids they point to, see {@link #compressToDAG(boolean)} */
+    @Getter
+    private boolean symmetricDag = false;
+
+    /** Whether the builds collapse uniform subtrees before packing the texture, see {@link #collapseUniformSubtrees()} */
+    @Getter @Setter
+    private boolean collapseUniform = false;
+
     /**
      * Creates a Sparse Voxel Octree
      * @param maxDepth
@@ -38,6 +100,10 @@ public class SVO {
         this.worldSize = worldSize;
         this.geometries = new ArrayList<>();
         this.indirectionPool = new ArrayList<>(8 * maxDepth * maxDepth);
+
+        // Until the texture is packed, edits can use the worst case texture size
+        int textureSize = Math.max(getMaxTextureSize(), 2);
+        setTextureSize(textureSize, textureSize, textureSize);
     }
 
     public void generateDemoScene() {
@@ -48,11 +114,694 @@ public class SVO {
 //        geometries.add(new Line(new Vector3f(.4f), new Vector3f(.4f, 0.4f, 0.5f)));
     }
 
+    /**
+     * Adds a procedural terrain with a column per voxel, up to half the height of the volume. This is a large scene:
+     * the number of filled voxels grows with the square of the resolution, instead of with the surface of a few spheres
+     * @param pool Generates the heights in parallel, see {@link Terrain}
+     */
+    public void generateTerrainScene(long seed, ForkJoinPool pool) {
+        geometries.add(new Terrain(new Vector3f(origin), worldSize, maxDepth, worldSize / 2f, seed, pool, new Vector3f(0.4f, 0.6f, 0.3f)));
+    }
+
+    /**
+     * Subtrees of nodes above this depth are built as separate fork/join tasks,
+     * deeper subtrees are built serially within their task
+     */
+    private static final int PARALLEL_DEPTH = 3;
+
+    /** Color of a subtree that is not uniform, see {@link #collapseUniformSubtrees()} */
+    private static final int NOT_UNIFORM = -1;
+
     public void generateSVO() {
-        createNode(0, new Vector3f(0));
+        updateGeometryIndex();
+        createNode(indirectionPool, 0, origin.x, origin.y, origin.z, new BuildScratch(maxDepth, 0, allGeometries()));
+        if (collapseUniform) collapseSubtrees();
+        packTexture();
+        updateLOD();
+    }
+
+    /**
+     * Generates the same indirection pool as {@link #generateSVO()}, but builds the 8 child subtrees
+     * of the top nodes in parallel.
+     *
+     * Every task returns its subtree in depth-first order, in which INDEX cells point relative to the grid
+     * they are in. Concatenating the subtrees of the children after their parent results in the same order
+     * as the serial build, after which the relative pointers are resolved to pool indices.
+     * @param pool
+     */
+    public void generateSVO(ForkJoinPool pool) {
+        updateGeometryIndex();
+        indirectionPool.addAll(pool.invoke(new CreateNodeTask(0, origin.x, origin.y, origin.z, allGeometries())));
+
+        pool.submit(() -> IntStream.range(0, indirectionPool.size()).parallel().forEach(i -> {
+            for (Cell cell : indirectionPool.get(i).getChildren()) {
+                if (cell.getNodeType() == Cell.NodeType.INDEX) {
+                    cell.setIndex(0, 0, 0, i + cell.getPointer());
+                }
+            }
+        })).join();
+        if (collapseUniform) collapseSubtrees();
+        pool.submit(() -> packTexture(0, true)).join();
+        updateLOD();
+    }
+
+    /**
+     * Generates the SVO bottom-up from a list of voxels, instead of top-down from geometry.
+     * The voxels are sorted by their Morton code, which orders them in the same depth-first order in which
+     * {@link #generateSVO()} visits nodes. A single pass over the sorted voxels then only has to create the
+     * indirection grids that are not shared with the previous voxel, which results in the same pool order
+     * and texture layout as {@link #generateSVO()}.
+     * @param voxelPositions x, y, z coordinates of each voxel, between 0 and 2^maxDepth
+     * @param voxelColors Color of each voxel as 0xRRGGBB. Duplicate voxels get the color of the last one
+     */
+    public void generateSVO(int[] voxelPositions, int[] voxelColors) {
+        int numVoxels = voxelColors.length;
+        if (voxelPositions.length != 3 * numVoxels) {
+            throw new IllegalArgumentException("Expected 3 coordinates per voxel, got " + voxelPositions.length + " for " + numVoxels + " voxels");
+        }
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("Max depth must be at least 1, the voxels are stored in the cells of the root grid or below");
+        }
+        if (maxDepth > Morton.MAX_BITS_PER_AXIS) {
+            throw new IllegalArgumentException("Max depth " + maxDepth + " does not fit in a Morton code");
+        }
+
+        int resolution = 1 << maxDepth;
+        long[] codes = new long[numVoxels];
+        for (int i = 0; i < numVoxels; i++) {
+            int x = voxelPositions[3 * i], y = voxelPositions[3 * i + 1], z = voxelPositions[3 * i + 2];
+            if (x < 0 || y < 0 || z < 0 || x >= resolution || y >= resolution || z >= resolution) {
+                throw new IllegalArgumentException("Voxel " + i + " at " + x + ", " + y + ", " + z + " is outside of the " + resolution + "^3 volume");
+            }
+            codes[i] = Morton.encode(x, y, z);
+        }
+        int[] order = Morton.sortedOrder(codes, 3 * maxDepth);
+
+        // The indirection grid at each depth on the path to the previous voxel
+        IndirectionGrid[] path = new IndirectionGrid[maxDepth];
+        path[0] = new IndirectionGrid();
+        indirectionPool.add(path[0]);
+
+        Vector3f temp = new Vector3f();
+        long previousCode = -1;
+        for (int i = 0; i < numVoxels; i++) {
+            int voxel = order[i];
+            long code = codes[voxel];
+
+            // Find the first depth at which this voxel is in a different grid than the previous one
+            int depth = 1;
+            if (previousCode != -1) {
+                while (depth < maxDepth && Morton.childIndex(code, depth, maxDepth) == Morton.childIndex(previousCode, depth, maxDepth)) {
+                    depth++;
+                }
+            }
+            previousCode = code;
+
+            // Create the grids below it
+            for (; depth < maxDepth; depth++) {
+                int newIGIndex = indirectionPool.size();
+                path[depth] = new IndirectionGrid();
+                indirectionPool.add(path[depth]);
+
+                // The texture index is set once the size of the pool is known
+                path[depth - 1].setNode(Morton.childIndex(code, depth, maxDepth), Cell.createIndex(0, 0, 0, newIGIndex));
+            }
+
+            Cell cell = Cell.createData(voxelColors[voxel],
+                    temp.set(voxelPositions[3 * voxel], voxelPositions[3 * voxel + 1], voxelPositions[3 * voxel + 2]).div(resolution));
+            path[maxDepth - 1].setNode(Morton.childIndex(code, maxDepth, maxDepth), cell);
+        }
+        if (collapseUniform) collapseSubtrees();
+        packTexture();
+        updateLOD();
+    }
+
+    /**
+     * Chooses the smallest texture that fits the indirection pool, and points the INDEX cells to the
+     * location of their grids in that texture. Called at the end of every build; call it after edits to shrink
+     * the texture again, or with a reserve to leave room for new grids.
+     * The dirty regions are kept until they are uploaded. When the size of the texture changes, every grid moves,
+     * so the texture has to be uploaded again in full, after which the dirty regions can be cleared.
+     */
+    public void packTexture() {
+        packTexture(0);
+    }
+
+    /**
+     * @param reserveGrids Number of extra grids that {@link #setVoxel(int, int, int, int)} can create
+     *                     before the texture has to be packed again
+     */
+    public void packTexture(int reserveGrids) {
+        packTexture(reserveGrids, false);
+    }
+
+    private void packTexture(int reserveGrids, boolean parallel) {
+        Vector3i blocks = getTextureBlocks(indirectionPool.size() + reserveGrids, maxTextureBlocks);
+        setTextureSize(2 * blocks.x, 2 * blocks.y, 2 * blocks.z);
+
+        // Freed grids stay where they are, so they keep their place in the pool
+        IntStream indices = IntStream.range(0, indirectionPool.size());
+        (parallel ? indices.parallel() : indices).forEach(i -> {
+            Vector3f textureIndex = new Vector3f();
+            for (Cell cell : indirectionPool.get(i).getChildren()) {
+                if (cell.getNodeType() == Cell.NodeType.INDEX) {
+                    cell.setIndex(getNormalizedTextureIndex(cell.getPointer(), textureIndex), cell.getPointer());
+                }
+            }
+        });
+    }
+
+    /**
+     * Finds the smallest number of 2x2x2 blocks along each axis that fits a number of indirection grids.
+     * The texture does not have to be a cube: of all sizes that waste the least texels, the one with the smallest
+     * maximum dimension is chosen.
+     * @return The number of blocks along x, y and z
+     */
+    static Vector3i getTextureBlocks(int numGrids) {
+        return getTextureBlocks(numGrids, MAX_TEXTURE_BLOCKS);
+    }
+
+    static Vector3i getTextureBlocks(int numGrids, int maxBlocks) {
+        numGrids = Math.max(numGrids, 1);
+        if ((long) numGrids > (long) maxBlocks * maxBlocks * maxBlocks) {
+            throw new IllegalStateException(numGrids + " indirection grids do not fit in a texture of "
+                    + maxBlocks + "^3 blocks");
+        }
+
+        Vector3i best = new Vector3i(maxBlocks);
+        long bestVolume = Long.MAX_VALUE;
+        int bestMax = Integer.MAX_VALUE;
+        for (int z = 1; z <= maxBlocks; z++) {
+            for (int y = 1; y <= maxBlocks; y++) {
+                long x = (numGrids + (long) y * z - 1) / ((long) y * z);
+                if (x > maxBlocks) continue;
+                long volume = x * y * z;
+                int max = Math.max((int) x, Math.max(y, z));
+                if (volume < bestVolume || (volume == bestVolume && max < bestMax)) {
+                    best.set((int) x, y, z);
+                    bestVolume = volume;
+                    bestMax = max;
+                }
+                // Larger y only adds empty rows
+                if (x == 1) break;
+            }
+        }
+        return best;
+    }
+
+    void setTextureSize(int width, int height, int depth) {
+        this.textureWidth = width;
+        this.textureHeight = height;
+        this.textureDepth = depth;
+    }
+
+    /**
+     * @return The number of indirection grids that fit in the texture
+     */
+    public int getTextureCapacity() {
+        return (textureWidth / 2) * (textureHeight / 2) * (textureDepth / 2);
+    }
+
+    /**
+     * Sets the voxel at x, y, z to a color, creating the indirection grids on its path that do not exist yet.
+     * The changed grids are recorded in {@link #getDirtyRegions()}, so at most one grid per depth has to be updated
+     * in the texture.
+     * @param x, y, z Coordinates of the voxel, between 0 and 2^maxDepth
+     * @param rgb Color of the voxel as 0xRRGGBB
+     */
+    public void setVoxel(int x, int y, int z, int rgb) {
+        checkEditable(x, y, z);
+        if (indirectionPool.isEmpty()) {
+            allocateIndirectionGrid();
+        }
+
+        int igIndex = 0;
+        for (int depth = 1; depth < maxDepth; depth++) {
+            IndirectionGrid ig = indirectionPool.get(igIndex);
+            int child = getChildIndex(x, y, z, depth);
+            Cell cell = ig.getChildren()[child];
+            if (cell.getNodeType() == Cell.NodeType.INDEX) {
+                igIndex = cell.getPointer();
+                continue;
+            }
+
+            int newIGIndex = allocateIndirectionGrid();
+            if (cell.getNodeType() == Cell.NodeType.DATA) {
+                // A data cell above max depth covers its whole subtree, so its children keep its color
+                IndirectionGrid newIG = indirectionPool.get(newIGIndex);
+                for (int i = 0; i < 8; i++) {
+                    newIG.setNode(i, cell);
+                }
+            }
+            ig.setNode(child, Cell.createIndex(getNormalizedTextureIndex(newIGIndex), newIGIndex));
+            dirtyRegions.markDirty(igIndex);
+            igIndex = newIGIndex;
+        }
+
+        Cell cell = Cell.createData(rgb, new Vector3f(x, y, z).div(1 << maxDepth));
+        indirectionPool.get(igIndex).setNode(getChildIndex(x, y, z, maxDepth), cell);
+        dirtyRegions.markDirty(igIndex);
+        updatePathLOD(x, y, z);
+    }
+
+    /**
+     * Removes the voxel at x, y, z. Indirection grids that become empty are freed, and are reused by later edits.
+     * The changed grids are recorded in {@link #getDirtyRegions()}.
+     * @param x, y, z Coordinates of the voxel, between 0 and 2^maxDepth
+     */
+    public void clearVoxel(int x, int y, int z) {
+        checkEditable(x, y, z);
+        if (indirectionPool.isEmpty()) return;
+
+        // Data cells above max depth are subdivided first, so that only this voxel is removed
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            Cell cell = findCell(x, y, z, depth);
+            if (cell.getNodeType() == Cell.NodeType.EMPTY) return;
+            if (cell.getNodeType() == Cell.NodeType.DATA && depth < maxDepth) {
+                setVoxel(x, y, z, 0);
+                break;
+            }
+        }
+
+        // Grid index at each depth on the path to the voxel
+        int[] path = new int[maxDepth];
+        for (int depth = 1; depth < maxDepth; depth++) {
+            path[depth] = indirectionPool.get(path[depth - 1]).getChildren()[getChildIndex(x, y, z, depth)].getPointer();
+        }
+
+        for (int depth = maxDepth; depth > 0; depth--) {
+            int igIndex = path[depth - 1];
+            IndirectionGrid ig = indirectionPool.get(igIndex);
+            ig.setNode(getChildIndex(x, y, z, depth), Cell.createEmpty());
+            dirtyRegions.markDirty(igIndex);
+
+            // Stop at the root or at the first grid that still has other children
+            if (igIndex == 0 || !isEmpty(ig)) break;
+            freeIndirectionGrids.push(igIndex);
+        }
+        updatePathLOD(x, y, z);
+    }
+
+    /**
+     * Updates the average colors of all grids from the bottom up, see {@link #getLODTextureData()}.
+     * Called at the end of every build, and by edits for the grids on the path to the edited voxel.
+     */
+    public void updateLOD() {
+        if (indirectionPool.isEmpty()) return;
+        updateLOD(0, new BitSet(indirectionPool.size()));
+    }
+
+    private void updateLOD(int igIndex, BitSet updated) {
+        // Grids of a DAG can be reached through multiple parents
+        if (updated.get(igIndex)) return;
+        updated.set(igIndex);
+
+        IndirectionGrid ig = indirectionPool.get(igIndex);
+        for (Cell cell : ig.getChildren()) {
+            if (cell.getNodeType() == Cell.NodeType.INDEX) {
+                updateLOD(cell.getPointer(), updated);
+            }
+        }
+        ig.updateAverageColor(indirectionPool);
+    }
+
+    private void updatePathLOD(int x, int y, int z) {
+        int[] path = new int[maxDepth];
+        int length = 0;
+        int igIndex = 0;
+        while (true) {
+            path[length++] = igIndex;
+            if (length == maxDepth) break;
+            Cell cell = indirectionPool.get(igIndex).getChildren()[getChildIndex(x, y, z, length)];
+            if (cell.getNodeType() != Cell.NodeType.INDEX) break;
+            igIndex = cell.getPointer();
+        }
+        for (int i = length - 1; i >= 0; i--) {
+            indirectionPool.get(path[i]).updateAverageColor(indirectionPool);
+        }
+    }
+
+    /**
+     * Looks up a voxel like treeLookup in the shader, but stops at a maximum depth
+     * @param x, y, z Coordinates of the voxel, between 0 and 2^maxDepth
+     * @param depth The depth at which to stop. INDEX cells at this depth return the average color of their subtree
+     * @return The color as 0xAARRGGBB, with the coverage of the node as alpha, or 0 for an empty cell
+     */
+    public int lookup(int x, int y, int z, int depth) {
+        if (indirectionPool.isEmpty()) return 0;
+        IndirectionGrid ig = indirectionPool.get(0);
+        // Reflection of the current grid in a symmetric DAG: real child i is stored at i ^ mirror
+        int mirror = 0;
+        for (int d = 1; d <= maxDepth; d++) {
+            Cell cell = ig.getChildren()[getChildIndex(x, y, z, d) ^ mirror];
+            switch (cell.getNodeType()) {
+                case EMPTY:
+                    return 0;
+                case DATA:
+                    return 0xFF << 24 | cell.getRGB();
+                default:
+                    ig = indirectionPool.get(cell.getPointer());
+                    mirror ^= cell.getMirror();
+                    if (d == depth) return ig.getAverageColor();
+            }
+        }
+        throw new IllegalStateException("INDEX cell below max depth " + maxDepth);
+    }
+
+    /**
+     * Returns the cell at x, y, z at the given depth, or the empty or data cell above it where the tree ends
+     */
+    private Cell findCell(int x, int y, int z, int depth) {
+        IndirectionGrid ig = indirectionPool.get(0);
+        for (int d = 1; ; d++) {
+            Cell cell = ig.getChildren()[getChildIndex(x, y, z, d)];
+            if (d == depth || cell.getNodeType() != Cell.NodeType.INDEX) return cell;
+            ig = indirectionPool.get(cell.getPointer());
+        }
+    }
+
+    private int allocateIndirectionGrid() {
+        Integer freeIndex = freeIndirectionGrids.poll();
+        if (freeIndex != null) {
+            // Freed grids only contain empty cells
+            dirtyRegions.markDirty(freeIndex);
+            return freeIndex;
+        }
+
+        if (indirectionPool.size() >= getTextureCapacity()) {
+            throw new IllegalStateException("The indirection pool does not fit in a texture of " + textureWidth + "x"
+                    + textureHeight + "x" + textureDepth + ", pack the texture with a reserve before editing");
+        }
+        indirectionPool.add(new IndirectionGrid());
+        dirtyRegions.markDirty(indirectionPool.size() - 1);
+        return indirectionPool.size() - 1;
+    }
+
+    private int getChildIndex(int x, int y, int z, int depth) {
+        int shift = maxDepth - depth;
+        return ((x >> shift) & 1) + 2 * ((y >> shift) & 1) + 4 * ((z >> shift) & 1);
     }
 
-    private static Vector3f[] childBoxOffsets = {
+    private static boolean isEmpty(IndirectionGrid ig) {
+        for (Cell cell : ig.getChildren()) {
+            if (cell.getNodeType() != Cell.NodeType.EMPTY) return false;
+        }
+        return true;
+    }
+
+    private void checkEditable(int x, int y, int z) {
+        if (dag) {
+            throw new IllegalStateException("Grids of a DAG are shared by multiple subtrees, so they cannot be edited");
+        }
+        int resolution = 1 << maxDepth;
+        if (x < 0 || y < 0 || z < 0 || x >= resolution || y >= resolution || z >= resolution) {
+            throw new IllegalArgumentException("Voxel " + x + ", " + y + ", " + z + " is outside of the " + resolution + "^3 volume");
+        }
+    }
+
+    /**
+     * Turns the octree into a Sparse Voxel DAG: subtrees with the same contents are merged into a single subtree
+     * that all of their parents point to. Grids are compared bottom-up, so that two grids are identical when their
+     * data cells have the same color and their index cells point to the same merged grids.
+     *
+     * The merged pool is in reverse post order, with the root first and every grid before its children,
+     * and the texture is packed again.
+     * Afterwards the SVO cannot be edited, and the real location of a shared data cell is the location of one of
+     * the voxels that it represents.
+     * @return The compression ratio: the number of grids before divided by the number of grids after merging
+     */
+    public float compressToDAG() {
+        return compressToDAG(false);
+    }
+
+    /**
+     * @param symmetric Also merge subtrees that are reflections of each other along the x, y and/or z axis.
+     *                  Index cells then store the reflection of the grid they point to, which can only be
+     *                  encoded by {@link WideCellEncoding}: only {@link #getWideTextureData()} can be used afterwards
+     */
+    public float compressToDAG(boolean symmetric) {
+        int numGridsBefore = indirectionPool.size();
+        if (numGridsBefore == 0) return 1;
+
+        // Find the unique grids in post order, so that children get a merged index before their parents
+        HashMap<GridKey, Integer> uniqueIndices = new HashMap<>();
+        ArrayList<IndirectionGrid> uniqueGrids = new ArrayList<>();
+        ArrayList<Integer> symmetries = new ArrayList<>();
+        // Grids of a tree that is already a DAG are reached once per parent, but must only be merged once
+        int[] mergedGrids = new int[numGridsBefore];
+        Arrays.fill(mergedGrids, -1);
+        int root = mergeSubtree(0, symmetric, mergedGrids, uniqueIndices, uniqueGrids, symmetries);
+        if ((root & 7) != 0) {
+            // The root has no index cell to store its reflection in, so it is stored as it is
+            reflect(uniqueGrids.get(uniqueGrids.size() - 1), root & 7, symmetries);
+        }
+
+        // Reverse the post order to put the root first, the place where traversal starts
+        int numUnique = uniqueGrids.size();
+        ArrayList<IndirectionGrid> merged = new ArrayList<>(numUnique);
+        for (int i = numUnique - 1; i >= 0; i--) {
+            IndirectionGrid ig = uniqueGrids.get(i);
+            for (Cell cell : ig.getChildren()) {
+                if (cell.getNodeType() == Cell.NodeType.INDEX) {
+                    cell.setIndex(0, 0, 0, numUnique - 1 - cell.getPointer());
+                }
+            }
+            merged.add(ig);
+        }
+
+        indirectionPool.clear();
+        indirectionPool.addAll(merged);
+        freeIndirectionGrids.clear();
+        dag = true;
+        symmetricDag |= symmetric;
+        dirtyRegions.markAllDirty(indirectionPool.size());
+        packTexture();
+        updateLOD();
+
+        return numGridsBefore / (float) numUnique;
+    }
+
+    /**
+     * Replaces every subtree whose voxels are all there with the same color by a single data cell, at the highest
+     * level possible: a grid of 8 data cells with the same color becomes a data cell in its parent, which may in turn
+     * make the parent uniform. The root grid is always kept.
+     * The remaining grids keep their order in the pool, freed grids are dropped, and the texture is packed again.
+     * @return The number of indirection grids that were removed
+     */
+    public int collapseUniformSubtrees() {
+        int numRemoved = collapseSubtrees();
+        dirtyRegions.markAllDirty(indirectionPool.size());
+        packTexture();
+        updateLOD();
+        return numRemoved;
+    }
+
+    private int collapseSubtrees() {
+        if (indirectionPool.isEmpty()) return 0;
+
+        int[] uniformColors = new int[indirectionPool.size()];
+        BitSet visited = new BitSet(indirectionPool.size());
+        collapseSubtree(0, uniformColors, visited);
+        int numGridsBefore = visited.cardinality();
+
+        // Keep the grids that can still be reached from the root, in the same order
+        BitSet reachable = new BitSet(indirectionPool.size());
+        markReachable(0, reachable);
+        int[] newIndices = new int[indirectionPool.size()];
+        ArrayList<IndirectionGrid> kept = new ArrayList<>(reachable.cardinality());
+        for (int i = reachable.nextSetBit(0); i >= 0; i = reachable.nextSetBit(i + 1)) {
+            newIndices[i] = kept.size();
+            kept.add(indirectionPool.get(i));
+        }
+        for (IndirectionGrid ig : kept) {
+            for (Cell cell : ig.getChildren()) {
+                if (cell.getNodeType() == Cell.NodeType.INDEX) {
+                    cell.setIndex(0, 0, 0, newIndices[cell.getPointer()]);
+                }
+            }
+        }
+
+        indirectionPool.clear();
+        indirectionPool.addAll(kept);
+        freeIndirectionGrids.clear();
+        return numGridsBefore - kept.size();
+    }
+
+    /**
+     * Collapses the uniform subtrees below a grid, bottom-up
+     * @param uniformColors The color of every visited grid that is uniform, or NOT_UNIFORM.
+     *                      Grids of a DAG are visited once, and collapsed in all of their parents
+     * @return The color of the grid as 0xRRGGBB if all of its children are data cells with that color, else NOT_UNIFORM
+     */
+    private int collapseSubtree(int igIndex, int[] uniformColors, BitSet visited) {
+        if (visited.get(igIndex)) return uniformColors[igIndex];
+        visited.set(igIndex);
+
+        IndirectionGrid ig = indirectionPool.get(igIndex);
+        Cell[] children = ig.getChildren();
+        int color = NOT_UNIFORM;
+        for (int i = 0; i < 8; i++) {
+            if (children[i].getNodeType() == Cell.NodeType.INDEX) {
+                int childColor = collapseSubtree(children[i].getPointer(), uniformColors, visited);
+                if (childColor != NOT_UNIFORM) {
+                    // The first child of a uniform grid is at the corner of the grid, like the new data cell
+                    Cell corner = indirectionPool.get(children[i].getPointer()).getChildren()[0];
+                    ig.setNode(i, corner.getRealLocation() != null ? Cell.createData(childColor, corner.getRealLocation()) : Cell.createData(childColor));
+                }
+            }
+
+            int childColor = children[i].getNodeType() == Cell.NodeType.DATA ? children[i].getRGB() : NOT_UNIFORM;
+            if (i == 0) {
+                color = childColor;
+            } else if (childColor != color) {
+                color = NOT_UNIFORM;
+            }
+        }
+        uniformColors[igIndex] = color;
+        return color;
+    }
+
+    private void markReachable(int igIndex, BitSet reachable) {
+        if (reachable.get(igIndex)) return;
+        reachable.set(igIndex);
+        for (Cell cell : indirectionPool.get(igIndex).getChildren()) {
+            if (cell.getNodeType() == Cell.NodeType.INDEX) {
+                markReachable(cell.getPointer(), reachable);
+            }
+        }
+    }
+
+    /**
+     * Merges the subtree of a grid with the unique grids found so far.
+     * For a symmetric DAG, the grid is first reflected into the variant with the smallest encoding. All reflections of
+     * a subtree end up as the same variant, so they are merged as well.
+     * @param mergedGrids The result for every grid of the pool that was merged already, or -1
+     * @param symmetries For every unique grid, the reflections that leave it unchanged as bits 1 << mirror
+     * @return The index of the unique grid in post order times 8, plus the reflection that turns the unique grid
+     * back into this subtree
+     */
+    private int mergeSubtree(int igIndex, boolean symmetric, int[] mergedGrids, HashMap<GridKey, Integer> uniqueIndices,
+                             ArrayList<IndirectionGrid> uniqueGrids, ArrayList<Integer> symmetries) {
+        if (mergedGrids[igIndex] >= 0) return mergedGrids[igIndex];
+        IndirectionGrid ig = indirectionPool.get(igIndex);
+        Cell[] children = ig.getChildren();
+
+        for (int i = 0; i < 8; i++) {
+            if (children[i].getNodeType() == Cell.NodeType.INDEX) {
+                int merged = mergeSubtree(children[i].getPointer(), symmetric, mergedGrids, uniqueIndices, uniqueGrids, symmetries);
+                // Point to the merged child, on top of the reflection that a symmetric DAG already applied to it
+                int mirror = (merged & 7) ^ children[i].getMirror();
+                children[i].setIndex(0, 0, 0, merged >> 3);
+                children[i].setMirror(normalizeMirror(mirror, symmetries.get(merged >> 3)));
+            }
+        }
+
+        int[] cells = encodeReflected(children, 0, symmetries, new int[8]);
+        int mirror = 0;
+        if (symmetric) {
+            int[] reflected = new int[8];
+            for (int m = 1; m < 8; m++) {
+                if (compare(encodeReflected(children, m, symmetries, reflected), cells) < 0) {
+                    int[] smallest = reflected;
+                    reflected = cells;
+                    cells = smallest;
+                    mirror = m;
+                }
+            }
+            reflect(ig, mirror, symmetries);
+        }
+
+        GridKey key = new GridKey(cells);
+        Integer uniqueIndex = uniqueIndices.get(key);
+        if (uniqueIndex == null) {
+            uniqueIndex = uniqueGrids.size();
+            uniqueIndices.put(key, uniqueIndex);
+            uniqueGrids.add(ig);
+
+            int symmetry = 1;
+            if (symmetric) {
+                int[] reflected = new int[8];
+                for (int m = 1; m < 8; m++) {
+                    if (Arrays.equals(encodeReflected(ig.getChildren(), m, symmetries, reflected), cells)) {
+                        symmetry |= 1 << m;
+                    }
+                }
+            }
+            symmetries.add(symmetry);
+        }
+        // Reflections are their own inverse
+        mergedGrids[igIndex] = uniqueIndex << 3 | mirror;
+        return mergedGrids[igIndex];
+    }
+
+    /**
+     * A grid that is symmetric along an axis looks the same with or without reflecting it along that axis.
+     * To make sure that equal subtrees point to their children with equal reflections, the smallest of these
+     * equivalent reflections is used.
+     * @param symmetry The reflections that leave the grid unchanged, as bits 1 << mirror
+     */
+    private static int normalizeMirror(int mirror, int symmetry) {
+        for (int m = 0; m < 8; m++) {
+            if ((symmetry & (1 << (m ^ mirror))) != 0) return m;
+        }
+        return mirror;
+    }
+
+    /**
+     * Encodes the cells of a grid as if the grid was reflected: cell i moves to i ^ mirror,
+     * and the subtrees of index cells are reflected as well
+     */
+    private static int[] encodeReflected(Cell[] children, int mirror, ArrayList<Integer> symmetries, int[] target) {
+        for (int i = 0; i < 8; i++) {
+            Cell cell = children[i ^ mirror];
+            target[i] = cell.getNodeType() == Cell.NodeType.INDEX
+                    ? WideCellEncoding.encodeIndex(cell.getPointer(), normalizeMirror(cell.getMirror() ^ mirror, symmetries.get(cell.getPointer())))
+                    : WideCellEncoding.encode(cell);
+        }
+        return target;
+    }
+
+    private static void reflect(IndirectionGrid ig, int mirror, ArrayList<Integer> symmetries) {
+        if (mirror == 0) return;
+        Cell[] children = ig.getChildren().clone();
+        for (int i = 0; i < 8; i++) {
+            Cell cell = children[i ^ mirror];
+            if (cell.getNodeType() == Cell.NodeType.INDEX) {
+                cell.setMirror(normalizeMirror(cell.getMirror() ^ mirror, symmetries.get(cell.getPointer())));
+            }
+            ig.setNode(i, cell);
+        }
+    }
+
+    private static int compare(int[] a, int[] b) {
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i]) return Integer.compare(a[i], b[i]);
+        }
+        return 0;
+    }
+
+    /** The cells of a grid, encoded by {@link WideCellEncoding} with index cells pointing to merged grids */
+    private static class GridKey {
+        private final int[] cells;
+        private final int hash;
+
+        GridKey(int[] cells) {
+            this.cells = cells;
+            this.hash = Arrays.hashCode(cells);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof GridKey && Arrays.equals(cells, ((GridKey) other).cells);
+        }
+    }
+
+    static Vector3f[] childBoxOffsets = {
             new Vector3f(0, 0, 0),
             new Vector3f(1, 0, 0),
             new Vector3f(0, 1, 0),
@@ -64,21 +813,32 @@ public class SVO {
     };
 
     /**
-     * Every indirection grid is located in texture memory at a 2x2x2 cube, starting at 0, 0, 0
+     * Every indirection grid is located in texture memory at a 2x2x2 cube, starting at 0, 0, 0.
+     * INDEX cells store which of these blocks their grid is in, as one byte per axis: the block coordinate is
+     * placed in the middle of its byte value, so that it is written back exactly.
      * @param indirectionGridIndex
      * @return
      */
     protected Vector3f getNormalizedTextureIndex(int indirectionGridIndex) {
-        Vector3i i = getTextureIndex(indirectionGridIndex);
-        return new Vector3f(i).div((float) getMaxTextureSize());
+        return getNormalizedTextureIndex(indirectionGridIndex, new Vector3f());
+    }
+
+    protected Vector3f getNormalizedTextureIndex(int indirectionGridIndex, Vector3f target) {
+        int blocksX = textureWidth / 2;
+        int blocksY = textureHeight / 2;
+        target.set(
+                indirectionGridIndex % blocksX,
+                (indirectionGridIndex / blocksX) % blocksY,
+                indirectionGridIndex / (blocksX * blocksY));
+        return target.add(0.5f, 0.5f, 0.5f).div(255f);
     }
 
     protected Vector3i getTextureIndex(int indirectionGridIndex, Vector3i target) {
-        int textureSize = getMaxTextureSize();
-        int halfTextureSize = textureSize / 2;
-        int x = (indirectionGridIndex % halfTextureSize) * 2;
-        int y = ((indirectionGridIndex / halfTextureSize) % halfTextureSize) * 2;
-        int z = ((indirectionGridIndex / (halfTextureSize * halfTextureSize))) * 2;
+        int blocksX = textureWidth / 2;
+        int blocksY = textureHeight / 2;
+        int x = (indirectionGridIndex % blocksX) * 2;
+        int y = ((indirectionGridIndex / blocksX) % blocksY) * 2;
+        int z = (indirectionGridIndex / (blocksX * blocksY)) * 2;
         target.set(x, y, z);
 
 //        if (x >= textureSize || y >= textureSize || z >= textureSize) {
@@ -92,6 +852,104 @@ public class SVO {
         return getTextureIndex(indirectionGridIndex, new Vector3i());
     }
 
+    /**
+     * Updates the geometry index to the current bounds of the geometries.
+     * If geometries were added or removed, the index is rebuilt. Otherwise it is refitted in O(n), which keeps
+     * the tree structure, so this is cheap enough to call every frame for moving geometries.
+     * Call {@link BVH#rebuild()} on the index to restore its quality after large movements.
+     */
+    public void updateGeometryIndex() {
+        if (geometryIndex == null || geometryIndex.getNumItems() != geometries.size()) {
+            geometryIndex = BVH.create(geometries);
+        } else {
+            BVH.getBounds(geometries, geometryIndex.getItemBounds());
+            geometryIndex.refit();
+        }
+    }
+
+    /**
+     * Finds the geometry that a ray hits first inside the SVO, to the precision of a voxel.
+     * Geometries are hit at the same distance in order of index, like in the build
+     * @param origin
+     * @param direction
+     * @return The geometry, or null if the ray misses all geometries inside the SVO
+     */
+    public Geometry pickGeometry(Vector3f origin, Vector3f direction) {
+        if (geometryIndex == null) {
+            updateGeometryIndex();
+        }
+        if (direction.lengthSquared() == 0) {
+            return null;
+        }
+        // Only the part of the ray inside the SVO, where the geometries are voxelized
+        float tMin = 0, tMax = Float.POSITIVE_INFINITY;
+        for (int axis = 0; axis < 3; axis++) {
+            float start = this.origin.get(axis), end = start + worldSize;
+            float o = origin.get(axis), d = direction.get(axis);
+            if (d == 0) {
+                // Parallel to the faces, so the ray is either between them or misses the SVO
+                if (o < start || o > end) return null;
+                continue;
+            }
+            float t1 = (start - o) / d, t2 = (end - o) / d;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+        }
+        if (tMin > tMax) {
+            return null;
+        }
+        int item = geometryIndex.findNearest(origin.x, origin.y, origin.z, direction.x, direction.y, direction.z, tMin, tMax, geometryRayTest);
+        return item >= 0 ? geometries.get(item) : null;
+    }
+
+    /** Indices of all geometries, the candidates for intersections with the root node */
+    int[] allGeometries() {
+        return IntStream.range(0, geometries.size()).toArray();
+    }
+
+    /**
+     * Temporary storage of a single build thread, reused for every node so that createNode does not allocate
+     */
+    static class BuildScratch {
+        /** Temporary vector for computing the texture index and color of new cells */
+        final Vector3f temp = new Vector3f();
+        /**
+         * The indices of the geometries that intersect with the node at each depth, in ascending order.
+         * Only these can intersect with the children of that node
+         */
+        final int[][] candidates;
+        final int[] numCandidates;
+        /** Geometry index queries, only used when there are many candidates */
+        final GeometryQuery query;
+        /** The 8 child boxes of a node, which every candidate tests at once when there are few candidates */
+        final BoxBatch childBoxes = new BoxBatch();
+        /**
+         * Per depth and candidate, the masks of the children that the candidate intersects and that it fills,
+         * see {@link #classifyChildren}
+         */
+        final int[][] childMasks, solidMasks;
+
+        /**
+         * @param nodeCandidates The candidates of the node at depth. The candidates of the nodes below it are a subset,
+         *                       also when found through the geometry index, so all arrays are sized to these
+         */
+        BuildScratch(int maxDepth, int depth, int[] nodeCandidates) {
+            int maxCandidates = nodeCandidates.length;
+            query = maxCandidates > GEOMETRY_INDEX_THRESHOLD ? new GeometryQuery(maxCandidates) : null;
+            candidates = new int[maxDepth][];
+            numCandidates = new int[maxDepth];
+            childMasks = new int[maxDepth][];
+            solidMasks = new int[maxDepth][];
+            for (int d = depth; d < maxDepth; d++) {
+                candidates[d] = new int[maxCandidates];
+                childMasks[d] = new int[Math.min(maxCandidates, GEOMETRY_INDEX_THRESHOLD)];
+                solidMasks[d] = new int[Math.min(maxCandidates, GEOMETRY_INDEX_THRESHOLD)];
+            }
+            System.arraycopy(nodeCandidates, 0, candidates[depth], 0, nodeCandidates.length);
+            numCandidates[depth] = nodeCandidates.length;
+        }
+    }
+
     /**
      * Recursively creates nodes in the core.SVO from the specified geometries.
      *
@@ -101,58 +959,293 @@ public class SVO {
      *      If at max depth, this cell becomes a data cell ,representing the color of the geometry
      *      Else, the cell becomes a link to a new indirection grid that is located in this cell
      *
+     * Only the geometries that intersect with this node are tested against its children, and the ones that
+     * intersect with a child are passed down as the candidates of that child, so deep nodes test only a few geometries.
+     * A child that is fully inside a solid geometry becomes a data cell at its own depth, without being subdivided,
+     * see {@link Geometry#classify}.
+     * Unless there are many candidates, every candidate tests the 8 children at once, see {@link Geometry#classify(BoxBatch)}.
+     * The box and the intersection tests only use primitive floats, so that no garbage is created per node:
+     * the only allocations are the indirection grids and cells that are stored in the pool.
+     *
+     * @param pool The list the indirection grids are added to
      * @param depth
-     * @param boxStart
+     * @param boxX
+     * @param boxY
+     * @param boxZ
+     * @param scratch Contains the geometries that intersect with this node at scratch.candidates[depth]
      */
-    protected int createNode(int depth, Vector3f boxStart) {
-        int currentIGIndex = indirectionPool.size();
+    protected int createNode(ArrayList<IndirectionGrid> pool, int depth, float boxX, float boxY, float boxZ, BuildScratch scratch) {
+        int currentIGIndex = pool.size();
         IndirectionGrid ig = new IndirectionGrid();
-        indirectionPool.add(ig);
-
-        // Todo: Put actual texture index in Index Nodes afterwards,
-        // so that the texture size can be adjusted to the amount of indir nodes
+        pool.add(ig);
 
         // The size of a child box is worldSize / 2^D, e.g. 1 -> 0.5 -> 0.25 -> 0.125 -> ...
         float childBoxSize = worldSize / (float) Math.pow(2, depth + 1);
+        int[] candidates = scratch.candidates[depth];
+        int numCandidates = scratch.numCandidates[depth];
+        int[] childMasks = scratch.childMasks[depth], solidMasks = scratch.solidMasks[depth];
+        boolean batched = numCandidates <= GEOMETRY_INDEX_THRESHOLD;
+        if (batched) {
+            classifyChildren(candidates, numCandidates, boxX, boxY, boxZ, childBoxSize, scratch.childBoxes, childMasks, solidMasks);
+        }
 
         // Loop over all 8 sub-nodes
         for (int i = 0; i < 8; i++) {
-            Vector3f childBoxStart = childBoxOffsets[i].mul(childBoxSize, new Vector3f()).add(boxStart);
-            Vector3f childBoxEnd   = new Vector3f(childBoxSize).add(childBoxStart);
-
-            // Find intersection of this child node with any geometry
-            Geometry intersection = geometries.stream()
-                    .filter((g -> g.intersects(childBoxStart, childBoxEnd)))
-                    .findFirst()
-                    .orElse(null);
+            float childBoxX = childBoxOffsets[i].x * childBoxSize + boxX;
+            float childBoxY = childBoxOffsets[i].y * childBoxSize + boxY;
+            float childBoxZ = childBoxOffsets[i].z * childBoxSize + boxZ;
 
             if (depth + 1 != maxDepth) {
-                // If not at max depth, check whether the child node should be subdivided
-                if (intersection != null) {
+                // If not at max depth, check whether the child node should be subdivided:
+                // Find all geometries that intersect with this child node
+                int numChildCandidates = batched
+                        ? getChildIntersections(i, candidates, numCandidates, childMasks, solidMasks, scratch.candidates[depth + 1])
+                        : findIntersections(candidates, numCandidates, scratch.query,
+                                childBoxX, childBoxY, childBoxZ, childBoxSize, scratch.candidates[depth + 1]);
+                if (numChildCandidates == SOLID_NODE) {
+                    Geometry solid = geometries.get(scratch.candidates[depth + 1][0]);
+                    ig.setNode(i, createDataCell(solid, childBoxX, childBoxY, childBoxZ, scratch.temp));
+                } else if (numChildCandidates > 0) {
                     // Subdivide the child node: Add a new intersection grid
-                    int newIGIndex = createNode(depth + 1, childBoxStart);
+                    scratch.numCandidates[depth + 1] = numChildCandidates;
+                    int newIGIndex = createNode(pool, depth + 1, childBoxX, childBoxY, childBoxZ, scratch);
 
                     // Create a link from the child node to the next indirection grid
-                    // The texture index is the IG at current pool index + 1, which is the size()
-                    Vector3f textureIndex = getNormalizedTextureIndex(newIGIndex);
-                    ig.setNode(i, Cell.createIndex(textureIndex));
+                    // The texture index is set by packTexture, once the size of the pool is known
+                    ig.setNode(i, Cell.createIndex(0, 0, 0, newIGIndex));
                 }
             } else {
                 // If at max depth, possibly add a data node
+                // Find intersection of this child node with any geometry
+                Geometry intersection = batched
+                        ? getChildIntersection(i, candidates, numCandidates, childMasks)
+                        : findIntersection(candidates, numCandidates, scratch.query, childBoxX, childBoxY, childBoxZ, childBoxSize);
                 if (intersection != null) {
-                    // Create a data node with the color of the geometry
-                    Vector3f color = new Vector3f(intersection.getColor());
-                    color.set(childBoxStart).div(worldSize);
-//                    color.set((float) Math.random(), (float) Math.random(), (float) Math.random());
-                    Cell cell = Cell.createData(color);
-                    ig.setNode(i, cell);
+                    ig.setNode(i, createDataCell(intersection, childBoxX, childBoxY, childBoxZ, scratch.temp));
+                }
+            }
+        }
+        return currentIGIndex;
+    }
 
-                    cell.realLocation = new Vector3f(childBoxStart).div(worldSize);
+    /**
+     * Classifies the 8 children of a node with one call per candidate geometry
+     * @param childMasks Receives, per candidate, the children that are not empty
+     * @param solidMasks Receives, per candidate, the children that are solid
+     */
+    void classifyChildren(int[] candidates, int numCandidates, float boxX, float boxY, float boxZ, float childBoxSize,
+                          BoxBatch childBoxes, int[] childMasks, int[] solidMasks) {
+        childBoxes.clear();
+        for (int i = 0; i < 8; i++) {
+            float childBoxX = childBoxOffsets[i].x * childBoxSize + boxX;
+            float childBoxY = childBoxOffsets[i].y * childBoxSize + boxY;
+            float childBoxZ = childBoxOffsets[i].z * childBoxSize + boxZ;
+            childBoxes.add(childBoxX, childBoxY, childBoxZ, childBoxSize + childBoxX, childBoxSize + childBoxY, childBoxSize + childBoxZ);
+        }
+        for (int c = 0; c < numCandidates; c++) {
+            childMasks[c] = geometries.get(candidates[c]).classify(childBoxes);
+            solidMasks[c] = childBoxes.getSolidMask();
+        }
+    }
+
+    /**
+     * Same as {@link #findIntersection}, from the masks of {@link #classifyChildren}
+     */
+    Geometry getChildIntersection(int child, int[] candidates, int numCandidates, int[] childMasks) {
+        for (int c = 0; c < numCandidates; c++) {
+            if ((childMasks[c] >> child & 1) != 0) {
+                return geometries.get(candidates[c]);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Same as {@link #findIntersections}, from the masks of {@link #classifyChildren}
+     */
+    int getChildIntersections(int child, int[] candidates, int numCandidates, int[] childMasks, int[] solidMasks, int[] intersections) {
+        int numIntersections = 0;
+        for (int c = 0; c < numCandidates; c++) {
+            if ((solidMasks[c] >> child & 1) != 0) {
+                intersections[0] = candidates[c];
+                return SOLID_NODE;
+            }
+            if ((childMasks[c] >> child & 1) != 0) {
+                intersections[numIntersections++] = candidates[c];
+            }
+        }
+        return numIntersections;
+    }
+
+    /** Returned by findIntersections when the box is fully inside a solid geometry */
+    static final int SOLID_NODE = -1;
+
+    /**
+     * Returns the first of the candidate geometries that intersects with the box, or null
+     * @param query If there are many candidates, the geometry index is queried instead, with this array as result
+     */
+    Geometry findIntersection(int[] candidates, int numCandidates, GeometryQuery query, float boxX, float boxY, float boxZ, float boxSize) {
+        float boxEndX = boxSize + boxX;
+        float boxEndY = boxSize + boxY;
+        float boxEndZ = boxSize + boxZ;
+        if (numCandidates > GEOMETRY_INDEX_THRESHOLD) {
+            numCandidates = queryGeometryIndex(boxX, boxY, boxZ, boxEndX, boxEndY, boxEndZ, candidates, numCandidates, query);
+            candidates = query.result;
+        }
+        for (int c = 0; c < numCandidates; c++) {
+            Geometry geometry = geometries.get(candidates[c]);
+            if (geometry.classify(boxX, boxY, boxZ, boxEndX, boxEndY, boxEndZ) != Geometry.Classification.EMPTY) {
+                return geometry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Puts the candidate geometries that intersect with the box in the intersections array
+     * @param query If there are many candidates, the geometry index is queried instead, with this array as result
+     * @return The number of intersections, or {@link #SOLID_NODE} if the box is fully inside a solid geometry,
+     * which is then put at intersections[0]
+     */
+    int findIntersections(int[] candidates, int numCandidates, GeometryQuery query, float boxX, float boxY, float boxZ, float boxSize, int[] intersections) {
+        float boxEndX = boxSize + boxX;
+        float boxEndY = boxSize + boxY;
+        float boxEndZ = boxSize + boxZ;
+        if (numCandidates > GEOMETRY_INDEX_THRESHOLD) {
+            numCandidates = queryGeometryIndex(boxX, boxY, boxZ, boxEndX, boxEndY, boxEndZ, candidates, numCandidates, query);
+            candidates = query.result;
+        }
+        int numIntersections = 0;
+        for (int c = 0; c < numCandidates; c++) {
+            Geometry.Classification classification = geometries.get(candidates[c]).classify(boxX, boxY, boxZ, boxEndX, boxEndY, boxEndZ);
+            if (classification == Geometry.Classification.SOLID) {
+                intersections[0] = candidates[c];
+                return SOLID_NODE;
+            }
+            if (classification == Geometry.Classification.SURFACE) {
+                intersections[numIntersections++] = candidates[c];
+            }
+        }
+        return numIntersections;
+    }
+
+    /**
+     * Finds the candidates of which the bounds overlap with the box, sorted by index so that the first intersection
+     * is the same as when testing all geometries in order
+     * @param candidates The candidates of the parent node, in ascending order
+     * @return The number of candidates found, which are put in query.result
+     */
+    private int queryGeometryIndex(float minX, float minY, float minZ, float maxX, float maxY, float maxZ,
+                                   int[] candidates, int numCandidates, GeometryQuery query) {
+        query.candidates = candidates;
+        query.numCandidates = numCandidates;
+        int numResults = geometryIndex.query(minX, minY, minZ, maxX, maxY, maxZ, query, query.result);
+        Arrays.sort(query.result, 0, numResults);
+        return numResults;
+    }
+
+    /**
+     * A query of the geometry index that only finds the candidates of the parent node. Geometries that do not
+     * intersect with the parent cannot intersect with its children, so the result never has more items than the parent
+     */
+    static class GeometryQuery implements BVH.BoxTest {
+        final int[] result;
+        private int[] candidates;
+        private int numCandidates;
+
+        GeometryQuery(int maxCandidates) {
+            result = new int[maxCandidates];
+        }
 
+        @Override
+        public boolean intersects(int item, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+            return Arrays.binarySearch(candidates, 0, numCandidates, item) >= 0;
+        }
+    }
+
+    private Cell createDataCell(Geometry intersection, float childBoxX, float childBoxY, float childBoxZ, Vector3f temp) {
+        // Create a data node with the color of the geometry
+        // For now the normalized location is used as color instead of intersection.getColor()
+        Vector3f location = temp.set(childBoxX, childBoxY, childBoxZ).sub(origin).div(worldSize);
+//        location.set((float) Math.random(), (float) Math.random(), (float) Math.random());
+        return Cell.createData(location, location);
+    }
+
+    /**
+     * Parallel version of {@link #createNode(ArrayList, int, float, float, float, BuildScratch)}.
+     * Returns the subtree of the node in depth-first order. INDEX cells in the subtree contain the offset
+     * from the grid they are in to the grid they point to, since the final pool index is not known yet.
+     */
+    private class CreateNodeTask extends RecursiveTask<ArrayList<IndirectionGrid>> {
+        private final int depth;
+        private final float boxX, boxY, boxZ;
+        /** The geometries that intersect with this node */
+        private final int[] candidates;
+
+        CreateNodeTask(int depth, float boxX, float boxY, float boxZ, int[] candidates) {
+            this.depth = depth;
+            this.boxX = boxX;
+            this.boxY = boxY;
+            this.boxZ = boxZ;
+            this.candidates = candidates;
+        }
+
+        @Override
+        protected ArrayList<IndirectionGrid> compute() {
+            ArrayList<IndirectionGrid> subtree = new ArrayList<>();
+            if (depth >= PARALLEL_DEPTH) {
+                // Small enough: build serially, then make the pointers relative
+                createNode(subtree, depth, boxX, boxY, boxZ, new BuildScratch(maxDepth, depth, candidates));
+                for (int i = 0; i < subtree.size(); i++) {
+                    for (Cell cell : subtree.get(i).getChildren()) {
+                        if (cell.getNodeType() == Cell.NodeType.INDEX) {
+                            cell.setIndex(0, 0, 0, cell.getPointer() - i);
+                        }
+                    }
                 }
+                return subtree;
             }
+
+            IndirectionGrid ig = new IndirectionGrid();
+            subtree.add(ig);
+
+            float childBoxSize = worldSize / (float) Math.pow(2, depth + 1);
+
+            Vector3f temp = new Vector3f();
+            GeometryQuery query = candidates.length > GEOMETRY_INDEX_THRESHOLD ? new GeometryQuery(candidates.length) : null;
+            int[] childCandidates = new int[candidates.length];
+            CreateNodeTask[] childTasks = new CreateNodeTask[8];
+            for (int i = 0; i < 8; i++) {
+                float childBoxX = childBoxOffsets[i].x * childBoxSize + boxX;
+                float childBoxY = childBoxOffsets[i].y * childBoxSize + boxY;
+                float childBoxZ = childBoxOffsets[i].z * childBoxSize + boxZ;
+
+                if (depth + 1 != maxDepth) {
+                    int numChildCandidates = findIntersections(candidates, candidates.length, query,
+                            childBoxX, childBoxY, childBoxZ, childBoxSize, childCandidates);
+                    if (numChildCandidates == SOLID_NODE) {
+                        ig.setNode(i, createDataCell(geometries.get(childCandidates[0]), childBoxX, childBoxY, childBoxZ, temp));
+                    } else if (numChildCandidates > 0) {
+                        childTasks[i] = new CreateNodeTask(depth + 1, childBoxX, childBoxY, childBoxZ,
+                                Arrays.copyOf(childCandidates, numChildCandidates));
+                        childTasks[i].fork();
+                    }
+                } else {
+                    Geometry intersection = findIntersection(candidates, candidates.length, query, childBoxX, childBoxY, childBoxZ, childBoxSize);
+                    if (intersection != null) {
+                        ig.setNode(i, createDataCell(intersection, childBoxX, childBoxY, childBoxZ, temp));
+                    }
+                }
+            }
+
+            // Join in child order, so that the subtrees end up in the same order as in the serial build
+            for (int i = 0; i < 8; i++) {
+                if (childTasks[i] == null) continue;
+                ig.setNode(i, Cell.createIndex(0, 0, 0, subtree.size()));
+                subtree.addAll(childTasks[i].join());
+            }
+            return subtree;
         }
-        return currentIGIndex;
     }
 
     public int getMaxTextureSize() {
@@ -181,55 +1274,314 @@ public class SVO {
         return highestOneBit << 1;
     }
 
+    /** Number of z-slabs of the dense volume that are exported in parallel, see {@link #getNormalVolumeMipmaps(ForkJoinPool)} */
+    private static final int VOLUME_EXPORT_SLABS = 16;
+
+    /**
+     * @return The dense volume of {@link #getNormalVolumeMipmaps(ForkJoinPool)}, without its mip levels
+     */
     public ByteBuffer getNormalVolumeTextureData() {
+        return getNormalVolumeMipmaps(ForkJoinPool.commonPool())[0];
+    }
+
+    /**
+     * Exports the volume as a dense RGBA8 texture of {@link #getMaxTextureSize()}^3 texels, for direct lookups,
+     * with all of its mip levels down to a single texel.
+     * Level 0 holds the color of every texel that is not empty, with alpha 255. When texels are larger than the voxels
+     * at max depth, a texel holds the average color of its voxels. Every other level holds the average color of the
+     * texels below it and as alpha the fraction of the voxels that are filled, at least 1 when any voxel is.
+     *
+     * The tree is not modified. Nodes that end above max depth fill all texels that they cover, and the reflected
+     * grids of a symmetric DAG are exported reflected. The volume is split
+     * into z-slabs that are written in parallel, after which the levels in which a texel spans more than one slab
+     * are reduced from the sums of the slabs.
+     * @return The texture data per mip level, starting at the full resolution
+     */
+    public ByteBuffer[] getNormalVolumeMipmaps(ForkJoinPool pool) {
         int textureSize = getMaxTextureSize();
-        ByteBuffer textureData = BufferUtils.createByteBuffer(textureSize * textureSize * textureSize * 4); // 4 bytes since r g b a
+        int numLevels = Integer.numberOfTrailingZeros(textureSize) + 1;
+        ByteBuffer[] mipmaps = new ByteBuffer[numLevels];
+        for (int level = 0; level < numLevels; level++) {
+            int size = textureSize >> level;
+            mipmaps[level] = BufferUtils.createByteBuffer(size * size * size * 4); // 4 bytes since r g b a
+        }
+        if (indirectionPool.isEmpty()) return mipmaps;
 
-        for (int i = 0; i < indirectionPool.size(); i++) {
-            for (Cell cell : indirectionPool.get(i).getChildren()) {
-                if (cell.getNodeType() == Cell.NodeType.DATA) {
-                    Vector3f realLocation = cell.realLocation;
-                    realLocation.mul(textureSize);
-                    int textureIndex = (int) realLocation.x;
-                    textureIndex += (int) realLocation.y * textureSize;
-                    textureIndex += (int) realLocation.z * textureSize * textureSize;
-                    textureIndex *= 4;
-                    cell.getData(textureIndex, textureData);
+        int numSlabs = Math.min(VOLUME_EXPORT_SLABS, textureSize);
+        VolumeExport export = new VolumeExport(textureSize, numSlabs, mipmaps);
+        pool.submit(() -> IntStream.range(0, numSlabs).parallel().forEach(export::exportSlab)).join();
+        export.reduceSlabs();
+        return mipmaps;
+    }
+
+    /**
+     * Export of {@link #getNormalVolumeMipmaps(ForkJoinPool)}. Positions are in voxels at max depth, levels are mip
+     * levels of the texture. The node of a texel at level k is at depth {@link #maxDepth} - texelShift - k.
+     */
+    private class VolumeExport {
+        final int textureSize, numSlabs;
+        final ByteBuffer[] mipmaps;
+        /** Number of levels below max depth at which a node is a texel of level 0 */
+        final int texelShift;
+        /** Level at which a texel is as thick as a slab */
+        final int slabLevel;
+        /** Number of filled voxels and sums of their colors for every texel of the slab level, 4 longs per texel */
+        final long[] slabSums;
+
+        VolumeExport(int textureSize, int numSlabs, ByteBuffer[] mipmaps) {
+            this.textureSize = textureSize;
+            this.numSlabs = numSlabs;
+            this.mipmaps = mipmaps;
+            this.texelShift = maxDepth - Integer.numberOfTrailingZeros(textureSize);
+            this.slabLevel = Integer.numberOfTrailingZeros(textureSize / numSlabs);
+            this.slabSums = new long[4 * numSlabs * numSlabs * numSlabs];
+        }
+
+        void exportSlab(int slab) {
+            long[][] scratch = new long[maxDepth + 2][4];
+            exportAbove(Cell.createIndex(0, 0, 0, 0), 0, 0, 0, 0, 0, slab, scratch);
+        }
+
+        /**
+         * Descends to the nodes of the slab level that are in the slab, subdividing data cells that are larger
+         * @param mirror Reflection of the grid that the cell is in, in a symmetric DAG
+         */
+        private void exportAbove(Cell cell, int mirror, int depth, int x, int y, int z, int slab, long[][] scratch) {
+            int size = 1 << (maxDepth - depth), slabThickness = 1 << (texelShift + slabLevel);
+            if (z + size <= slab * slabThickness || z >= (slab + 1) * slabThickness) return;
+
+            int level = maxDepth - depth - texelShift;
+            if (level == slabLevel) {
+                long[] sums = new long[4];
+                exportNode(cell, mirror, depth, x, y, z, sums, scratch);
+                int shift = texelShift + slabLevel;
+                int texel = ((z >> shift) * numSlabs + (y >> shift)) * numSlabs + (x >> shift);
+                System.arraycopy(sums, 0, slabSums, 4 * texel, 4);
+                return;
+            }
+
+            if (cell.getNodeType() == Cell.NodeType.EMPTY) return;
+
+            Cell[] children = cell.getNodeType() == Cell.NodeType.INDEX ? indirectionPool.get(cell.getPointer()).getChildren() : null;
+            int childMirror = mirror ^ cell.getMirror();
+            int half = size / 2;
+            for (int i = 0; i < 8; i++) {
+                // Child i of a reflected grid is stored at i ^ mirror
+                exportAbove(children != null ? children[i ^ childMirror] : cell, childMirror, depth + 1,
+                        x + (i & 1) * half, y + (i >> 1 & 1) * half, z + (i >> 2) * half, slab, scratch);
+            }
+        }
+
+        /**
+         * Writes the texels below a node and adds the number of filled voxels and the sums of their colors to sums.
+         * The texel of the node itself is written by the caller
+         */
+        private void exportNode(Cell cell, int mirror, int depth, int x, int y, int z, long[] sums, long[][] scratch) {
+            int level = maxDepth - depth - texelShift;
+            if (cell.getNodeType() == Cell.NodeType.DATA) {
+                int rgb = cell.getRGB();
+                long count = 1L << (3 * (maxDepth - depth));
+                sums[0] += count;
+                sums[1] += count * (rgb >> 16 & 0xFF);
+                sums[2] += count * (rgb >> 8 & 0xFF);
+                sums[3] += count * (rgb & 0xFF);
+                for (int l = 0; l < level; l++) {
+                    fill(l, x >> (texelShift + l), y >> (texelShift + l), z >> (texelShift + l), 1 << (level - l), rgb);
+                }
+            } else if (cell.getNodeType() == Cell.NodeType.INDEX) {
+                Cell[] children = indirectionPool.get(cell.getPointer()).getChildren();
+                int childMirror = mirror ^ cell.getMirror();
+                long[] childSums = scratch[depth + 1];
+                int half = 1 << (maxDepth - depth - 1);
+                for (int i = 0; i < 8; i++) {
+                    Arrays.fill(childSums, 0);
+                    int childX = x + (i & 1) * half, childY = y + (i >> 1 & 1) * half, childZ = z + (i >> 2) * half;
+                    exportNode(children[i ^ childMirror], childMirror, depth + 1, childX, childY, childZ, childSums, scratch);
+                    if (childSums[0] == 0) continue;
+                    if (level > 0) {
+                        int shift = texelShift + level - 1;
+                        putTexel(level - 1, childX >> shift, childY >> shift, childZ >> shift, childSums);
+                    }
+                    for (int j = 0; j < 4; j++) sums[j] += childSums[j];
                 }
             }
         }
 
-        return textureData;
+        /** Writes the texels of the slab level and reduces them to the levels above */
+        void reduceSlabs() {
+            long[] sums = slabSums;
+            long[] texelSums = new long[4];
+            for (int level = slabLevel, size = numSlabs; level < mipmaps.length; level++, size /= 2) {
+                if (level > slabLevel) {
+                    // Sum the 2x2x2 texels of the level below
+                    long[] parentSums = new long[4 * size * size * size];
+                    int childSize = 2 * size;
+                    for (int z = 0; z < childSize; z++) {
+                        for (int y = 0; y < childSize; y++) {
+                            for (int x = 0; x < childSize; x++) {
+                                int child = 4 * ((z * childSize + y) * childSize + x);
+                                int parent = 4 * (((z / 2) * size + y / 2) * size + x / 2);
+                                for (int j = 0; j < 4; j++) parentSums[parent + j] += sums[child + j];
+                            }
+                        }
+                    }
+                    sums = parentSums;
+                }
+                for (int texel = 0; texel < size * size * size; texel++) {
+                    if (sums[4 * texel] == 0) continue;
+                    System.arraycopy(sums, 4 * texel, texelSums, 0, 4);
+                    putTexel(level, texel % size, texel / size % size, texel / (size * size), texelSums);
+                }
+            }
+        }
+
+        /** Writes the average color and the coverage of a texel */
+        private void putTexel(int level, int x, int y, int z, long[] sums) {
+            long count = sums[0];
+            int alpha = 255;
+            if (level > 0) {
+                long voxelsPerTexel = 1L << (3 * (texelShift + level));
+                alpha = (int) Math.max(1, Math.round(255.0 * count / voxelsPerTexel));
+            }
+            int argb = alpha << 24 | (int) (sums[1] / count) << 16 | (int) (sums[2] / count) << 8 | (int) (sums[3] / count);
+            put(level, x, y, z, argb);
+        }
+
+        /** Fills a cube of texels of a level with a color of which all voxels are filled */
+        private void fill(int level, int x, int y, int z, int size, int rgb) {
+            int argb = 0xFF << 24 | rgb;
+            for (int dz = 0; dz < size; dz++) {
+                for (int dy = 0; dy < size; dy++) {
+                    for (int dx = 0; dx < size; dx++) {
+                        put(level, x + dx, y + dy, z + dz, argb);
+                    }
+                }
+            }
+        }
+
+        private void put(int level, int x, int y, int z, int argb) {
+            int size = textureSize >> level;
+            int position = 4 * ((z * size + y) * size + x);
+            ByteBuffer buffer = mipmaps[level];
+            buffer.put(position, (byte) (argb >> 16));
+            buffer.put(position + 1, (byte) (argb >> 8));
+            buffer.put(position + 2, (byte) argb);
+            buffer.put(position + 3, (byte) (argb >> 24));
+        }
     }
 
+    /** Rows of blocks of the texture that are packed by one task, see {@link #getTextureData(ForkJoinPool)} */
+    private static final int PACK_BLOCK_ROWS = 16;
+
     public ByteBuffer getTextureData() {
-        // Todo: Each cell should be placed in memory as they are in space: 2x2x2 cube, instead of
-        // 8 values in a row as is happening now
+        return getTextureData(ForkJoinPool.commonPool());
+    }
 
-//        System.out.println("Generating texture...");
-        System.out.println("Max depth: " + maxDepth + ", IndirectionPool size: " + indirectionPool.size());
+    /**
+     * Packs the indirection pool into RGBA8 texture data, with every grid in a 2x2x2 block of texels.
+     * Ranges of the pool fill disjoint rows of the texture in parallel, with bulk copies of the packed cells
+     */
+    public ByteBuffer getTextureData(ForkJoinPool pool) {
+        if (symmetricDag) {
+            throw new IllegalStateException("Index cells cannot store reflections, use getWideTextureData instead");
+        }
+        if (Math.max(textureWidth, Math.max(textureHeight, textureDepth)) > 2 * MAX_TEXTURE_BLOCKS) {
+            throw new IllegalStateException("Index cells cannot address more than " + MAX_TEXTURE_BLOCKS
+                    + " grids per axis, use getWideTextureData instead");
+        }
 
-        int textureSize = getMaxTextureSize();
-        System.out.println("Texture Size: " + textureSize + "^3 = " + (int) Math.pow(textureSize, 3));
+        ByteBuffer textureData = BufferUtils.createByteBuffer(textureWidth * textureHeight * textureDepth * 4); // 4 bytes since r g b a
 
-        // In a worst case scenario, all octree nodes are used, so the tree is subdivided to maxDepth everywhere
-//        int size = getMaxTextureSize();
-        ByteBuffer textureData = BufferUtils.createByteBuffer(textureSize * textureSize * textureSize * 4); // 4 bytes since r g b a
+        // Consecutive grids are next to each other along x, so a row of blocks covers 4 rows of texels, for the 2 y
+        // and 2 z offsets in a block. Each of these rows is contiguous along x, and is copied in one bulk put
+        int blocksX = textureWidth / 2;
+        int numBlockRows = (indirectionPool.size() + blocksX - 1) / blocksX;
+        int numRanges = (numBlockRows + PACK_BLOCK_ROWS - 1) / PACK_BLOCK_ROWS;
+        ByteOrder order = textureData.order();
+        pool.submit(() -> IntStream.range(0, numRanges).parallel().forEach(range -> {
+            IntBuffer texels = textureData.asIntBuffer();
+            int[][] rows = new int[4][textureWidth];
+            for (int blockRow = range * PACK_BLOCK_ROWS; blockRow < Math.min(numBlockRows, (range + 1) * PACK_BLOCK_ROWS); blockRow++) {
+                int first = blockRow * blocksX;
+                int numGrids = Math.min(blocksX, indirectionPool.size() - first);
+                for (int g = 0; g < numGrids; g++) {
+                    // Insert pool cells in a cube in texture memory
+                    Cell[] children = indirectionPool.get(first + g).getChildren();
+                    for (int i = 0; i < 8; i++) {
+                        rows[i >> 1][2 * g + (i & 1)] = children[i].getPacked(order);
+                    }
+                }
+                Vector3i index = getTextureIndex(first, new Vector3i());
+                for (int row = 0; row < 4; row++) {
+                    texels.position(index.x + (index.y + (row & 1)) * textureWidth + (index.z + (row >> 1)) * textureWidth * textureHeight);
+                    texels.put(rows[row], 0, 2 * numGrids);
+                }
+            }
+        })).join();
+        return textureData;
+    }
+
+    /**
+     * Same layout as {@link #getTextureData()}, but every cell holds the color of its subtree in RGB and its coverage
+     * in A, as RGBA8. INDEX cells hold the average color of the grid they point to, data cells their own color.
+     * The shader uses these when a node is smaller than a pixel, instead of traversing it down to max depth.
+     * Edits update the average colors, but are not uploaded by the {@link DirtyRegionTracker}.
+     */
+    public ByteBuffer getLODTextureData() {
+        ByteBuffer textureData = BufferUtils.createByteBuffer(textureWidth * textureHeight * textureDepth * 4); // 4 bytes since r g b a
 
         Vector3i index = new Vector3i();
         for (int i = 0; i < indirectionPool.size(); i++) {
             getTextureIndex(i, index);
 
-            // Insert pool cells in a cube in texture memory
-            indirectionPool.get(i).get(textureSize, index.x, index.y, index.z, textureData);
+            Cell[] children = indirectionPool.get(i).getChildren();
+            for (int j = 0; j < 8; j++) {
+                int argb;
+                if (children[j].getNodeType() == Cell.NodeType.DATA) {
+                    argb = 0xFF << 24 | children[j].getRGB();
+                } else if (children[j].getNodeType() == Cell.NodeType.INDEX) {
+                    argb = indirectionPool.get(children[j].getPointer()).getAverageColor();
+                } else {
+                    continue;
+                }
+                int position = IndirectionGrid.getTextureIndex(textureWidth, textureHeight, index.x, index.y, index.z, j) * 4;
+                textureData.put(position, (byte) (argb >> 16));
+                textureData.put(position + 1, (byte) (argb >> 8));
+                textureData.put(position + 2, (byte) argb);
+                textureData.put(position + 3, (byte) (argb >> 24));
+            }
         }
+        return textureData;
+    }
 
-        int bytesUsed = indirectionPool.size();
-        System.out.println("Cells used: " + bytesUsed + "/" + ((textureData.limit() / 4) / 8) + " (" + Math.round(100 * 4 * 8 * bytesUsed / (float) textureData.limit()) + "%)");
+    /**
+     * Same layout as {@link #getTextureData()}, but with cells encoded as 32 bit integers by {@link WideCellEncoding}
+     * @return Texture data for an R32UI texture
+     */
+    public ByteBuffer getWideTextureData() {
+        ByteBuffer textureData = BufferUtils.createByteBuffer(textureWidth * textureHeight * textureDepth * 4); // 1 uint per cell
+
+        Vector3i index = new Vector3i();
+        for (int i = 0; i < indirectionPool.size(); i++) {
+            getTextureIndex(i, index);
+
+            Cell[] children = indirectionPool.get(i).getChildren();
+            for (int j = 0; j < 8; j++) {
+                int textureIndex = IndirectionGrid.getTextureIndex(textureWidth, textureHeight, index.x, index.y, index.z, j);
+                textureData.putInt(textureIndex * 4, WideCellEncoding.encode(children[j]));
+            }
+        }
         return textureData;
     }
 
     public static int uploadTexture(int size, ByteBuffer textureData) {
+        return uploadTexture(size, size, size, textureData);
+    }
+
+    /**
+     * @param width, height, depth Size of the texture, e.g. {@link #getTextureWidth()}
+     */
+    public static int uploadTexture(int width, int height, int depth, ByteBuffer textureData) {
         int texID = GL11.glGenTextures();
 
         GL11.glEnable(GL12.GL_TEXTURE_3D);
@@ -241,7 +1593,24 @@ public class SVO {
         GL11.glTexParameteri(GL12.GL_TEXTURE_3D, GL11.GL_TEXTURE_WRAP_S, GL11.GL_REPEAT);
         GL11.glTexParameteri(GL12.GL_TEXTURE_3D, GL11.GL_TEXTURE_WRAP_T, GL11.GL_REPEAT);
         GL11.glTexParameteri(GL12.GL_TEXTURE_3D, GL12.GL_TEXTURE_WRAP_R, GL11.GL_REPEAT);
-        GL12.glTexImage3D(GL12.GL_TEXTURE_3D, 0, GL11.GL_RGBA, size, size, size, 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, textureData);
+        GL12.glTexImage3D(GL12.GL_TEXTURE_3D, 0, GL11.GL_RGBA, width, height, depth, 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, textureData);
+
+        GL11.glBindTexture(GL12.GL_TEXTURE_3D, 0);
+
+        return texID;
+    }
+
+    /**
+     * Uploads texture data from {@link #getWideTextureData()} as an unsigned integer texture, for usampler3D
+     */
+    public static int uploadWideTexture(int width, int height, int depth, ByteBuffer textureData) {
+        int texID = GL11.glGenTextures();
+
+        GL11.glBindTexture(GL12.GL_TEXTURE_3D, texID);
+        // Integer textures cannot be filtered
+        GL11.glTexParameteri(GL12.GL_TEXTURE_3D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_NEAREST);
+        GL11.glTexParameteri(GL12.GL_TEXTURE_3D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_NEAREST);
+        GL12.glTexImage3D(GL12.GL_TEXTURE_3D, 0, GL30.GL_R32UI, width, height, depth, 0, GL30.GL_RED_INTEGER, GL11.GL_UNSIGNED_INT, textureData);
 
         GL11.glBindTexture(GL12.GL_TEXTURE_3D, 0);
 
@@ -0,0 +1,210 @@
+package core;
+
+import org.lwjgl.BufferUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compressed version of an {@link SVOFile}: the texture data is split into chunks that are compressed independently
+ * with {@link Deflater}, so that they can be compressed and decompressed in parallel.
+ *
+ * The file starts with the same fields as an SVO file, as little endian integers:
+ * <pre>
+ *     magic                 "SVOA"
+ *     version               {@link #VERSION}
+ *     format                {@link SVOFile#FORMAT_RGBA8} or {@link SVOFile#FORMAT_R32UI}
+ *     maxDepth
+ *     textureWidth, textureHeight, textureDepth
+ *     numIndirectionGrids
+ *     dataLength            8 bytes, the size of the texture data after decompression
+ *     chunkSize             size of every chunk before compression, except for the last one
+ *     numChunks
+ *     per chunk:
+ *         offset            8 bytes, position of the compressed chunk in the file
+ *         compressedLength
+ * </pre>
+ * followed by the compressed chunks. Every chunk is decompressed straight into its own part of a single direct
+ * buffer, which is then uploaded as it is.
+ */
+public class SVOArchive {
+
+    /** "SVOA" as a little endian integer */
+    public static final int MAGIC = 0x414F5653;
+    public static final int VERSION = 1;
+
+    /** Chunks of 1 MiB are large enough to compress well, and small enough to keep all cores busy */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    private static final int HEADER_SIZE = 48;
+    private static final int CHUNK_ENTRY_SIZE = 12;
+
+    public static void write(SVO svo, Path path, int format) throws IOException {
+        write(svo, path, format, DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Compresses the packed texture of an SVO into an archive
+     * @param format {@link SVOFile#FORMAT_RGBA8} or {@link SVOFile#FORMAT_R32UI}
+     * @param chunkSize Size of a chunk of texture data before compression
+     * @param pool Compresses the chunks in parallel
+     */
+    public static void write(SVO svo, Path path, int format, int chunkSize, ForkJoinPool pool) throws IOException {
+        ByteBuffer textureData = SVOFile.getTextureData(svo, format);
+        int dataLength = textureData.capacity();
+        int numChunks = (dataLength + chunkSize - 1) / chunkSize;
+
+        byte[][] compressedChunks = new byte[numChunks][];
+        pool.submit(() -> IntStream.range(0, numChunks).parallel().forEach(i -> {
+            int start = i * chunkSize;
+            byte[] chunk = new byte[Math.min(chunkSize, dataLength - start)];
+            ByteBuffer source = textureData.duplicate();
+            source.position(start);
+            source.get(chunk);
+            compressedChunks[i] = deflate(chunk);
+        })).join();
+
+        ByteBuffer header = BufferUtils.createByteBuffer(HEADER_SIZE + numChunks * CHUNK_ENTRY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(format)
+                .putInt(svo.getMaxDepth())
+                .putInt(svo.getTextureWidth())
+                .putInt(svo.getTextureHeight())
+                .putInt(svo.getTextureDepth())
+                .putInt(svo.getIndirectionPool().size())
+                .putLong(dataLength)
+                .putInt(chunkSize)
+                .putInt(numChunks);
+        long offset = header.capacity();
+        for (byte[] compressedChunk : compressedChunks) {
+            header.putLong(offset).putInt(compressedChunk.length);
+            offset += compressedChunk.length;
+        }
+        header.clear();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            SVOFile.writeFully(channel, header);
+            for (byte[] compressedChunk : compressedChunks) {
+                SVOFile.writeFully(channel, ByteBuffer.wrap(compressedChunk));
+            }
+        }
+    }
+
+    private static byte[] deflate(byte[] chunk) {
+        Deflater deflater = new Deflater();
+        deflater.setInput(chunk);
+        deflater.finish();
+        // Compressed data of the texture is smaller than the chunk, the few chunks that are not grow the array
+        byte[] output = new byte[chunk.length / 2 + 64];
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == output.length) {
+                output = Arrays.copyOf(output, 2 * output.length);
+            }
+            length += deflater.deflate(output, length, output.length - length);
+        }
+        deflater.end();
+        return Arrays.copyOf(output, length);
+    }
+
+    public static SVOFile load(Path path) throws IOException {
+        return load(path, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Decompresses an archive written by {@link #write(SVO, Path, int, int, ForkJoinPool)}
+     * @param pool Decompresses the chunks in parallel
+     * @return The header and the decompressed texture data, in a direct buffer that can be uploaded
+     * @throws IOException If the file is not an archive of a supported version, or a chunk cannot be decompressed
+     */
+    public static SVOFile load(Path path, ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException(path + " is too short to be an SVO archive");
+            }
+            MappedByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            file.order(ByteOrder.LITTLE_ENDIAN);
+            if (file.getInt(0) != MAGIC) {
+                throw new IOException(path + " is not an SVO archive");
+            }
+            int version = file.getInt(4);
+            SVOFile.checkHeader(path, version, VERSION, file.getInt(8));
+
+            long dataLength = file.getLong(32);
+            int chunkSize = file.getInt(40);
+            int numChunks = file.getInt(44);
+            long expectedLength = 4L * file.getInt(16) * file.getInt(20) * file.getInt(24);
+            if (dataLength != expectedLength || chunkSize <= 0 || (dataLength + chunkSize - 1) / chunkSize != numChunks
+                    || HEADER_SIZE + (long) numChunks * CHUNK_ENTRY_SIZE > file.capacity()) {
+                throw new IOException(path + " has an invalid chunk table");
+            }
+
+            ByteBuffer textureData = BufferUtils.createByteBuffer((int) dataLength).order(ByteOrder.LITTLE_ENDIAN);
+            try {
+                pool.submit(() -> IntStream.range(0, numChunks).parallel().forEach(i ->
+                        inflate(path, file, i, chunkSize, textureData))).join();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            return new SVOFile(version, file.getInt(8), file.getInt(12), file.getInt(16), file.getInt(20),
+                    file.getInt(24), file.getInt(28), textureData);
+        }
+    }
+
+    /**
+     * Decompresses a chunk into its part of the texture data
+     */
+    private static void inflate(Path path, ByteBuffer file, int chunk, int chunkSize, ByteBuffer textureData) {
+        int entry = HEADER_SIZE + chunk * CHUNK_ENTRY_SIZE;
+        long offset = file.getLong(entry);
+        int compressedLength = file.getInt(entry + 8);
+        int start = chunk * chunkSize;
+        int length = Math.min(chunkSize, textureData.capacity() - start);
+        if (offset < 0 || offset + compressedLength > file.capacity()) {
+            throw new UncheckedIOException(new IOException(path + ": chunk " + chunk + " is outside of the file"));
+        }
+
+        byte[] input = new byte[compressedLength];
+        ByteBuffer source = file.duplicate();
+        source.position((int) offset);
+        source.get(input);
+
+        byte[] output = new byte[length];
+        int inflated = 0;
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            while (inflated < length && !inflater.finished()) {
+                int n = inflater.inflate(output, inflated, length - inflated);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                inflated += n;
+            }
+        } catch (DataFormatException e) {
+            throw new UncheckedIOException(new IOException(path + ": chunk " + chunk + " cannot be decompressed", e));
+        } finally {
+            inflater.end();
+        }
+        if (inflated != length) {
+            throw new UncheckedIOException(new IOException(path + ": chunk " + chunk + " has " + inflated + " bytes instead of " + length));
+        }
+
+        ByteBuffer destination = textureData.duplicate();
+        destination.position(start);
+        destination.put(output);
+    }
+}
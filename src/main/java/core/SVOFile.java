@@ -0,0 +1,184 @@
+package core;
+
+import lombok.Getter;
+import org.lwjgl.BufferUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary file of a packed SVO texture, so that a built tree can be saved and loaded without building it again.
+ *
+ * The file starts with a header of little endian integers:
+ * <pre>
+ *     magic                 "SVOF"
+ *     version               {@link #VERSION}
+ *     format                {@link #FORMAT_RGBA8} or {@link #FORMAT_R32UI}
+ *     maxDepth
+ *     textureWidth, textureHeight, textureDepth
+ *     numIndirectionGrids
+ *     dataOffset            8 bytes
+ *     dataLength            8 bytes
+ * </pre>
+ * followed by the texture data at dataOffset, exactly as returned by {@link SVO#getTextureData()} or
+ * {@link SVO#getWideTextureData()}. Loading maps the data with {@link FileChannel#map}, so the texture is not copied
+ * or parsed: the mapped buffer is uploaded as it is, and pages are only read from disk when the driver reads them.
+ */
+public class SVOFile {
+
+    /** "SVOF" as a little endian integer */
+    public static final int MAGIC = 0x464F5653;
+    public static final int VERSION = 1;
+
+    /** Cells as in {@link SVO#getTextureData()} */
+    public static final int FORMAT_RGBA8 = 0;
+    /** Cells as in {@link SVO#getWideTextureData()}, in little endian */
+    public static final int FORMAT_R32UI = 1;
+
+    private static final int HEADER_SIZE = 64;
+
+    @Getter
+    private final int version, format, maxDepth;
+    @Getter
+    private final int textureWidth, textureHeight, textureDepth;
+    @Getter
+    private final int numIndirectionGrids;
+    /** The texture data, mapped read only from an SVO file, or decompressed from an {@link SVOArchive} */
+    @Getter
+    private final ByteBuffer textureData;
+
+    private SVOFile(ByteBuffer header, ByteBuffer textureData) {
+        this(header.getInt(4), header.getInt(8), header.getInt(12), header.getInt(16), header.getInt(20),
+                header.getInt(24), header.getInt(28), textureData);
+    }
+
+    SVOFile(int version, int format, int maxDepth, int textureWidth, int textureHeight, int textureDepth,
+            int numIndirectionGrids, ByteBuffer textureData) {
+        this.version = version;
+        this.format = format;
+        this.maxDepth = maxDepth;
+        this.textureWidth = textureWidth;
+        this.textureHeight = textureHeight;
+        this.textureDepth = textureDepth;
+        this.numIndirectionGrids = numIndirectionGrids;
+        this.textureData = textureData;
+    }
+
+    public static void write(SVO svo, Path path) throws IOException {
+        write(svo, path, FORMAT_RGBA8);
+    }
+
+    /**
+     * Writes the packed texture of an SVO to a file
+     * @param format {@link #FORMAT_RGBA8} or {@link #FORMAT_R32UI}
+     */
+    public static void write(SVO svo, Path path, int format) throws IOException {
+        ByteBuffer textureData = getTextureData(svo, format);
+
+        ByteBuffer header = BufferUtils.createByteBuffer(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(format)
+                .putInt(svo.getMaxDepth())
+                .putInt(svo.getTextureWidth())
+                .putInt(svo.getTextureHeight())
+                .putInt(svo.getTextureDepth())
+                .putInt(svo.getIndirectionPool().size())
+                .putLong(HEADER_SIZE)
+                .putLong(textureData.capacity());
+        header.clear();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, header);
+            writeFully(channel, textureData.duplicate());
+        }
+    }
+
+    static ByteBuffer getTextureData(SVO svo, int format) {
+        if (format == FORMAT_RGBA8) {
+            return svo.getTextureData();
+        } else if (format == FORMAT_R32UI) {
+            return withIntOrder(svo.getWideTextureData(), ByteOrder.LITTLE_ENDIAN);
+        }
+        throw new IllegalArgumentException("Unknown format " + format);
+    }
+
+    /**
+     * The integers of R32UI texture data in the given byte order: the buffer itself if it already has that order,
+     * otherwise a copy
+     */
+    static ByteBuffer withIntOrder(ByteBuffer textureData, ByteOrder order) {
+        if (textureData.order() == order) {
+            return textureData;
+        }
+        ByteBuffer result = BufferUtils.createByteBuffer(textureData.capacity()).order(order);
+        result.asIntBuffer().put(textureData.asIntBuffer());
+        return result;
+    }
+
+    /**
+     * Checks the version and format of a header, see {@link #load(Path)} and {@link SVOArchive#load(Path)}
+     * @throws IOException If the version or format is not supported
+     */
+    static void checkHeader(Path path, int version, int maxVersion, int format) throws IOException {
+        if (version < 1 || version > maxVersion) {
+            throw new IOException(path + " has version " + version + ", only versions 1 to " + maxVersion + " are supported");
+        }
+        if (format != FORMAT_RGBA8 && format != FORMAT_R32UI) {
+            throw new IOException(path + " has unknown format " + format);
+        }
+    }
+
+    static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Maps a file written by {@link #write(SVO, Path, int)}. The mapping stays valid after the file is closed
+     * @throws IOException If the file is not an SVO file of a supported version and format, or is shorter than its header says
+     */
+    public static SVOFile load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException(path + " is too short to be an SVO file");
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException(path + " is not an SVO file");
+            }
+            checkHeader(path, header.getInt(4), VERSION, header.getInt(8));
+
+            long dataOffset = header.getLong(32);
+            long dataLength = header.getLong(40);
+            long expectedLength = 4L * header.getInt(16) * header.getInt(20) * header.getInt(24);
+            if (dataLength != expectedLength || dataOffset + dataLength > channel.size()) {
+                throw new IOException(path + " does not contain the " + expectedLength + " bytes of texture data of its header");
+            }
+
+            MappedByteBuffer textureData = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset, dataLength);
+            textureData.order(ByteOrder.LITTLE_ENDIAN);
+            return new SVOFile(header, textureData);
+        }
+    }
+
+    /**
+     * Uploads the mapped texture data, without copying it first unless R32UI data has to be converted from little
+     * endian to the native byte order
+     * @return The texture ID
+     */
+    public int uploadTexture() {
+        if (format == FORMAT_R32UI) {
+            return SVO.uploadWideTexture(textureWidth, textureHeight, textureDepth, withIntOrder(textureData, ByteOrder.nativeOrder()));
+        }
+        return SVO.uploadTexture(textureWidth, textureHeight, textureDepth, textureData);
+    }
+}
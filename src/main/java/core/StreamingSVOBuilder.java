@@ -0,0 +1,159 @@
+package core;
+
+import geometry.Geometry;
+import lombok.Getter;
+import lombok.Setter;
+import org.joml.Vector3f;
+import org.joml.Vector3i;
+import org.lwjgl.BufferUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Builds the texture data of an SVO directly from its geometries, without creating the indirection pool.
+ *
+ * The tree is traversed twice. The first pass only counts the indirection grids, so that the texture can be
+ * allocated at its exact size, like {@link SVO#packTexture()} does. The second pass creates the nodes in the same
+ * depth-first order as {@link SVO#generateSVO()}, so the index of a grid, and therefore its place in the texture,
+ * is known as soon as the grid is created. Every cell is written straight into its final texel, which results in
+ * the same bytes as {@link SVO#getTextureData()}, while the only memory used is the texture itself and the
+ * candidate lists of the current path through the tree.
+ *
+ * Textures larger than the heap budget are written to a memory mapped file instead of a direct buffer,
+ * so finished parts of the tree can be paged out to disk by the OS.
+ */
+public class StreamingSVOBuilder {
+
+    private final SVO svo;
+
+    /** Textures up to this many bytes are built in memory, larger ones in a memory mapped file */
+    @Getter @Setter
+    private long heapBudget = Runtime.getRuntime().maxMemory() / 4;
+
+    /**
+     * The file for textures that exceed the heap budget. If not set, a temporary file is used, which is deleted as
+     * soon as it is mapped: the mapping keeps the data until the buffer is garbage collected
+     */
+    @Getter @Setter
+    private Path spillFile;
+
+    /** Number of indirection grids created by the last build */
+    @Getter
+    private int numIndirectionGrids;
+
+    /** The texture that is written to, null while counting the grids */
+    private ByteBuffer textureData;
+    private final Vector3i textureIndex = new Vector3i();
+
+    public StreamingSVOBuilder(SVO svo) {
+        this.svo = svo;
+    }
+
+    /**
+     * Sets the texture size of the SVO to the size of the streamed texture
+     * @return The texture data, with the same layout as {@link SVO#getTextureData()}
+     */
+    public ByteBuffer build() {
+        svo.updateGeometryIndex();
+        SVO.BuildScratch scratch = new SVO.BuildScratch(svo.getMaxDepth(), 0, svo.allGeometries());
+
+        textureData = null;
+        numIndirectionGrids = 0;
+        createNode(0, svo.getOrigin().x, svo.getOrigin().y, svo.getOrigin().z, scratch);
+
+        Vector3i blocks = SVO.getTextureBlocks(numIndirectionGrids);
+        svo.setTextureSize(2 * blocks.x, 2 * blocks.y, 2 * blocks.z);
+        long numBytes = (long) svo.getTextureWidth() * svo.getTextureHeight() * svo.getTextureDepth() * 4;
+        textureData = numBytes <= heapBudget ? BufferUtils.createByteBuffer((int) numBytes) : mapSpillFile(numBytes);
+
+        numIndirectionGrids = 0;
+        createNode(0, svo.getOrigin().x, svo.getOrigin().y, svo.getOrigin().z, scratch);
+        return textureData;
+    }
+
+    private ByteBuffer mapSpillFile(long numBytes) {
+        try {
+            Path path = spillFile != null ? spillFile : Files.createTempFile("svo", ".bin");
+            ByteBuffer mapped;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                // Mapping extends the empty file with zeros, which are empty cells
+                mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, numBytes);
+            }
+            if (spillFile == null) {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    // Some platforms do not allow deleting a mapped file
+                    path.toFile().deleteOnExit();
+                }
+            }
+            return mapped;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not map the SVO spill file", e);
+        }
+    }
+
+    /**
+     * Same as {@link SVO#createNode}, but writes the cells to the texture instead of adding a grid to the pool
+     * @return The index of the new indirection grid
+     */
+    private int createNode(int depth, float boxX, float boxY, float boxZ, SVO.BuildScratch scratch) {
+        int currentIGIndex = numIndirectionGrids++;
+        int maxDepth = svo.getMaxDepth();
+        float childBoxSize = svo.getWorldSize() / (float) Math.pow(2, depth + 1);
+        int[] candidates = scratch.candidates[depth];
+        int numCandidates = scratch.numCandidates[depth];
+
+        for (int i = 0; i < 8; i++) {
+            float childBoxX = SVO.childBoxOffsets[i].x * childBoxSize + boxX;
+            float childBoxY = SVO.childBoxOffsets[i].y * childBoxSize + boxY;
+            float childBoxZ = SVO.childBoxOffsets[i].z * childBoxSize + boxZ;
+
+            if (depth + 1 != maxDepth) {
+                int numChildCandidates = svo.findIntersections(candidates, numCandidates, scratch.query,
+                        childBoxX, childBoxY, childBoxZ, childBoxSize, scratch.candidates[depth + 1]);
+                if (numChildCandidates == SVO.SOLID_NODE) {
+                    if (textureData != null) putDataCell(currentIGIndex, i, childBoxX, childBoxY, childBoxZ, scratch);
+                } else if (numChildCandidates > 0) {
+                    scratch.numCandidates[depth + 1] = numChildCandidates;
+                    int newIGIndex = createNode(depth + 1, childBoxX, childBoxY, childBoxZ, scratch);
+
+                    if (textureData != null) {
+                        Vector3f index = svo.getNormalizedTextureIndex(newIGIndex, scratch.temp);
+                        putCell(currentIGIndex, i, index.x, index.y, index.z, Cell.NodeType.INDEX);
+                    }
+                }
+            } else {
+                Geometry intersection = svo.findIntersection(candidates, numCandidates, scratch.query, childBoxX, childBoxY, childBoxZ, childBoxSize);
+                if (intersection != null && textureData != null) {
+                    putDataCell(currentIGIndex, i, childBoxX, childBoxY, childBoxZ, scratch);
+                }
+            }
+        }
+        return currentIGIndex;
+    }
+
+    private void putDataCell(int indirectionGridIndex, int child, float boxX, float boxY, float boxZ, SVO.BuildScratch scratch) {
+        // Same color as SVO.createDataCell: the normalized location
+        Vector3f color = scratch.temp.set(boxX, boxY, boxZ).sub(svo.getOrigin()).div(svo.getWorldSize());
+        putCell(indirectionGridIndex, child, color.x, color.y, color.z, Cell.NodeType.DATA);
+    }
+
+    private void putCell(int indirectionGridIndex, int child, float x, float y, float z, Cell.NodeType type) {
+        svo.getTextureIndex(indirectionGridIndex, textureIndex);
+        int position = IndirectionGrid.getTextureIndex(svo.getTextureWidth(), svo.getTextureHeight(), textureIndex.x, textureIndex.y, textureIndex.z, child) * 4;
+        if (position >= textureData.limit()) {
+            // The first pass sized the texture, so the second pass cannot create more grids unless the scene changed
+            throw new IllegalStateException("Grid " + indirectionGridIndex + " is outside of the texture of "
+                    + svo.getTextureWidth() + "x" + svo.getTextureHeight() + "x" + svo.getTextureDepth());
+        }
+        Cell.putData(textureData, position, x, y, z, type);
+    }
+}
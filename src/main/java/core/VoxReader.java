@@ -0,0 +1,332 @@
+package core;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Reads MagicaVoxel .vox files (https://github.com/ephtracy/voxel-model/blob/master/MagicaVoxel-file-format-vox.txt)
+ * into an SVO, through the voxel list build {@link SVO#generateSVO(int[], int[])}.
+ *
+ * The file is read as a stream of chunks. The voxels of the XYZI chunks are read in blocks and kept as one int per
+ * voxel (x, y, z and palette index are bytes), so memory is linear in the number of voxels, and no dense grid or
+ * geometry is created. The palette can come after the voxels, so colors are looked up once all chunks are read.
+ *
+ * Models are placed with the translations of the scene graph (nTRN, nGRP and nSHP chunks) when there is one.
+ * Rotations of the scene graph are not supported. MagicaVoxel is z-up: its z axis becomes the y axis of the SVO.
+ */
+public class VoxReader {
+
+    private static final int MAGIC = chunkId("VOX ");
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    /** Colors of the palette index of a voxel as 0xRRGGBB, index 0 is unused */
+    private final int[] palette = createDefaultPalette();
+    /** Size of each model */
+    private final ArrayList<int[]> modelSizes = new ArrayList<>();
+    /** Voxels of each model as x | y << 8 | z << 16 | paletteIndex << 24 */
+    private final ArrayList<int[]> modelVoxels = new ArrayList<>();
+    /** Nodes of the scene graph by their id */
+    private final HashMap<Integer, SceneNode> sceneNodes = new HashMap<>();
+
+    private final DataInputStream in;
+    private final byte[] block = new byte[BLOCK_SIZE];
+
+    private static class SceneNode {
+        int[] translation = new int[3];
+        int[] children = new int[0];
+        int[] models = new int[0];
+    }
+
+    private VoxReader(InputStream in) {
+        this.in = new DataInputStream(new BufferedInputStream(in, BLOCK_SIZE));
+    }
+
+    public static SVO read(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Reads all models of a .vox file into a single SVO, with the smallest max depth that fits the scene.
+     * The world size of the SVO is its resolution, so that a voxel is 1 unit
+     */
+    public static SVO read(InputStream in) throws IOException {
+        VoxReader reader = new VoxReader(in);
+        reader.readChunks();
+        return reader.createSVO();
+    }
+
+    private void readChunks() throws IOException {
+        if (readInt() != MAGIC) {
+            throw new IOException("Not a MagicaVoxel .vox file");
+        }
+        readInt(); // version
+
+        while (true) {
+            int id;
+            try {
+                id = readInt();
+            } catch (EOFException e) {
+                return;
+            }
+            int contentSize = readInt();
+            readInt(); // size of the children, which follow as chunks of their own
+
+            if (id == chunkId("MAIN")) {
+                skip(contentSize);
+            } else if (id == chunkId("SIZE")) {
+                modelSizes.add(new int[] { readInt(), readInt(), readInt() });
+                skip(contentSize - 12);
+            } else if (id == chunkId("XYZI")) {
+                readVoxels(contentSize);
+            } else if (id == chunkId("RGBA")) {
+                readPalette(contentSize);
+            } else if (id == chunkId("nTRN") || id == chunkId("nGRP") || id == chunkId("nSHP")) {
+                try {
+                    readSceneNode(id, readContent(contentSize));
+                } catch (BufferUnderflowException | NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    throw new IOException("Invalid scene graph chunk", e);
+                }
+            } else {
+                skip(contentSize);
+            }
+        }
+    }
+
+    /**
+     * Reads the voxels of a model in blocks, straight into the packed voxel array of the model
+     */
+    private void readVoxels(int contentSize) throws IOException {
+        int numVoxels = readInt();
+        if (numVoxels < 0 || 4L * numVoxels > contentSize - 4) {
+            throw new IOException("XYZI chunk of " + contentSize + " bytes cannot contain " + numVoxels + " voxels");
+        }
+        int[] voxels = new int[numVoxels];
+        ByteBuffer buffer = ByteBuffer.wrap(block).order(ByteOrder.LITTLE_ENDIAN);
+        for (int start = 0; start < numVoxels; start += BLOCK_SIZE / 4) {
+            int count = Math.min(BLOCK_SIZE / 4, numVoxels - start);
+            in.readFully(block, 0, 4 * count);
+            for (int i = 0; i < count; i++) {
+                // The bytes x, y, z, i in little endian are already packed as x | y << 8 | z << 16 | i << 24
+                voxels[start + i] = buffer.getInt(4 * i);
+            }
+        }
+        skip(contentSize - 4 - 4 * numVoxels);
+        modelVoxels.add(voxels);
+    }
+
+    private void readPalette(int contentSize) throws IOException {
+        byte[] content = readContent(contentSize);
+        // Entry i of the chunk is the color of palette index i + 1
+        for (int i = 0; i < 255 && 4 * i + 2 < content.length; i++) {
+            palette[i + 1] = (content[4 * i] & 0xFF) << 16 | (content[4 * i + 1] & 0xFF) << 8 | (content[4 * i + 2] & 0xFF);
+        }
+    }
+
+    private void readSceneNode(int id, byte[] content) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(content).order(ByteOrder.LITTLE_ENDIAN);
+        SceneNode node = new SceneNode();
+        sceneNodes.put(buffer.getInt(), node);
+        readDictionary(buffer);
+
+        if (id == chunkId("nTRN")) {
+            node.children = new int[] { buffer.getInt() };
+            buffer.getInt(); // reserved
+            buffer.getInt(); // layer
+            int numFrames = buffer.getInt();
+            // Only the first frame is used
+            for (int frame = 0; frame < numFrames; frame++) {
+                HashMap<String, String> attributes = readDictionary(buffer);
+                String translation = attributes.get("_t");
+                if (frame == 0 && translation != null) {
+                    String[] values = translation.trim().split("\\s+");
+                    for (int a = 0; a < 3; a++) node.translation[a] = Integer.parseInt(values[a]);
+                }
+            }
+        } else if (id == chunkId("nGRP")) {
+            node.children = new int[readCount(buffer)];
+            for (int i = 0; i < node.children.length; i++) node.children[i] = buffer.getInt();
+        } else {
+            node.models = new int[readCount(buffer)];
+            for (int i = 0; i < node.models.length; i++) {
+                node.models[i] = buffer.getInt();
+                readDictionary(buffer);
+            }
+        }
+    }
+
+    /**
+     * Reads the number of entries of a list, which have at least 4 bytes each
+     */
+    private static int readCount(ByteBuffer buffer) throws IOException {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining() / 4) {
+            throw new IOException("Invalid count " + count + " in a scene graph chunk");
+        }
+        return count;
+    }
+
+    private static HashMap<String, String> readDictionary(ByteBuffer buffer) throws IOException {
+        HashMap<String, String> dictionary = new HashMap<>();
+        int numPairs = readCount(buffer);
+        for (int i = 0; i < numPairs; i++) {
+            dictionary.put(readString(buffer), readString(buffer));
+        }
+        return dictionary;
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Invalid string of " + length + " bytes in a scene graph chunk");
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Finds the translation of every model by walking the scene graph from the root.
+     * Without a scene graph every model is at the origin
+     * @return The position of the minimum corner of each model, in MagicaVoxel coordinates
+     */
+    private int[][] getModelPositions() throws IOException {
+        int[][] positions = new int[modelVoxels.size()][];
+        if (sceneNodes.containsKey(0)) {
+            placeModels(0, new int[3], positions, 0);
+        }
+        for (int i = 0; i < positions.length; i++) {
+            if (positions[i] == null) positions[i] = new int[3];
+        }
+        return positions;
+    }
+
+    private void placeModels(int nodeId, int[] parentTranslation, int[][] positions, int depth) throws IOException {
+        SceneNode node = sceneNodes.get(nodeId);
+        if (node == null || depth > sceneNodes.size()) {
+            throw new IOException("Invalid scene graph at node " + nodeId);
+        }
+        int[] translation = new int[3];
+        for (int a = 0; a < 3; a++) translation[a] = parentTranslation[a] + node.translation[a];
+
+        for (int model : node.models) {
+            if (model < 0 || model >= positions.length) {
+                throw new IOException("Shape node " + nodeId + " refers to model " + model + " of " + positions.length);
+            }
+            // The translation is the center of the model
+            int[] size = modelSizes.get(model);
+            positions[model] = new int[] { translation[0] - size[0] / 2, translation[1] - size[1] / 2, translation[2] - size[2] / 2 };
+        }
+        for (int child : node.children) {
+            placeModels(child, translation, positions, depth + 1);
+        }
+    }
+
+    private SVO createSVO() throws IOException {
+        if (modelSizes.size() != modelVoxels.size()) {
+            throw new IOException(modelSizes.size() + " SIZE chunks for " + modelVoxels.size() + " XYZI chunks");
+        }
+        int[][] modelPositions = getModelPositions();
+
+        // Bounds of the scene in SVO coordinates: x, z, -y of MagicaVoxel
+        int[] min = { Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE };
+        int[] max = { Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE };
+        int numVoxels = 0;
+        for (int m = 0; m < modelVoxels.size(); m++) {
+            int[] p = modelPositions[m], size = modelSizes.get(m);
+            int[] modelMin = { p[0], p[2], -(p[1] + size[1] - 1) };
+            int[] modelMax = { p[0] + size[0] - 1, p[2] + size[2] - 1, -p[1] };
+            for (int a = 0; a < 3; a++) {
+                min[a] = Math.min(min[a], modelMin[a]);
+                max[a] = Math.max(max[a], modelMax[a]);
+            }
+            numVoxels += modelVoxels.get(m).length;
+        }
+
+        int extent = 1;
+        for (int a = 0; a < 3 && numVoxels > 0; a++) extent = Math.max(extent, max[a] - min[a] + 1);
+        int maxDepth = Math.max(1, 32 - Integer.numberOfLeadingZeros(extent - 1));
+        SVO svo = new SVO(maxDepth, 1 << maxDepth);
+
+        int[] voxelPositions = new int[3 * numVoxels];
+        int[] voxelColors = new int[numVoxels];
+        int v = 0;
+        for (int m = 0; m < modelVoxels.size(); m++) {
+            int[] p = modelPositions[m];
+            for (int voxel : modelVoxels.get(m)) {
+                int x = p[0] + (voxel & 0xFF), y = p[1] + ((voxel >> 8) & 0xFF), z = p[2] + ((voxel >> 16) & 0xFF);
+                voxelPositions[3 * v] = x - min[0];
+                voxelPositions[3 * v + 1] = z - min[1];
+                voxelPositions[3 * v + 2] = -y - min[2];
+                voxelColors[v] = palette[voxel >>> 24];
+                v++;
+            }
+        }
+        // The voxels were copied, the models are no longer needed while building
+        modelVoxels.clear();
+
+        svo.generateSVO(voxelPositions, voxelColors);
+        return svo;
+    }
+
+    private int readInt() throws IOException {
+        return Integer.reverseBytes(in.readInt());
+    }
+
+    private byte[] readContent(int size) throws IOException {
+        if (size < 0) throw new IOException("Invalid chunk size " + size);
+        byte[] content = new byte[size];
+        in.readFully(content);
+        return content;
+    }
+
+    private void skip(int size) throws IOException {
+        if (size < 0) throw new IOException("Invalid chunk size " + size);
+        while (size > 0) {
+            int skipped = in.skipBytes(size);
+            if (skipped <= 0) throw new EOFException();
+            size -= skipped;
+        }
+    }
+
+    private static int chunkId(String id) {
+        byte[] bytes = id.getBytes(StandardCharsets.US_ASCII);
+        return (bytes[0] & 0xFF) | (bytes[1] & 0xFF) << 8 | (bytes[2] & 0xFF) << 16 | (bytes[3] & 0xFF) << 24;
+    }
+
+    /**
+     * The palette of files without an RGBA chunk: a 6x6x6 color cube, followed by ramps of red, green, blue and gray
+     */
+    static int[] createDefaultPalette() {
+        int[] palette = new int[256];
+        int[] cubeLevels = { 0xFF, 0xCC, 0x99, 0x66, 0x33, 0x00 };
+        int index = 1;
+        for (int r : cubeLevels) {
+            for (int g : cubeLevels) {
+                for (int b : cubeLevels) {
+                    // Black is left out of the cube
+                    if (index < 216) palette[index++] = r << 16 | g << 8 | b;
+                }
+            }
+        }
+        int[] rampLevels = { 0xEE, 0xDD, 0xBB, 0xAA, 0x88, 0x77, 0x55, 0x44, 0x22, 0x11 };
+        for (int ramp = 0; ramp < 4; ramp++) {
+            for (int level : rampLevels) {
+                palette[index++] = ramp == 0 ? level << 16 : ramp == 1 ? level << 8 : ramp == 2 ? level : level * 0x010101;
+            }
+        }
+        return palette;
+    }
+}
@@ -0,0 +1,123 @@
+package core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes cells as 32 bit unsigned integers for an integer (R32UI) texture, as an alternative to the
+ * RGBA8 encoding of {@link Cell#getData(int, ByteBuffer)}.
+ * The highest 2 bits are the node type. INDEX cells store the pool index of their grid in the lowest 27 bits,
+ * and the reflection of the grid in the 3 bits above it, see {@link SVO#compressToDAG(boolean)}.
+ * DATA cells store their color as 0xRRGGBB. BRICK cells are only used by {@link BrickMap}, and store the index of a
+ * dense brick of voxels in the lowest 27 bits.
+ *
+ * The RGBA8 encoding stores the texture location of a grid as a normalized byte per axis, which limits the texture to
+ * 256 blocks per axis. Pool indices are exact integers that are only limited by the size of a 3D texture, and are
+ * looked up with texelFetch instead of filtered texture coordinates.
+ */
+public class WideCellEncoding {
+
+    public static final int TYPE_EMPTY = 0;
+    public static final int TYPE_INDEX = 1;
+    public static final int TYPE_DATA = 2;
+    public static final int TYPE_BRICK = 3;
+
+    private static final int TYPE_SHIFT = 30;
+    private static final int MIRROR_SHIFT = 27;
+    private static final int POINTER_MASK = (1 << MIRROR_SHIFT) - 1;
+
+    /** Largest pool index that fits in an INDEX cell */
+    public static final int MAX_POINTER = POINTER_MASK;
+
+    /** Blocks per axis of a texture of 2048^3, the common maximum 3D texture size */
+    public static final int MAX_TEXTURE_BLOCKS = 1024;
+
+    public static int encode(Cell cell) {
+        switch (cell.getNodeType()) {
+            case INDEX:
+                return encodeIndex(cell.getPointer(), cell.getMirror());
+            case DATA:
+                return encodeData(cell.getRGB());
+            default:
+                return 0;
+        }
+    }
+
+    public static int encodeIndex(int pointer) {
+        return encodeIndex(pointer, 0);
+    }
+
+    /**
+     * @param mirror The axes along which the grid is reflected, as bits x = 1, y = 2, z = 4
+     */
+    public static int encodeIndex(int pointer, int mirror) {
+        if (pointer < 0 || pointer > MAX_POINTER) {
+            throw new IllegalArgumentException("Pointer " + pointer + " does not fit in " + MIRROR_SHIFT + " bits");
+        }
+        return TYPE_INDEX << TYPE_SHIFT | (mirror & 7) << MIRROR_SHIFT | pointer;
+    }
+
+    /**
+     * @param brick Index of the brick in the brick pool of a {@link BrickMap}
+     */
+    public static int encodeBrick(int brick) {
+        if (brick < 0 || brick > MAX_POINTER) {
+            throw new IllegalArgumentException("Brick " + brick + " does not fit in " + MIRROR_SHIFT + " bits");
+        }
+        return TYPE_BRICK << TYPE_SHIFT | brick;
+    }
+
+    /**
+     * @param rgb Color as 0xRRGGBB
+     */
+    public static int encodeData(int rgb) {
+        return TYPE_DATA << TYPE_SHIFT | (rgb & 0xFFFFFF);
+    }
+
+    public static int getType(int value) {
+        return value >>> TYPE_SHIFT;
+    }
+
+    public static int getPointer(int value) {
+        return value & POINTER_MASK;
+    }
+
+    public static int getMirror(int value) {
+        return (value >>> MIRROR_SHIFT) & 7;
+    }
+
+    /**
+     * @return Color as 0xRRGGBB
+     */
+    public static int getColor(int value) {
+        return value & 0xFFFFFF;
+    }
+
+    /**
+     * Traverses a texture made by {@link SVO#getWideTextureData()} in the same way as treeLookupWide in the shader
+     * @param x, y, z Coordinates of a voxel, between 0 and 2^maxDepth
+     * @return The encoded DATA cell of the voxel, or the EMPTY cell at which the traversal stopped
+     */
+    public static int lookup(ByteBuffer textureData, int textureWidth, int textureHeight, int maxDepth, int x, int y, int z) {
+        int blocksX = textureWidth / 2;
+        int blocksY = textureHeight / 2;
+        int pointer = 0;
+        // Reflection of the current grid, the combined reflections of the index cells above it
+        int mirror = 0;
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            int shift = maxDepth - depth;
+            int childX = ((x >> shift) ^ mirror) & 1, childY = ((y >> shift) ^ (mirror >> 1)) & 1, childZ = ((z >> shift) ^ (mirror >> 2)) & 1;
+            int texelX = (pointer % blocksX) * 2 + childX;
+            int texelY = ((pointer / blocksX) % blocksY) * 2 + childY;
+            int texelZ = (pointer / (blocksX * blocksY)) * 2 + childZ;
+            long texel = texelX + (long) texelY * textureWidth + (long) texelZ * textureWidth * textureHeight;
+
+            int value = textureData.getInt((int) (texel * 4));
+            if (getType(value) != TYPE_INDEX) {
+                return value;
+            }
+            pointer = getPointer(value);
+            mirror ^= getMirror(value);
+        }
+        throw new IllegalStateException("INDEX cell below max depth " + maxDepth);
+    }
+}
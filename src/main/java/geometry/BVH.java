@@ -0,0 +1,378 @@
+package geometry;
+
+import lombok.Getter;
+import org.joml.Vector3f;
+
+import java.util.List;
+
+/**
+ * Bounding volume hierarchy over axis aligned bounding boxes, for finding all items that overlap a box or a ray
+ * in logarithmic time.
+ *
+ * The bounds of the items are stored as 6 floats (minX, minY, minZ, maxX, maxY, maxZ) per item.
+ * When items move, their bounds can be updated in place followed by a {@link #refit()}, which keeps the tree
+ * structure and only recomputes the node bounds in O(n). A {@link #rebuild()} is O(n log n) and restores the
+ * tree quality after large movements.
+ */
+public class BVH {
+
+    /** Maximum number of items in a leaf node */
+    private static final int MAX_LEAF_SIZE = 4;
+
+    @Getter
+    private float[] itemBounds;
+    @Getter
+    private int numItems;
+
+    /** Item indices, ordered so that every leaf node covers a range of it */
+    private int[] items;
+    /** Centroid of every item along the axis that is being split, used during the build */
+    private float[] centroids;
+
+    /** Bounds of every node, 6 floats per node. The root is node 0 and the left child of a node directly follows it */
+    private float[] nodeBounds;
+    /** For inner nodes the index of the right child, for leaf nodes the start of its range in the items array */
+    private int[] nodeOffsets;
+    /** The number of items of leaf nodes, 0 for inner nodes */
+    private int[] nodeCounts;
+    private int numNodes;
+
+    /**
+     * @param itemBounds 6 floats per item: minX, minY, minZ, maxX, maxY, maxZ
+     * @param numItems
+     */
+    public BVH(float[] itemBounds, int numItems) {
+        this.itemBounds = itemBounds;
+        this.numItems = numItems;
+        rebuild();
+    }
+
+    /**
+     * Creates a BVH over the bounds of the geometries. The item indices are the indices in the list
+     */
+    public static BVH create(List<? extends Geometry> geometries) {
+        return new BVH(getBounds(geometries, new float[6 * geometries.size()]), geometries.size());
+    }
+
+    /** Puts the bounds of all geometries in the bounds array */
+    public static float[] getBounds(List<? extends Geometry> geometries, float[] bounds) {
+        Vector3f min = new Vector3f(), max = new Vector3f();
+        for (int i = 0; i < geometries.size(); i++) {
+            geometries.get(i).getBounds(min, max);
+            bounds[6 * i]     = min.x;
+            bounds[6 * i + 1] = min.y;
+            bounds[6 * i + 2] = min.z;
+            bounds[6 * i + 3] = max.x;
+            bounds[6 * i + 4] = max.y;
+            bounds[6 * i + 5] = max.z;
+        }
+        return bounds;
+    }
+
+    /** Rebuilds the tree from scratch, by recursively splitting the items at the median of the longest axis */
+    public void rebuild() {
+        int maxNodes = Math.max(1, 2 * numItems);
+        if (nodeOffsets == null || nodeOffsets.length < maxNodes) {
+            nodeBounds = new float[6 * maxNodes];
+            nodeOffsets = new int[maxNodes];
+            nodeCounts = new int[maxNodes];
+        }
+        if (items == null || items.length < numItems) {
+            items = new int[numItems];
+            centroids = new float[numItems];
+        }
+        for (int i = 0; i < numItems; i++) {
+            items[i] = i;
+        }
+        numNodes = 0;
+        buildNode(0, numItems);
+    }
+
+    private int buildNode(int start, int end) {
+        int node = numNodes++;
+        computeBounds(node, start, end);
+
+        if (end - start <= MAX_LEAF_SIZE) {
+            nodeOffsets[node] = start;
+            nodeCounts[node] = end - start;
+            return node;
+        }
+
+        // Split along the longest axis of the node bounds
+        int axis = 0;
+        float longest = -1;
+        for (int a = 0; a < 3; a++) {
+            float length = nodeBounds[6 * node + 3 + a] - nodeBounds[6 * node + a];
+            if (length > longest) {
+                longest = length;
+                axis = a;
+            }
+        }
+        for (int i = start; i < end; i++) {
+            int item = items[i];
+            centroids[i] = itemBounds[6 * item + axis] + itemBounds[6 * item + 3 + axis];
+        }
+        int middle = (start + end) >>> 1;
+        selectMedian(start, end - 1, middle);
+
+        nodeCounts[node] = 0;
+        buildNode(start, middle);
+        nodeOffsets[node] = buildNode(middle, end);
+        return node;
+    }
+
+    /** Quickselect: partially sorts items[left..right] by centroid so that the item at n is in its sorted place */
+    private void selectMedian(int left, int right, int n) {
+        while (left < right) {
+            float pivot = centroids[(left + right) >>> 1];
+            int i = left, j = right;
+            while (i <= j) {
+                while (centroids[i] < pivot) i++;
+                while (centroids[j] > pivot) j--;
+                if (i <= j) {
+                    swap(i, j);
+                    i++;
+                    j--;
+                }
+            }
+            if (n <= j) right = j;
+            else if (n >= i) left = i;
+            else return;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int item = items[i];
+        items[i] = items[j];
+        items[j] = item;
+        float centroid = centroids[i];
+        centroids[i] = centroids[j];
+        centroids[j] = centroid;
+    }
+
+    private void computeBounds(int node, int start, int end) {
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+        for (int i = start; i < end; i++) {
+            int b = 6 * items[i];
+            minX = Math.min(minX, itemBounds[b]);
+            minY = Math.min(minY, itemBounds[b + 1]);
+            minZ = Math.min(minZ, itemBounds[b + 2]);
+            maxX = Math.max(maxX, itemBounds[b + 3]);
+            maxY = Math.max(maxY, itemBounds[b + 4]);
+            maxZ = Math.max(maxZ, itemBounds[b + 5]);
+        }
+        setNodeBounds(node, minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    private void setNodeBounds(int node, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        int b = 6 * node;
+        nodeBounds[b]     = minX;
+        nodeBounds[b + 1] = minY;
+        nodeBounds[b + 2] = minZ;
+        nodeBounds[b + 3] = maxX;
+        nodeBounds[b + 4] = maxY;
+        nodeBounds[b + 5] = maxZ;
+    }
+
+    /**
+     * Recomputes the bounds of all nodes from the current item bounds, without changing the tree structure.
+     * Children are always stored after their parent, so a single backwards pass suffices
+     */
+    public void refit() {
+        for (int node = numNodes - 1; node >= 0; node--) {
+            if (nodeCounts[node] > 0 || numItems == 0) {
+                computeBounds(node, nodeOffsets[node], nodeOffsets[node] + nodeCounts[node]);
+            } else {
+                int left = 6 * (node + 1), right = 6 * nodeOffsets[node];
+                setNodeBounds(node,
+                        Math.min(nodeBounds[left],     nodeBounds[right]),
+                        Math.min(nodeBounds[left + 1], nodeBounds[right + 1]),
+                        Math.min(nodeBounds[left + 2], nodeBounds[right + 2]),
+                        Math.max(nodeBounds[left + 3], nodeBounds[right + 3]),
+                        Math.max(nodeBounds[left + 4], nodeBounds[right + 4]),
+                        Math.max(nodeBounds[left + 5], nodeBounds[right + 5]));
+            }
+        }
+    }
+
+    /**
+     * Finds all items of which the bounds overlap with the box
+     * @param result Receives the indices of the items, in no particular order. Should have room for all items
+     * @return The number of items found
+     */
+    public int query(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, int[] result) {
+        return query(minX, minY, minZ, maxX, maxY, maxZ, null, result);
+    }
+
+    /**
+     * Same as {@link #query(float, float, float, float, float, float, int[])}, but only finds the items that also
+     * pass a test with the box, so the result only needs room for those
+     */
+    public int query(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, BoxTest test, int[] result) {
+        if (numItems == 0) return 0;
+        return query(0, minX, minY, minZ, maxX, maxY, maxZ, test, result, 0);
+    }
+
+    private int query(int node, float minX, float minY, float minZ, float maxX, float maxY, float maxZ, BoxTest test, int[] result, int count) {
+        int b = 6 * node;
+        if (nodeBounds[b] > maxX || nodeBounds[b + 1] > maxY || nodeBounds[b + 2] > maxZ
+                || nodeBounds[b + 3] < minX || nodeBounds[b + 4] < minY || nodeBounds[b + 5] < minZ) {
+            return count;
+        }
+        if (nodeCounts[node] > 0) {
+            for (int i = nodeOffsets[node]; i < nodeOffsets[node] + nodeCounts[node]; i++) {
+                int item = items[i];
+                int ib = 6 * item;
+                if (itemBounds[ib] <= maxX && itemBounds[ib + 1] <= maxY && itemBounds[ib + 2] <= maxZ
+                        && itemBounds[ib + 3] >= minX && itemBounds[ib + 4] >= minY && itemBounds[ib + 5] >= minZ
+                        && (test == null || test.intersects(item, minX, minY, minZ, maxX, maxY, maxZ))) {
+                    result[count++] = item;
+                }
+            }
+            return count;
+        }
+        count = query(node + 1, minX, minY, minZ, maxX, maxY, maxZ, test, result, count);
+        return query(nodeOffsets[node], minX, minY, minZ, maxX, maxY, maxZ, test, result, count);
+    }
+
+    /** Exact test of an item against a box, see {@link #findFirst} and {@link #query(float, float, float, float, float, float, BoxTest, int[])} */
+    public interface BoxTest {
+        boolean intersects(int item, float minX, float minY, float minZ, float maxX, float maxY, float maxZ);
+    }
+
+    /**
+     * Finds an item of which the bounds overlap with the box and that passes an exact test with the box.
+     * Unlike {@link #query}, the search stops at the first such item, so it does not need a result array
+     * @return The index of the item, or -1 if there is none
+     */
+    public int findFirst(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, BoxTest test) {
+        if (numItems == 0) return -1;
+        return findFirst(0, minX, minY, minZ, maxX, maxY, maxZ, test);
+    }
+
+    private int findFirst(int node, float minX, float minY, float minZ, float maxX, float maxY, float maxZ, BoxTest test) {
+        int b = 6 * node;
+        if (nodeBounds[b] > maxX || nodeBounds[b + 1] > maxY || nodeBounds[b + 2] > maxZ
+                || nodeBounds[b + 3] < minX || nodeBounds[b + 4] < minY || nodeBounds[b + 5] < minZ) {
+            return -1;
+        }
+        if (nodeCounts[node] > 0) {
+            for (int i = nodeOffsets[node]; i < nodeOffsets[node] + nodeCounts[node]; i++) {
+                int item = items[i];
+                int ib = 6 * item;
+                if (itemBounds[ib] <= maxX && itemBounds[ib + 1] <= maxY && itemBounds[ib + 2] <= maxZ
+                        && itemBounds[ib + 3] >= minX && itemBounds[ib + 4] >= minY && itemBounds[ib + 5] >= minZ
+                        && test.intersects(item, minX, minY, minZ, maxX, maxY, maxZ)) {
+                    return item;
+                }
+            }
+            return -1;
+        }
+        int item = findFirst(node + 1, minX, minY, minZ, maxX, maxY, maxZ, test);
+        if (item >= 0) return item;
+        return findFirst(nodeOffsets[node], minX, minY, minZ, maxX, maxY, maxZ, test);
+    }
+
+    /** Exact test of an item against a ray, see {@link #findNearest} */
+    public interface RayTest {
+        /** @return The value of t where the ray first hits the item between tMin and tMax, or infinity if it does not */
+        float intersectRay(int item, float originX, float originY, float originZ, float dirX, float dirY, float dirZ, float tMin, float tMax);
+    }
+
+    /**
+     * Finds the item that the ray origin + t * direction hits first between tMin and tMax, with an exact test.
+     * Nodes are visited front to back and skipped once the ray enters them beyond the nearest hit so far,
+     * so that only the items near the ray are tested
+     * @param tMax May be infinity, for a ray without limit
+     * @return The index of the item, or -1 if there is none. Of items hit at the same t, the one with the lowest index
+     */
+    public int findNearest(float originX, float originY, float originZ, float dirX, float dirY, float dirZ, float tMin, float tMax, RayTest test) {
+        if (numItems == 0) return -1;
+        float invDirX = inverse(dirX), invDirY = inverse(dirY), invDirZ = inverse(dirZ);
+        if (!isHit(intersectRay(nodeBounds, 0, originX, originY, originZ, invDirX, invDirY, invDirZ), tMax)) return -1;
+        long nearest = findNearest(0, originX, originY, originZ, dirX, dirY, dirZ, invDirX, invDirY, invDirZ,
+                tMin, test, packHit(tMax, -1));
+        return (int) nearest;
+    }
+
+    /**
+     * The nearest hit so far, with the bits of t in the upper half and the item in the lower half.
+     * The bits of floats >= 0 are in the same order as the floats, so comparing hits compares t first and then the item
+     */
+    private static long packHit(float t, int item) {
+        return (long) Float.floatToIntBits(t) << 32 | (item & 0xFFFFFFFFL);
+    }
+
+    private static float hitT(long hit) {
+        return Float.intBitsToFloat((int) (hit >>> 32));
+    }
+
+    /**
+     * Whether a ray hits at t, no further than the nearest hit so far. Infinity is a miss, also when there is no
+     * nearest hit yet and tMax is infinity, since packing it with an item would sort it before the -1 of no item
+     */
+    private static boolean isHit(float t, float nearestT) {
+        return t <= nearestT && t != Float.POSITIVE_INFINITY;
+    }
+
+    private long findNearest(int node, float originX, float originY, float originZ, float dirX, float dirY, float dirZ,
+                             float invDirX, float invDirY, float invDirZ, float tMin, RayTest test, long nearest) {
+        if (nodeCounts[node] > 0) {
+            for (int i = nodeOffsets[node]; i < nodeOffsets[node] + nodeCounts[node]; i++) {
+                int item = items[i];
+                float nearestT = hitT(nearest);
+                float tEnter = Math.max(tMin, intersectRay(itemBounds, 6 * item, originX, originY, originZ, invDirX, invDirY, invDirZ));
+                if (isHit(tEnter, nearestT)) {
+                    float t = test.intersectRay(item, originX, originY, originZ, dirX, dirY, dirZ, tEnter, nearestT);
+                    if (isHit(t, nearestT)) nearest = Math.min(nearest, packHit(t, item));
+                }
+            }
+            return nearest;
+        }
+        int first = node + 1, second = nodeOffsets[node];
+        float tFirst = intersectRay(nodeBounds, 6 * first, originX, originY, originZ, invDirX, invDirY, invDirZ);
+        float tSecond = intersectRay(nodeBounds, 6 * second, originX, originY, originZ, invDirX, invDirY, invDirZ);
+        if (tSecond < tFirst) {
+            int swap = first; first = second; second = swap;
+            float swapT = tFirst; tFirst = tSecond; tSecond = swapT;
+        }
+        if (isHit(tFirst, hitT(nearest))) {
+            nearest = findNearest(first, originX, originY, originZ, dirX, dirY, dirZ, invDirX, invDirY, invDirZ, tMin, test, nearest);
+        }
+        if (isHit(tSecond, hitT(nearest))) {
+            nearest = findNearest(second, originX, originY, originZ, dirX, dirY, dirZ, invDirX, invDirY, invDirZ, tMin, test, nearest);
+        }
+        return nearest;
+    }
+
+    /**
+     * Inverse of a direction component for {@link #intersectRay}. A zero component gives the largest float instead of
+     * infinity, because infinity times the zero distance of an origin on a face of the box would be NaN
+     */
+    static float inverse(float d) {
+        return d != 0 ? 1 / d : Float.MAX_VALUE;
+    }
+
+    /**
+     * Slab test of a ray against a box
+     * @return The value of t where the ray enters the box (0 if it starts inside), or infinity if it misses the box
+     */
+    public static float intersectRay(float[] bounds, int offset, float originX, float originY, float originZ, float invDirX, float invDirY, float invDirZ) {
+        float t1 = (bounds[offset] - originX) * invDirX;
+        float t2 = (bounds[offset + 3] - originX) * invDirX;
+        float tNear = Math.min(t1, t2), tFar = Math.max(t1, t2);
+        t1 = (bounds[offset + 1] - originY) * invDirY;
+        t2 = (bounds[offset + 4] - originY) * invDirY;
+        tNear = Math.max(tNear, Math.min(t1, t2));
+        tFar = Math.min(tFar, Math.max(t1, t2));
+        t1 = (bounds[offset + 2] - originZ) * invDirZ;
+        t2 = (bounds[offset + 5] - originZ) * invDirZ;
+        tNear = Math.max(tNear, Math.min(t1, t2));
+        tFar = Math.min(tFar, Math.max(t1, t2));
+        if (tFar < Math.max(tNear, 0)) {
+            return Float.POSITIVE_INFINITY;
+        }
+        return Math.max(tNear, 0);
+    }
+}
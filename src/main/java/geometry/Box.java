@@ -1,13 +1,60 @@
 package geometry;
 
+import lombok.Getter;
+import lombok.NonNull;
 import org.joml.Vector3f;
 
 public class Box extends Geometry {
 
+    @NonNull @Getter
+    private Vector3f min, max;
 
+    public Box(Vector3f min, Vector3f max, Vector3f color) {
+        this.min = min;
+        this.max = max;
+        this.color = color;
+    }
+
+    @Override
+    public void getBounds(Vector3f min, Vector3f max) {
+        min.set(this.min);
+        max.set(this.max);
+    }
 
     @Override
     public boolean intersects(Vector3f boxStart, Vector3f boxEnd) {
-        return false;
+        return intersects(boxStart.x, boxStart.y, boxStart.z, boxEnd.x, boxEnd.y, boxEnd.z);
+    }
+
+    @Override
+    public boolean intersects(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        // Like a sphere, only the surface of the box produces intersections:
+        // the boxes overlap, but the other box is not fully inside this box
+        boolean overlaps = minX <= max.x && minY <= max.y && minZ <= max.z
+                && maxX >= min.x && maxY >= min.y && maxZ >= min.z;
+        boolean inside = minX > min.x && minY > min.y && minZ > min.z
+                && maxX < max.x && maxY < max.y && maxZ < max.z;
+        return overlaps && !inside;
+    }
+
+    /**
+     * Same as {@link #intersects(float, float, float, float, float, float)}, with the comparisons written as
+     * differences: the boxes overlap if the smallest difference is at least 0, and the box is inside if it is above 0
+     */
+    @Override
+    public int intersects(BoxBatch boxes) {
+        float[] overlap = boxes.a, inside = boxes.b;
+        int size = boxes.getSize();
+        for (int i = 0; i < size; i++) {
+            overlap[i] = Math.min(Math.min(Math.min(max.x - boxes.minX[i], max.y - boxes.minY[i]), Math.min(max.z - boxes.minZ[i], boxes.maxX[i] - min.x)),
+                    Math.min(boxes.maxY[i] - min.y, boxes.maxZ[i] - min.z));
+            inside[i] = Math.min(Math.min(Math.min(boxes.minX[i] - min.x, boxes.minY[i] - min.y), Math.min(boxes.minZ[i] - min.z, max.x - boxes.maxX[i])),
+                    Math.min(max.y - boxes.maxY[i], max.z - boxes.maxZ[i]));
+        }
+        int mask = 0;
+        for (int i = 0; i < size; i++) {
+            if (overlap[i] >= 0 && !(inside[i] > 0)) mask |= 1 << i;
+        }
+        return mask;
     }
 }
@@ -0,0 +1,47 @@
+package geometry;
+
+import lombok.Getter;
+
+/**
+ * Up to {@link #MAX_SIZE} axis aligned boxes in structure of arrays layout, so that a geometry can test all of them
+ * in one call, see {@link Geometry#intersects(BoxBatch)}. The results are bitmasks in which bit i belongs to box i.
+ *
+ * Kernels first compute a value per box in loops over these arrays without branches or calls, which HotSpot can
+ * compile to SIMD instructions, and then turn the values into a mask in a second, scalar loop.
+ * A batch is reused for many tests, so it is not thread safe.
+ */
+public class BoxBatch {
+
+    /** The results are masks in an int */
+    public static final int MAX_SIZE = 32;
+
+    public final float[] minX = new float[MAX_SIZE], minY = new float[MAX_SIZE], minZ = new float[MAX_SIZE];
+    public final float[] maxX = new float[MAX_SIZE], maxY = new float[MAX_SIZE], maxZ = new float[MAX_SIZE];
+
+    /** Per box values of the kernels */
+    final float[] a = new float[MAX_SIZE], b = new float[MAX_SIZE], c = new float[MAX_SIZE];
+
+    @Getter
+    private int size;
+
+    /** The boxes that are fully inside a solid geometry, written by {@link Geometry#classify(BoxBatch)} */
+    @Getter
+    int solidMask;
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void add(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        if (size == MAX_SIZE) {
+            throw new IllegalStateException("A batch holds at most " + MAX_SIZE + " boxes");
+        }
+        this.minX[size] = minX;
+        this.minY[size] = minY;
+        this.minZ[size] = minZ;
+        this.maxX[size] = maxX;
+        this.maxY[size] = maxY;
+        this.maxZ[size] = maxZ;
+        size++;
+    }
+}
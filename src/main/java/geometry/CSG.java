@@ -0,0 +1,120 @@
+package geometry;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.joml.Vector3f;
+
+/**
+ * Constructive solid geometry node that combines two signed distance fields.
+ *
+ * The distance of the combination is the minimum (union) or maximum (intersection, subtraction) of the distances
+ * of the operands, which keeps it a lower bound. A box is classified from the classifications of the operands,
+ * e.g. a box in the union is SOLID as soon as it is SOLID in either operand, so a whole tree of nodes is classified
+ * with one evaluation per primitive. Operands are not evaluated at all for boxes outside of their bounds, which
+ * are computed once when the node is created.
+ */
+public class CSG extends SignedDistanceField {
+
+    public enum Operation {
+        UNION, INTERSECTION, SUBTRACTION
+    }
+
+    @NonNull @Getter
+    private final Operation operation;
+    @NonNull @Getter
+    private final SignedDistanceField left, right;
+    /** Bounds of the operands: minX, minY, minZ, maxX, maxY, maxZ */
+    private final float[] leftBounds = new float[6], rightBounds = new float[6];
+
+    public CSG(Operation operation, SignedDistanceField left, SignedDistanceField right, Vector3f color) {
+        super(color);
+        this.operation = operation;
+        this.left = left;
+        this.right = right;
+        getBounds(left, leftBounds);
+        getBounds(right, rightBounds);
+    }
+
+    private static void getBounds(Geometry geometry, float[] bounds) {
+        Vector3f min = new Vector3f(), max = new Vector3f();
+        geometry.getBounds(min, max);
+        bounds[0] = min.x;
+        bounds[1] = min.y;
+        bounds[2] = min.z;
+        bounds[3] = max.x;
+        bounds[4] = max.y;
+        bounds[5] = max.z;
+    }
+
+    private static Classification classify(SignedDistanceField operand, float[] bounds,
+                                           float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        if (bounds[0] > maxX || bounds[1] > maxY || bounds[2] > maxZ || bounds[3] < minX || bounds[4] < minY || bounds[5] < minZ) {
+            return Classification.EMPTY;
+        }
+        return operand.classify(minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    public static CSG union(SignedDistanceField left, SignedDistanceField right) {
+        return new CSG(Operation.UNION, left, right, left.getColor());
+    }
+
+    public static CSG intersection(SignedDistanceField left, SignedDistanceField right) {
+        return new CSG(Operation.INTERSECTION, left, right, left.getColor());
+    }
+
+    /** The volume of left that is not in right */
+    public static CSG subtraction(SignedDistanceField left, SignedDistanceField right) {
+        return new CSG(Operation.SUBTRACTION, left, right, left.getColor());
+    }
+
+    @Override
+    public float distance(float x, float y, float z) {
+        switch (operation) {
+            case UNION:
+                return Math.min(left.distance(x, y, z), right.distance(x, y, z));
+            case INTERSECTION:
+                return Math.max(left.distance(x, y, z), right.distance(x, y, z));
+            default:
+                return Math.max(left.distance(x, y, z), -right.distance(x, y, z));
+        }
+    }
+
+    @Override
+    public Classification classify(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        // The right operand is only evaluated if the left one does not decide the result
+        Classification l = classify(left, leftBounds, minX, minY, minZ, maxX, maxY, maxZ);
+        switch (operation) {
+            case UNION:
+                if (l == Classification.SOLID) return l;
+                Classification r = classify(right, rightBounds, minX, minY, minZ, maxX, maxY, maxZ);
+                if (r == Classification.SOLID) return r;
+                return l == Classification.EMPTY && r == Classification.EMPTY ? Classification.EMPTY : Classification.SURFACE;
+            case INTERSECTION:
+                if (l == Classification.EMPTY) return l;
+                r = classify(right, rightBounds, minX, minY, minZ, maxX, maxY, maxZ);
+                if (r == Classification.EMPTY) return r;
+                return l == Classification.SOLID && r == Classification.SOLID ? Classification.SOLID : Classification.SURFACE;
+            default:
+                if (l == Classification.EMPTY) return l;
+                r = classify(right, rightBounds, minX, minY, minZ, maxX, maxY, maxZ);
+                if (r == Classification.SOLID) return Classification.EMPTY;
+                return l == Classification.SOLID && r == Classification.EMPTY ? Classification.SOLID : Classification.SURFACE;
+        }
+    }
+
+    @Override
+    public void getBounds(Vector3f min, Vector3f max) {
+        left.getBounds(min, max);
+        if (operation == Operation.SUBTRACTION) return;
+
+        Vector3f rightMin = new Vector3f(), rightMax = new Vector3f();
+        right.getBounds(rightMin, rightMax);
+        if (operation == Operation.UNION) {
+            min.min(rightMin);
+            max.max(rightMax);
+        } else {
+            min.max(rightMin);
+            max.min(rightMax);
+        }
+    }
+}
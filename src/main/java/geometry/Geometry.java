@@ -12,6 +12,107 @@ public abstract class Geometry {
 
     /** Whether the surface of the geometry intersects with a box */
     public abstract boolean intersects(Vector3f boxStart, Vector3f boxEnd);
+
+    /**
+     * Same as {@link #intersects(Vector3f, Vector3f)}, but with the box as primitive floats.
+     * Subclasses should override this without allocating, since it is called for every node of the core.SVO
+     */
+    public boolean intersects(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        return intersects(new Vector3f(minX, minY, minZ), new Vector3f(maxX, maxY, maxZ));
+    }
+
+    /**
+     * Tests all boxes of a batch at once, with the same results as {@link #intersects(float, float, float, float, float, float)}.
+     * Subclasses should override this with loops over the arrays of the batch, see {@link BoxBatch}
+     * @return Bit i is set if box i intersects
+     */
+    public int intersects(BoxBatch boxes) {
+        int mask = 0;
+        for (int i = 0; i < boxes.getSize(); i++) {
+            if (intersects(boxes.minX[i], boxes.minY[i], boxes.minZ[i], boxes.maxX[i], boxes.maxY[i], boxes.maxZ[i])) {
+                mask |= 1 << i;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Classifies all boxes of a batch at once, with the same results as {@link #classify(float, float, float, float, float, float)}.
+     * Geometries that override the classification of a single box must override this as well
+     * @return Bit i is set if box i is not EMPTY. The SOLID boxes are put in {@link BoxBatch#getSolidMask()}
+     */
+    public int classify(BoxBatch boxes) {
+        boxes.solidMask = 0;
+        return intersects(boxes);
+    }
+
+    /**
+     * Classifies the boxes of a batch one by one, for geometries that override
+     * {@link #classify(float, float, float, float, float, float)} but have no loop over the whole batch
+     * @return Bit i is set if box i is not EMPTY. The SOLID boxes are put in {@link BoxBatch#getSolidMask()}
+     */
+    protected int classifyEach(BoxBatch boxes) {
+        int mask = 0, solidMask = 0;
+        for (int i = 0; i < boxes.getSize(); i++) {
+            Classification classification = classify(boxes.minX[i], boxes.minY[i], boxes.minZ[i], boxes.maxX[i], boxes.maxY[i], boxes.maxZ[i]);
+            if (classification != Classification.EMPTY) mask |= 1 << i;
+            if (classification == Classification.SOLID) solidMask |= 1 << i;
+        }
+        boxes.solidMask = solidMask;
+        return mask;
+    }
+
+    /** How a box relates to a geometry, see {@link #classify} */
+    public enum Classification {
+        /** The box does not intersect the geometry */
+        EMPTY,
+        /** The box intersects the surface of the geometry, so its children must be tested */
+        SURFACE,
+        /** The box is fully inside a solid geometry, so all of its children are filled */
+        SOLID
+    }
+
+    /**
+     * Classifies a box in a single test, so that the build can stop subdividing boxes that are empty or solid.
+     * By default a geometry is only a surface: boxes that intersect it are SURFACE, all other boxes are EMPTY
+     */
+    public Classification classify(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        return intersects(minX, minY, minZ, maxX, maxY, maxZ) ? Classification.SURFACE : Classification.EMPTY;
+    }
+
+    /**
+     * Finds where the ray origin + t * direction first hits the geometry between tMin and tMax.
+     * By default the segment of the ray is halved front to back, testing the box around each part with
+     * {@link #intersects(float, float, float, float, float, float)}, until the parts are no longer than the precision
+     * @param precision The length of the smallest part in units of t, must be greater than 0
+     * @return The value of t where the first part that intersects starts, or infinity if the ray misses the geometry
+     */
+    public float intersectRay(float originX, float originY, float originZ, float dirX, float dirY, float dirZ,
+                              float tMin, float tMax, float precision) {
+        float x0 = originX + tMin * dirX, y0 = originY + tMin * dirY, z0 = originZ + tMin * dirZ;
+        float x1 = originX + tMax * dirX, y1 = originY + tMax * dirY, z1 = originZ + tMax * dirZ;
+        if (!intersects(Math.min(x0, x1), Math.min(y0, y1), Math.min(z0, z1), Math.max(x0, x1), Math.max(y0, y1), Math.max(z0, z1))) {
+            return Float.POSITIVE_INFINITY;
+        }
+        if (tMax - tMin <= precision) {
+            return tMin;
+        }
+        float tMid = (tMin + tMax) / 2;
+        float t = intersectRay(originX, originY, originZ, dirX, dirY, dirZ, tMin, tMid, precision);
+        if (t != Float.POSITIVE_INFINITY) {
+            return t;
+        }
+        return intersectRay(originX, originY, originZ, dirX, dirY, dirZ, tMid, tMax, precision);
+    }
+
+    /**
+     * Puts the axis aligned bounding box of the geometry in min and max.
+     * By default a geometry is unbounded, so it is a candidate for every box
+     */
+    public void getBounds(Vector3f min, Vector3f max) {
+        min.set(Float.NEGATIVE_INFINITY);
+        max.set(Float.POSITIVE_INFINITY);
+    }
 }
 
 
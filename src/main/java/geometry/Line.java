@@ -8,24 +8,36 @@ public class Line extends Geometry {
 
     private Vector3f lineStart, lineEnd;
 
+    @Override
+    public void getBounds(Vector3f min, Vector3f max) {
+        min.set(lineStart).min(lineEnd);
+        max.set(lineStart).max(lineEnd);
+    }
+
+    @Override
+    public boolean intersects(Vector3f boxStart, Vector3f boxEnd) {
+        return intersects(boxStart.x, boxStart.y, boxStart.z, boxEnd.x, boxEnd.y, boxEnd.z);
+    }
+
     @Override
     /**
      * Based on https://stackoverflow.com/questions/3106666/intersection-of-line-segment-with-axis-aligned-box-in-c-sharp
      */
-    public boolean intersects(Vector3f boxStart, Vector3f boxEnd) {
-        Vector3f beginToEnd = lineEnd.sub(lineStart, new Vector3f());
-        Vector3f beginToMin = boxStart.sub(lineStart, new Vector3f());
-        Vector3f beginToMax = boxEnd.sub(lineStart, new Vector3f());
+    public boolean intersects(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
         float tNear = -Float.MAX_VALUE;
         float tFar = Float.MAX_VALUE;
 
         for (int axis = 0; axis < 3; axis++) {
-            if (beginToEnd.get(axis) == 0) { // parallel
-                if (beginToMin.get(axis) > 0 || beginToMax.get(axis) < 0)
+            float start = lineStart.get(axis);
+            float beginToEnd = lineEnd.get(axis) - start;
+            float beginToMin = (axis == 0 ? minX : axis == 1 ? minY : minZ) - start;
+            float beginToMax = (axis == 0 ? maxX : axis == 1 ? maxY : maxZ) - start;
+            if (beginToEnd == 0) { // parallel
+                if (beginToMin > 0 || beginToMax < 0)
                     return false; // segment is not between planes
             } else {
-                float t1 = beginToMin.get(axis) / beginToEnd.get(axis);
-                float t2 = beginToMax.get(axis) / beginToEnd.get(axis);
+                float t1 = beginToMin / beginToEnd;
+                float t2 = beginToMax / beginToEnd;
                 float tMin = Math.min(t1, t2);
                 float tMax = Math.max(t1, t2);
                 if (tMin > tNear) tNear = tMin;
@@ -35,4 +47,46 @@ public class Line extends Geometry {
         }
         return (tNear >= 0 && tNear <= 1) || (tFar >= 0 && tFar <= 1);
     }
+
+    /**
+     * Same as {@link #intersects(float, float, float, float, float, float)} for all boxes: the slabs are intersected
+     * one axis at a time for all boxes, and the result is only checked at the end
+     */
+    @Override
+    public int intersects(BoxBatch boxes) {
+        float[] tNear = boxes.a, tFar = boxes.b, outside = boxes.c;
+        int size = boxes.getSize();
+        for (int i = 0; i < size; i++) {
+            tNear[i] = -Float.MAX_VALUE;
+            tFar[i] = Float.MAX_VALUE;
+            outside[i] = 0;
+        }
+        for (int axis = 0; axis < 3; axis++) {
+            float start = lineStart.get(axis);
+            float beginToEnd = lineEnd.get(axis) - start;
+            float[] mins = axis == 0 ? boxes.minX : axis == 1 ? boxes.minY : boxes.minZ;
+            float[] maxs = axis == 0 ? boxes.maxX : axis == 1 ? boxes.maxY : boxes.maxZ;
+            if (beginToEnd == 0) {
+                // Parallel: positive if the segment is not between the planes
+                for (int i = 0; i < size; i++) {
+                    outside[i] = Math.max(outside[i], Math.max(mins[i] - start, start - maxs[i]));
+                }
+            } else {
+                for (int i = 0; i < size; i++) {
+                    float t1 = (mins[i] - start) / beginToEnd;
+                    float t2 = (maxs[i] - start) / beginToEnd;
+                    tNear[i] = Math.max(tNear[i], Math.min(t1, t2));
+                    tFar[i] = Math.min(tFar[i], Math.max(t1, t2));
+                }
+            }
+        }
+        int mask = 0;
+        for (int i = 0; i < size; i++) {
+            if (outside[i] <= 0 && tNear[i] <= tFar[i] && tFar[i] >= 0
+                    && ((tNear[i] >= 0 && tNear[i] <= 1) || (tFar[i] >= 0 && tFar[i] <= 1))) {
+                mask |= 1 << i;
+            }
+        }
+        return mask;
+    }
 }
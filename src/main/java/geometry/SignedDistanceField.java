@@ -0,0 +1,105 @@
+package geometry;
+
+import org.joml.Vector3f;
+
+/**
+ * Solid geometry defined by a signed distance function: negative inside, positive outside, 0 on the surface.
+ *
+ * The distance must not change faster than the distance between two points (it is 1-Lipschitz), but it does not
+ * have to be exact: a lower bound of the distance to the surface is enough. A box of which the center is further
+ * from the surface than the half diagonal of the box then cannot contain any surface, so it is classified as
+ * EMPTY or SOLID from a single evaluation. See {@link CSG} for combining fields.
+ */
+public abstract class SignedDistanceField extends Geometry {
+
+    protected SignedDistanceField(Vector3f color) {
+        this.color = color;
+    }
+
+    /** Signed distance from the point to the surface, or a lower bound of its absolute value */
+    public abstract float distance(float x, float y, float z);
+
+    @Override
+    public Classification classify(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        float hx = (maxX - minX) / 2, hy = (maxY - minY) / 2, hz = (maxZ - minZ) / 2;
+        float halfDiagonal = (float) Math.sqrt(hx * hx + hy * hy + hz * hz);
+        float distance = distance(minX + hx, minY + hy, minZ + hz);
+        if (distance > halfDiagonal) return Classification.EMPTY;
+        if (distance < -halfDiagonal) return Classification.SOLID;
+        return Classification.SURFACE;
+    }
+
+    @Override
+    public int classify(BoxBatch boxes) {
+        return classifyEach(boxes);
+    }
+
+    /** Whether the box intersects the volume of the field, including its inside */
+    @Override
+    public boolean intersects(Vector3f boxStart, Vector3f boxEnd) {
+        return intersects(boxStart.x, boxStart.y, boxStart.z, boxEnd.x, boxEnd.y, boxEnd.z);
+    }
+
+    @Override
+    public boolean intersects(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        return classify(minX, minY, minZ, maxX, maxY, maxZ) != Classification.EMPTY;
+    }
+
+    /** Solid sphere */
+    public static SignedDistanceField sphere(Vector3f center, float radius, Vector3f color) {
+        return new SignedDistanceField(color) {
+            @Override
+            public float distance(float x, float y, float z) {
+                float dx = x - center.x, dy = y - center.y, dz = z - center.z;
+                return (float) Math.sqrt(dx * dx + dy * dy + dz * dz) - radius;
+            }
+
+            @Override
+            public void getBounds(Vector3f min, Vector3f max) {
+                center.sub(radius, radius, radius, min);
+                center.add(radius, radius, radius, max);
+            }
+        };
+    }
+
+    /** Solid axis aligned box from min to max */
+    public static SignedDistanceField box(Vector3f boxMin, Vector3f boxMax, Vector3f color) {
+        return new SignedDistanceField(color) {
+            @Override
+            public float distance(float x, float y, float z) {
+                // Distance to the closest face, per axis: positive outside the slab, negative inside
+                float dx = Math.max(boxMin.x - x, x - boxMax.x);
+                float dy = Math.max(boxMin.y - y, y - boxMax.y);
+                float dz = Math.max(boxMin.z - z, z - boxMax.z);
+                float outsideX = Math.max(dx, 0), outsideY = Math.max(dy, 0), outsideZ = Math.max(dz, 0);
+                float outside = (float) Math.sqrt(outsideX * outsideX + outsideY * outsideY + outsideZ * outsideZ);
+                return outside + Math.min(Math.max(dx, Math.max(dy, dz)), 0);
+            }
+
+            @Override
+            public void getBounds(Vector3f min, Vector3f max) {
+                min.set(boxMin);
+                max.set(boxMax);
+            }
+        };
+    }
+
+    /** Solid torus around the y axis through its center */
+    public static SignedDistanceField torus(Vector3f center, float majorRadius, float minorRadius, Vector3f color) {
+        return new SignedDistanceField(color) {
+            @Override
+            public float distance(float x, float y, float z) {
+                float dx = x - center.x, dy = y - center.y, dz = z - center.z;
+                float ring = (float) Math.sqrt(dx * dx + dz * dz) - majorRadius;
+                return (float) Math.sqrt(ring * ring + dy * dy) - minorRadius;
+            }
+
+            @Override
+            public void getBounds(Vector3f min, Vector3f max) {
+                float outer = majorRadius + minorRadius;
+                center.sub(outer, minorRadius, outer, min);
+                center.add(outer, minorRadius, outer, max);
+            }
+        };
+    }
+}
@@ -23,47 +23,95 @@ public class Sphere extends Geometry {
 
     @Override
     public boolean intersects(Vector3f boxStart, Vector3f boxEnd) {
+        return intersects(boxStart.x, boxStart.y, boxStart.z, boxEnd.x, boxEnd.y, boxEnd.z);
+    }
+
+    @Override
+    public boolean intersects(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
         // Only the surface of the sphere should produce intersections, not the whole volume
         // The surface is where the box intersects the volume but is not fully inside it
-        boolean intersectsVolume = intersectsVolume(boxStart, boxEnd, radius);
-        boolean insideVolume = insideVolume(boxStart, boxEnd, radius);
+        boolean intersectsVolume = intersectsVolume(minX, minY, minZ, maxX, maxY, maxZ, radius);
+        boolean insideVolume = insideVolume(minX, minY, minZ, maxX, maxY, maxZ, radius);
         return intersectsVolume && !insideVolume;
     }
 
+    /**
+     * Same as {@link #intersects(float, float, float, float, float, float)}, with the closest and furthest squared
+     * distances written without branches, so that the first loop can be vectorized
+     */
+    @Override
+    public int intersects(BoxBatch boxes) {
+        float sx = origin.x, sy = origin.y, sz = origin.z;
+        float[] near = boxes.a, far = boxes.b;
+        int size = boxes.getSize();
+        for (int i = 0; i < size; i++) {
+            // Closest distance: along each axis, 0 if the center is between the faces, else to the nearest face
+            float nx = Math.max(boxes.minX[i] - sx, 0) + Math.max(sx - boxes.maxX[i], 0);
+            float ny = Math.max(boxes.minY[i] - sy, 0) + Math.max(sy - boxes.maxY[i], 0);
+            float nz = Math.max(boxes.minZ[i] - sz, 0) + Math.max(sz - boxes.maxZ[i], 0);
+            near[i] = nx * nx + ny * ny + nz * nz;
+            // Furthest distance: along each axis to the furthest face
+            float fx = Math.max(Math.abs(sx - boxes.minX[i]), Math.abs(sx - boxes.maxX[i]));
+            float fy = Math.max(Math.abs(sy - boxes.minY[i]), Math.abs(sy - boxes.maxY[i]));
+            float fz = Math.max(Math.abs(sz - boxes.minZ[i]), Math.abs(sz - boxes.maxZ[i]));
+            far[i] = fx * fx + fy * fy + fz * fz;
+        }
+        float radiusSquared = radius * radius;
+        int mask = 0;
+        for (int i = 0; i < size; i++) {
+            if (near[i] <= radiusSquared && far[i] > radiusSquared) mask |= 1 << i;
+        }
+        return mask;
+    }
+
+    @Override
+    public void getBounds(Vector3f min, Vector3f max) {
+        origin.sub(radius, radius, radius, min);
+        origin.add(radius, radius, radius, max);
+    }
+
     public boolean intersectsVolume(Vector3f boxStart, Vector3f boxEnd, float R) {
+        return intersectsVolume(boxStart.x, boxStart.y, boxStart.z, boxEnd.x, boxEnd.y, boxEnd.z, R);
+    }
+
+    public boolean intersectsVolume(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, float R) {
         // https://stackoverflow.com/questions/4578967/cube-sphere-intersection-test
         Vector3f S = origin;
         float dist_squared = 0;
 
         // Calculate the closest distance from the cube to the sphere
-        if      (S.x < boxStart.x)  dist_squared    += squared(S.x - boxStart.x);
-        else if (S.x > boxEnd.x)    dist_squared    += squared(S.x - boxEnd.x);
-        if      (S.y < boxStart.y)  dist_squared    += squared(S.y - boxStart.y);
-        else if (S.y > boxEnd.y)    dist_squared    += squared(S.y - boxEnd.y);
-        if      (S.z < boxStart.z)  dist_squared    += squared(S.z - boxStart.z);
-        else if (S.z > boxEnd.z)    dist_squared    += squared(S.z - boxEnd.z);
+        if      (S.x < minX)    dist_squared    += squared(S.x - minX);
+        else if (S.x > maxX)    dist_squared    += squared(S.x - maxX);
+        if      (S.y < minY)    dist_squared    += squared(S.y - minY);
+        else if (S.y > maxY)    dist_squared    += squared(S.y - maxY);
+        if      (S.z < minZ)    dist_squared    += squared(S.z - minZ);
+        else if (S.z > maxZ)    dist_squared    += squared(S.z - maxZ);
 
         // If the closest distance is within the radius, it intersects the sphere's volume
         return dist_squared <= R * R;
     }
 
     public boolean insideVolume(Vector3f boxStart, Vector3f boxEnd, float R) {
+        return insideVolume(boxStart.x, boxStart.y, boxStart.z, boxEnd.x, boxEnd.y, boxEnd.z, R);
+    }
+
+    public boolean insideVolume(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, float R) {
         // Based on https://stackoverflow.com/questions/4578967/cube-sphere-intersection-test
         Vector3f S = origin;
         float dist_squared = 0;
 
         // Calculate the furthest distance from the cube to the sphere
-        if      (S.x < boxStart.x)  dist_squared    += squared(S.x - boxEnd.x);
-        else if (S.x > boxEnd.x)    dist_squared    += squared(S.x - boxStart.x);
-        else                        dist_squared    += Math.max(squared(S.x - boxEnd.x), squared(S.x - boxStart.x));
+        if      (S.x < minX)    dist_squared    += squared(S.x - maxX);
+        else if (S.x > maxX)    dist_squared    += squared(S.x - minX);
+        else                    dist_squared    += Math.max(squared(S.x - maxX), squared(S.x - minX));
 
-        if      (S.y < boxStart.y)  dist_squared    += squared(S.y - boxEnd.y);
-        else if (S.y > boxEnd.y)    dist_squared    += squared(S.y - boxStart.y);
-        else                        dist_squared    += Math.max(squared(S.y - boxEnd.y), squared(S.y - boxStart.y));
+        if      (S.y < minY)    dist_squared    += squared(S.y - maxY);
+        else if (S.y > maxY)    dist_squared    += squared(S.y - minY);
+        else                    dist_squared    += Math.max(squared(S.y - maxY), squared(S.y - minY));
 
-        if      (S.z < boxStart.z)  dist_squared    += squared(S.z - boxEnd.z);
-        else if (S.z > boxEnd.z)    dist_squared    += squared(S.z - boxStart.z);
-        else                        dist_squared    += Math.max(squared(S.z - boxEnd.z), squared(S.z - boxStart.z));
+        if      (S.z < minZ)    dist_squared    += squared(S.z - maxZ);
+        else if (S.z > maxZ)    dist_squared    += squared(S.z - minZ);
+        else                    dist_squared    += Math.max(squared(S.z - maxZ), squared(S.z - minZ));
 
         // If the furthest distance is within the radius, the box is fully inside the sphere's volume
         return dist_squared <= R * R;
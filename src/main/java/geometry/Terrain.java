@@ -0,0 +1,186 @@
+package geometry;
+
+import lombok.Getter;
+import org.joml.Vector3f;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Procedural terrain: a grid of columns of which the heights are generated with fractal value noise.
+ * A column is filled from the bottom of the terrain up to its height, so the terrain is solid.
+ *
+ * Boxes are classified with a pyramid of the minimum and maximum heights, in which every level halves the grid:
+ * a box above the maximum height of the columns under it is EMPTY, a box below their minimum height is SOLID.
+ * For the nodes of an SVO that spans the terrain with one voxel per column, the columns under a node are exactly
+ * one texel of a level of the pyramid, so classifying a node takes a single lookup.
+ *
+ * The heights and the pyramid are generated in parallel, in bands of rows.
+ */
+public class Terrain extends Geometry {
+
+    /** Rows of the grid that are generated by one task */
+    private static final int BAND_SIZE = 16;
+
+    /** Minimum corner of the terrain, the bottom of the columns */
+    @Getter
+    private final Vector3f origin;
+    /** Width of the terrain along x and z */
+    @Getter
+    private final float size;
+    @Getter
+    private final float maxHeight;
+    /** Number of columns along x and z */
+    @Getter
+    private final int resolution;
+    private final float columnSize;
+
+    /** Per level of the pyramid, the minimum and maximum height of the columns in a texel, in rows of x. Level 0 is the heights */
+    private final float[][] minHeights, maxHeights;
+
+    /**
+     * Generates the heights of a terrain
+     * @param levels The terrain has 2^levels by 2^levels columns
+     * @param maxHeight Heights are between 0 and maxHeight above the origin
+     * @param seed Terrains with the same seed and resolution are the same
+     * @param pool Generates the heights and the pyramid in parallel
+     */
+    public Terrain(Vector3f origin, float size, int levels, float maxHeight, long seed, ForkJoinPool pool, Vector3f color) {
+        if (levels < 0 || levels > 14) {
+            throw new IllegalArgumentException("Levels must be between 0 and 14, got " + levels);
+        }
+        this.origin = origin;
+        this.size = size;
+        this.maxHeight = maxHeight;
+        this.resolution = 1 << levels;
+        this.columnSize = size / resolution;
+        this.color = color;
+
+        minHeights = new float[levels + 1][];
+        maxHeights = new float[levels + 1][];
+        float[] heights = new float[resolution * resolution];
+        minHeights[0] = heights;
+        maxHeights[0] = heights;
+
+        // Features of about a quarter of the terrain, with octaves down to 2 columns
+        float frequency = 4f / resolution;
+        int octaves = Math.max(1, levels - 2);
+        int numBands = (resolution + BAND_SIZE - 1) / BAND_SIZE;
+        pool.submit(() -> IntStream.range(0, numBands).parallel().forEach(band -> {
+            for (int z = band * BAND_SIZE; z < Math.min(resolution, (band + 1) * BAND_SIZE); z++) {
+                for (int x = 0; x < resolution; x++) {
+                    heights[z * resolution + x] = maxHeight * fractalNoise(x * frequency, z * frequency, octaves, seed);
+                }
+            }
+        })).join();
+
+        for (int level = 1; level <= levels; level++) {
+            int levelResolution = resolution >> level;
+            float[] parentMin = minHeights[level - 1], parentMax = maxHeights[level - 1];
+            float[] min = new float[levelResolution * levelResolution], max = new float[levelResolution * levelResolution];
+            int parentResolution = 2 * levelResolution;
+            pool.submit(() -> IntStream.range(0, levelResolution).parallel().forEach(z -> {
+                for (int x = 0; x < levelResolution; x++) {
+                    int p = 2 * z * parentResolution + 2 * x;
+                    min[z * levelResolution + x] = Math.min(Math.min(parentMin[p], parentMin[p + 1]),
+                            Math.min(parentMin[p + parentResolution], parentMin[p + parentResolution + 1]));
+                    max[z * levelResolution + x] = Math.max(Math.max(parentMax[p], parentMax[p + 1]),
+                            Math.max(parentMax[p + parentResolution], parentMax[p + parentResolution + 1]));
+                }
+            })).join();
+            minHeights[level] = min;
+            maxHeights[level] = max;
+        }
+    }
+
+    /** Height of a column above the origin */
+    public float getHeight(int x, int z) {
+        return minHeights[0][z * resolution + x];
+    }
+
+    /**
+     * Sum of octaves of value noise, each with twice the frequency and half the amplitude of the previous one
+     * @return A value between 0 and 1
+     */
+    static float fractalNoise(float x, float z, int octaves, long seed) {
+        float sum = 0, amplitude = 0.5f, totalAmplitude = 0;
+        for (int octave = 0; octave < octaves; octave++) {
+            sum += amplitude * valueNoise(x, z, seed + octave);
+            totalAmplitude += amplitude;
+            x *= 2;
+            z *= 2;
+            amplitude /= 2;
+        }
+        return sum / totalAmplitude;
+    }
+
+    /** Random values at integer coordinates, interpolated smoothly in between */
+    private static float valueNoise(float x, float z, long seed) {
+        int x0 = (int) Math.floor(x), z0 = (int) Math.floor(z);
+        float fx = x - x0, fz = z - z0;
+        float u = fx * fx * (3 - 2 * fx), v = fz * fz * (3 - 2 * fz);
+        float a = hash(x0, z0, seed), b = hash(x0 + 1, z0, seed);
+        float c = hash(x0, z0 + 1, seed), d = hash(x0 + 1, z0 + 1, seed);
+        return a + (b - a) * u + (c - a) * v + (a - b - c + d) * u * v;
+    }
+
+    /** Value between 0 and 1 for a lattice point, from the SplitMix64 finalizer */
+    private static float hash(int x, int z, long seed) {
+        long h = seed * 0x9E3779B97F4A7C15L + ((long) x << 32 ^ (z & 0xFFFFFFFFL));
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        h ^= h >>> 31;
+        return (h >>> 40) / (float) (1 << 24);
+    }
+
+    @Override
+    public Classification classify(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        // Columns under the box, with some tolerance for rounding in the box coordinates
+        int x0 = Math.max(0, (int) Math.floor((minX - origin.x) / columnSize + 1e-3f));
+        int z0 = Math.max(0, (int) Math.floor((minZ - origin.z) / columnSize + 1e-3f));
+        int x1 = Math.min(resolution - 1, (int) Math.ceil((maxX - origin.x) / columnSize - 1e-3f) - 1);
+        int z1 = Math.min(resolution - 1, (int) Math.ceil((maxZ - origin.z) / columnSize - 1e-3f) - 1);
+        if (x0 > x1 || z0 > z1 || maxY <= origin.y) {
+            return Classification.EMPTY;
+        }
+
+        // The level at which the columns are covered by at most 2 by 2 texels
+        int span = Math.max(x1 - x0, z1 - z0) + 1;
+        int level = Math.min(minHeights.length - 1, 32 - Integer.numberOfLeadingZeros(span - 1));
+        int levelResolution = resolution >> level;
+        float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+        for (int z = z0 >> level; z <= z1 >> level; z++) {
+            for (int x = x0 >> level; x <= x1 >> level; x++) {
+                min = Math.min(min, minHeights[level][z * levelResolution + x]);
+                max = Math.max(max, maxHeights[level][z * levelResolution + x]);
+            }
+        }
+
+        // A column fills the boxes of which the bottom is below its top
+        if (minY >= origin.y + max) return Classification.EMPTY;
+        if (maxY <= origin.y + min && minY >= origin.y) return Classification.SOLID;
+        return Classification.SURFACE;
+    }
+
+    @Override
+    public int classify(BoxBatch boxes) {
+        return classifyEach(boxes);
+    }
+
+    /** Whether the box intersects the volume of the terrain */
+    @Override
+    public boolean intersects(Vector3f boxStart, Vector3f boxEnd) {
+        return intersects(boxStart.x, boxStart.y, boxStart.z, boxEnd.x, boxEnd.y, boxEnd.z);
+    }
+
+    @Override
+    public boolean intersects(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        return classify(minX, minY, minZ, maxX, maxY, maxZ) != Classification.EMPTY;
+    }
+
+    @Override
+    public void getBounds(Vector3f min, Vector3f max) {
+        min.set(origin);
+        max.set(origin.x + size, origin.y + maxHeights[maxHeights.length - 1][0], origin.z + size);
+    }
+}
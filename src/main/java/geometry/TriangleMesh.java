@@ -0,0 +1,450 @@
+package geometry;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.joml.Vector3f;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Surface of a triangle mesh, loaded from an OBJ or PLY file.
+ *
+ * A box intersects the mesh if it overlaps with any of its triangles, with the exact separating axis test of
+ * {@link #triangleIntersectsBox}. The triangles are binned in a {@link BVH} over their bounds, so a box only tests
+ * the triangles near it, and the search stops at the first triangle that overlaps. Intersection tests do not
+ * change the mesh, so the parallel build can test boxes from all its threads.
+ */
+public class TriangleMesh extends Geometry {
+
+    /** 3 floats per vertex */
+    @Getter
+    private final float[] vertices;
+    /** 3 vertex indices per triangle */
+    @Getter
+    private final int[] triangles;
+
+    private BVH triangleIndex;
+    /** Stored once, so that intersection tests do not allocate a method reference */
+    private final BVH.BoxTest triangleTest = this::triangleIntersects;
+
+    /**
+     * @param vertices 3 floats per vertex
+     * @param triangles 3 vertex indices per triangle
+     */
+    public TriangleMesh(@NonNull float[] vertices, @NonNull int[] triangles, Vector3f color) {
+        if (vertices.length % 3 != 0 || triangles.length % 3 != 0) {
+            throw new IllegalArgumentException("Expected 3 floats per vertex and 3 indices per triangle, got "
+                    + vertices.length + " and " + triangles.length);
+        }
+        for (int index : triangles) {
+            if (index < 0 || 3 * index >= vertices.length) {
+                throw new IllegalArgumentException("Vertex index " + index + " of " + vertices.length / 3 + " vertices");
+            }
+        }
+        this.vertices = vertices;
+        this.triangles = triangles;
+        this.color = color;
+        updateTriangleIndex();
+    }
+
+    public int getNumTriangles() {
+        return triangles.length / 3;
+    }
+
+    /**
+     * Loads an OBJ or PLY file, depending on the extension of the path
+     */
+    public static TriangleMesh load(Path path, Vector3f color) throws IOException {
+        String name = path.getFileName().toString().toLowerCase();
+        if (name.endsWith(".obj")) {
+            return loadOBJ(path, color);
+        } else if (name.endsWith(".ply")) {
+            return loadPLY(path, color);
+        }
+        throw new IOException("Unknown mesh format of " + path + ", expected .obj or .ply");
+    }
+
+    /**
+     * Loads the vertices and faces of an OBJ file. Faces with more than 3 vertices are split into a fan of
+     * triangles, everything else (normals, texture coordinates, groups, materials) is ignored
+     */
+    public static TriangleMesh loadOBJ(Path path, Vector3f color) throws IOException {
+        FloatArray vertices = new FloatArray();
+        IntArray triangles = new IntArray();
+        int[] face = new int[16];
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String[] tokens = line.trim().split("\\s+");
+                try {
+                    if (tokens[0].equals("v")) {
+                        for (int a = 1; a <= 3; a++) vertices.add(Float.parseFloat(tokens[a]));
+                    } else if (tokens[0].equals("f")) {
+                        int numVertices = tokens.length - 1;
+                        if (face.length < numVertices) face = new int[numVertices];
+                        for (int i = 0; i < numVertices; i++) {
+                            // v, v/vt, v/vt/vn or v//vn, negative indices count back from the last vertex
+                            String token = tokens[i + 1];
+                            int slash = token.indexOf('/');
+                            int index = Integer.parseInt(slash < 0 ? token : token.substring(0, slash));
+                            face[i] = index < 0 ? vertices.size / 3 + index : index - 1;
+                        }
+                        addFan(face, numVertices, triangles);
+                    }
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    throw new IOException(path + ": invalid line " + lineNumber + ": " + line, e);
+                }
+            }
+        }
+        return create(path, vertices, triangles, color);
+    }
+
+    /**
+     * Loads the vertices and faces of a PLY file in the ascii, binary_little_endian or binary_big_endian format.
+     * Only the x, y and z properties of the vertex element and the vertex_indices list of the face element are used
+     */
+    public static TriangleMesh loadPLY(Path path, Vector3f color) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path), 1 << 16)) {
+            PlyReader reader = new PlyReader(path, in);
+            FloatArray vertices = new FloatArray();
+            IntArray triangles = new IntArray();
+            int[] face = new int[16];
+
+            for (PlyElement element : reader.elements) {
+                int x = element.indexOf("x"), y = element.indexOf("y"), z = element.indexOf("z");
+                int indices = Math.max(element.indexOf("vertex_indices"), element.indexOf("vertex_index"));
+                boolean isVertex = element.name.equals("vertex"), isFace = element.name.equals("face");
+                if (isVertex && (x < 0 || y < 0 || z < 0)) {
+                    throw new IOException(path + ": the vertex element has no x, y and z properties");
+                }
+
+                float[] position = new float[3];
+                for (int e = 0; e < element.count; e++) {
+                    for (int p = 0; p < element.properties.size(); p++) {
+                        PlyProperty property = element.properties.get(p);
+                        if (property.countType == null) {
+                            double value = reader.read(property.type);
+                            if (isVertex && p == x) position[0] = (float) value;
+                            if (isVertex && p == y) position[1] = (float) value;
+                            if (isVertex && p == z) position[2] = (float) value;
+                        } else {
+                            int count = (int) reader.read(property.countType);
+                            if (count < 0) throw new IOException(path + ": negative list length");
+                            boolean isIndices = isFace && p == indices;
+                            if (isIndices && face.length < count) face = new int[count];
+                            for (int i = 0; i < count; i++) {
+                                int value = (int) reader.read(property.type);
+                                if (isIndices) face[i] = value;
+                            }
+                            if (isIndices) addFan(face, count, triangles);
+                        }
+                    }
+                    if (isVertex) {
+                        for (float value : position) vertices.add(value);
+                    }
+                }
+            }
+            return create(path, vertices, triangles, color);
+        }
+    }
+
+    private static TriangleMesh create(Path path, FloatArray vertices, IntArray triangles, Vector3f color) throws IOException {
+        try {
+            return new TriangleMesh(Arrays.copyOf(vertices.values, vertices.size), Arrays.copyOf(triangles.values, triangles.size), color);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(path + ": " + e.getMessage(), e);
+        }
+    }
+
+    /** Splits a convex polygon into the triangles (0, i, i + 1) */
+    private static void addFan(int[] face, int numVertices, IntArray triangles) {
+        for (int i = 1; i + 1 < numVertices; i++) {
+            triangles.add(face[0]);
+            triangles.add(face[i]);
+            triangles.add(face[i + 1]);
+        }
+    }
+
+    /**
+     * Scales and moves the mesh uniformly, so that its bounds fit in the cube from min to min + size.
+     * The mesh is centered in the cube along the axes where it is smaller than the cube
+     */
+    public void fitInto(Vector3f min, float size) {
+        Vector3f meshMin = new Vector3f(), meshMax = new Vector3f();
+        getBounds(meshMin, meshMax);
+        Vector3f extent = new Vector3f(meshMax).sub(meshMin);
+        float longest = Math.max(extent.x, Math.max(extent.y, extent.z));
+        if (!(longest > 0)) {
+            throw new IllegalStateException("Cannot fit a mesh without extent");
+        }
+        float scale = size / longest;
+        for (int v = 0; v < vertices.length; v += 3) {
+            for (int a = 0; a < 3; a++) {
+                vertices[v + a] = (vertices[v + a] - meshMin.get(a)) * scale + min.get(a) + (size - extent.get(a) * scale) / 2;
+            }
+        }
+        updateTriangleIndex();
+    }
+
+    /**
+     * Rebuilds the index over the triangle bounds. Call this after changing the vertices
+     */
+    public void updateTriangleIndex() {
+        int numTriangles = getNumTriangles();
+        float[] bounds = new float[6 * numTriangles];
+        for (int t = 0; t < numTriangles; t++) {
+            int a = 3 * triangles[3 * t], b = 3 * triangles[3 * t + 1], c = 3 * triangles[3 * t + 2];
+            for (int axis = 0; axis < 3; axis++) {
+                bounds[6 * t + axis] = Math.min(vertices[a + axis], Math.min(vertices[b + axis], vertices[c + axis]));
+                bounds[6 * t + 3 + axis] = Math.max(vertices[a + axis], Math.max(vertices[b + axis], vertices[c + axis]));
+            }
+        }
+        triangleIndex = new BVH(bounds, numTriangles);
+    }
+
+    @Override
+    public void getBounds(Vector3f min, Vector3f max) {
+        min.set(Float.POSITIVE_INFINITY);
+        max.set(Float.NEGATIVE_INFINITY);
+        for (int v = 0; v < vertices.length; v += 3) {
+            min.set(Math.min(min.x, vertices[v]), Math.min(min.y, vertices[v + 1]), Math.min(min.z, vertices[v + 2]));
+            max.set(Math.max(max.x, vertices[v]), Math.max(max.y, vertices[v + 1]), Math.max(max.z, vertices[v + 2]));
+        }
+    }
+
+    @Override
+    public boolean intersects(Vector3f boxStart, Vector3f boxEnd) {
+        return intersects(boxStart.x, boxStart.y, boxStart.z, boxEnd.x, boxEnd.y, boxEnd.z);
+    }
+
+    @Override
+    public boolean intersects(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        return triangleIndex.findFirst(minX, minY, minZ, maxX, maxY, maxZ, triangleTest) >= 0;
+    }
+
+    private boolean triangleIntersects(int triangle, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        int a = 3 * triangles[3 * triangle], b = 3 * triangles[3 * triangle + 1], c = 3 * triangles[3 * triangle + 2];
+        return triangleIntersectsBox(
+                vertices[a], vertices[a + 1], vertices[a + 2],
+                vertices[b], vertices[b + 1], vertices[b + 2],
+                vertices[c], vertices[c + 1], vertices[c + 2],
+                minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    /**
+     * Separating axis test of a triangle against a box, based on "Fast 3D Triangle-Box Overlap Testing" by
+     * Tomas Akenine-Moller. The triangle and the box overlap if they cannot be separated along any of 13 axes:
+     * the 3 box axes, the triangle normal, and the 9 cross products of the box axes with the triangle edges.
+     * Touching counts as overlapping, like in the other geometries
+     */
+    public static boolean triangleIntersectsBox(float ax, float ay, float az, float bx, float by, float bz,
+                                                float cx, float cy, float cz,
+                                                float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        // Box axes: the bounds of the triangle must overlap with the box
+        if (Math.min(ax, Math.min(bx, cx)) > maxX || Math.max(ax, Math.max(bx, cx)) < minX) return false;
+        if (Math.min(ay, Math.min(by, cy)) > maxY || Math.max(ay, Math.max(by, cy)) < minY) return false;
+        if (Math.min(az, Math.min(bz, cz)) > maxZ || Math.max(az, Math.max(bz, cz)) < minZ) return false;
+
+        // Move the box center to the origin
+        float hx = (maxX - minX) / 2, hy = (maxY - minY) / 2, hz = (maxZ - minZ) / 2;
+        float centerX = minX + hx, centerY = minY + hy, centerZ = minZ + hz;
+        ax -= centerX; ay -= centerY; az -= centerZ;
+        bx -= centerX; by -= centerY; bz -= centerZ;
+        cx -= centerX; cy -= centerY; cz -= centerZ;
+
+        // Triangle normal: the box must reach the plane of the triangle
+        float e0x = bx - ax, e0y = by - ay, e0z = bz - az;
+        float e1x = cx - bx, e1y = cy - by, e1z = cz - bz;
+        float e2x = ax - cx, e2y = ay - cy, e2z = az - cz;
+        float nx = e0y * e1z - e0z * e1y, ny = e0z * e1x - e0x * e1z, nz = e0x * e1y - e0y * e1x;
+        if (!overlapsOnAxis(nx, ny, nz, ax, ay, az, ax, ay, az, ax, ay, az, hx, hy, hz)) return false;
+
+        // Cross products of the box axes x, y and z with each edge e: (0, -e.z, e.y), (e.z, 0, -e.x), (-e.y, e.x, 0)
+        return overlapsOnAxis(0, -e0z, e0y, ax, ay, az, bx, by, bz, cx, cy, cz, hx, hy, hz)
+                && overlapsOnAxis(0, -e1z, e1y, ax, ay, az, bx, by, bz, cx, cy, cz, hx, hy, hz)
+                && overlapsOnAxis(0, -e2z, e2y, ax, ay, az, bx, by, bz, cx, cy, cz, hx, hy, hz)
+                && overlapsOnAxis(e0z, 0, -e0x, ax, ay, az, bx, by, bz, cx, cy, cz, hx, hy, hz)
+                && overlapsOnAxis(e1z, 0, -e1x, ax, ay, az, bx, by, bz, cx, cy, cz, hx, hy, hz)
+                && overlapsOnAxis(e2z, 0, -e2x, ax, ay, az, bx, by, bz, cx, cy, cz, hx, hy, hz)
+                && overlapsOnAxis(-e0y, e0x, 0, ax, ay, az, bx, by, bz, cx, cy, cz, hx, hy, hz)
+                && overlapsOnAxis(-e1y, e1x, 0, ax, ay, az, bx, by, bz, cx, cy, cz, hx, hy, hz)
+                && overlapsOnAxis(-e2y, e2x, 0, ax, ay, az, bx, by, bz, cx, cy, cz, hx, hy, hz);
+    }
+
+    /**
+     * Whether the projections of the triangle and of a box centered at the origin overlap on an axis
+     */
+    private static boolean overlapsOnAxis(float axisX, float axisY, float axisZ,
+                                          float ax, float ay, float az, float bx, float by, float bz,
+                                          float cx, float cy, float cz, float hx, float hy, float hz) {
+        float pa = axisX * ax + axisY * ay + axisZ * az;
+        float pb = axisX * bx + axisY * by + axisZ * bz;
+        float pc = axisX * cx + axisY * cy + axisZ * cz;
+        float radius = hx * Math.abs(axisX) + hy * Math.abs(axisY) + hz * Math.abs(axisZ);
+        return Math.min(pa, Math.min(pb, pc)) <= radius && Math.max(pa, Math.max(pb, pc)) >= -radius;
+    }
+
+    private static class FloatArray {
+        float[] values = new float[1024];
+        int size;
+
+        void add(float value) {
+            if (size == values.length) values = Arrays.copyOf(values, 2 * size);
+            values[size++] = value;
+        }
+    }
+
+    private static class IntArray {
+        int[] values = new int[1024];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, 2 * size);
+            values[size++] = value;
+        }
+    }
+
+    private static class PlyProperty {
+        final String name, type;
+        /** Type of the length of a list property, or null if the property is a single value */
+        final String countType;
+
+        PlyProperty(String name, String type, String countType) {
+            this.name = name;
+            this.type = type;
+            this.countType = countType;
+        }
+    }
+
+    private static class PlyElement {
+        final String name;
+        final int count;
+        final ArrayList<PlyProperty> properties = new ArrayList<>();
+
+        PlyElement(String name, int count) {
+            this.name = name;
+            this.count = count;
+        }
+
+        int indexOf(String propertyName) {
+            for (int i = 0; i < properties.size(); i++) {
+                if (properties.get(i).name.equals(propertyName)) return i;
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Reads the header of a PLY file, and then the values of its elements one at a time
+     */
+    private static class PlyReader {
+        final Path path;
+        final DataInputStream in;
+        final ArrayList<PlyElement> elements = new ArrayList<>();
+        final boolean ascii, littleEndian;
+        final StringBuilder token = new StringBuilder();
+
+        PlyReader(Path path, InputStream in) throws IOException {
+            this.path = path;
+            this.in = new DataInputStream(in);
+            if (!readLine().equals("ply")) {
+                throw new IOException(path + " is not a PLY file");
+            }
+            String format = null;
+            String line;
+            while (!(line = readLine()).equals("end_header")) {
+                String[] tokens = line.split("\\s+");
+                try {
+                    if (tokens[0].equals("format")) {
+                        format = tokens[1];
+                    } else if (tokens[0].equals("element")) {
+                        elements.add(new PlyElement(tokens[1], Integer.parseInt(tokens[2])));
+                    } else if (tokens[0].equals("property")) {
+                        if (elements.isEmpty()) throw new IOException(path + ": property outside of an element");
+                        PlyElement element = elements.get(elements.size() - 1);
+                        if (tokens[1].equals("list")) {
+                            element.properties.add(new PlyProperty(tokens[4], tokens[3], tokens[2]));
+                        } else {
+                            element.properties.add(new PlyProperty(tokens[2], tokens[1], null));
+                        }
+                    }
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    throw new IOException(path + ": invalid header line: " + line, e);
+                }
+            }
+            if ("ascii".equals(format)) {
+                ascii = true;
+                littleEndian = false;
+            } else if ("binary_little_endian".equals(format) || "binary_big_endian".equals(format)) {
+                ascii = false;
+                littleEndian = format.equals("binary_little_endian");
+            } else {
+                throw new IOException(path + ": unsupported format " + format);
+            }
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder line = new StringBuilder();
+            int c;
+            while ((c = in.read()) != '\n') {
+                if (c < 0) throw new EOFException(path + ": the header has no end_header line");
+                if (c != '\r') line.append((char) c);
+            }
+            return line.toString().trim();
+        }
+
+        double read(String type) throws IOException {
+            if (ascii) {
+                try {
+                    return Double.parseDouble(readToken());
+                } catch (NumberFormatException e) {
+                    throw new IOException(path + ": invalid value", e);
+                }
+            }
+            switch (type) {
+                case "char": case "int8":
+                    return in.readByte();
+                case "uchar": case "uint8":
+                    return in.readUnsignedByte();
+                case "short": case "int16":
+                    return littleEndian ? Short.reverseBytes(in.readShort()) : in.readShort();
+                case "ushort": case "uint16":
+                    return (littleEndian ? Short.reverseBytes(in.readShort()) : in.readShort()) & 0xFFFF;
+                case "int": case "int32":
+                    return littleEndian ? Integer.reverseBytes(in.readInt()) : in.readInt();
+                case "uint": case "uint32":
+                    return (littleEndian ? Integer.reverseBytes(in.readInt()) : in.readInt()) & 0xFFFFFFFFL;
+                case "float": case "float32":
+                    return Float.intBitsToFloat(littleEndian ? Integer.reverseBytes(in.readInt()) : in.readInt());
+                case "double": case "float64":
+                    return Double.longBitsToDouble(littleEndian ? Long.reverseBytes(in.readLong()) : in.readLong());
+                default:
+                    throw new IOException(path + ": unknown property type " + type);
+            }
+        }
+
+        private String readToken() throws IOException {
+            token.setLength(0);
+            int c = in.read();
+            while (c == ' ' || c == '\t' || c == '\r' || c == '\n') c = in.read();
+            while (c >= 0 && c != ' ' && c != '\t' && c != '\r' && c != '\n') {
+                token.append((char) c);
+                c = in.read();
+            }
+            if (token.length() == 0) throw new EOFException(path + ": unexpected end of file");
+            return token.toString();
+        }
+    }
+}
@@ -10,6 +10,10 @@
 layout(binding = 0, rgba32f) uniform image2D framebufferImage;
 
 uniform sampler3D voxelTexture;
+/** The same octree as voxelTexture, with cells encoded as 32 bit integers, see WideCellEncoding */
+uniform usampler3D wideVoxelTexture;
+/** Same layout as voxelTexture, with the average color and coverage of the subtree of each cell, see SVO.getLODTextureData */
+uniform sampler3D lodTexture;
 
 /**
  * Describes the view frustum of the camera via its world-space corner
@@ -19,14 +23,41 @@ uniform sampler3D voxelTexture;
  */
 uniform vec3 eye, ray00, ray01, ray10, ray11;
 
-uniform float invNumberOfIndGrids;
-/** texture size, inverse texture size, half inverse texture size */
-uniform vec3 textureSize;
+/**
+ * The octree as a stream of variable sized nodes, see CompactNodeEncoding.
+ * Starts with the position of the root node, the rest are bytes read by compactByte
+ */
+layout(std430, binding = 1) readonly buffer CompactNodes {
+    uint compactNodes[];
+};
+
+/** The octree with its last levels as dense bricks, see BrickMap. Nodes of 8 cells in the wide cell encoding */
+layout(std430, binding = 2) readonly buffer BrickNodes {
+    uint brickNodes[];
+};
+/** The voxels of all bricks, brickSize^3 per brick */
+layout(std430, binding = 3) readonly buffer Bricks {
+    uint bricks[];
+};
+/** voxels along each axis of a brick */
+uniform int brickSize;
+
+/** inverse of the width, height and depth of the voxel texture, which does not have to be a cube */
+uniform vec3 invTextureSize;
+/** number of voxels along each axis (2^maxDepth), inverse, half inverse */
+uniform vec3 voxelResolution;
+/** number of 2x2x2 blocks along the x and y axis of the voxel texture */
+uniform ivec2 textureBlocks;
+/** size of a pixel at a distance of 1 from the eye, to find the depth at which voxels are smaller than a pixel */
+uniform float pixelSize;
 
 // How to look up colors:
 // 0: Traverse the octree
 // 1: Show the 3D texture directly as it is stored in memory
 // 2: Same as (1) but show the color that the voxels point to
+// 4: Traverse the octree in the wide voxel texture
+// 5: Traverse the compact nodes
+// 6: Traverse the brick map
 uniform int lookupMode = 1;
 
 #define LARGE_FLOAT 1E+10
@@ -34,6 +65,12 @@ uniform int lookupMode = 1;
 #define EPSILON 0.0001
 #define HRDWTREE_MAX_DEPTH 16
 
+// Node types of the wide cell encoding, stored in the highest 2 bits
+#define WIDE_TYPE_INDEX 1u
+#define WIDE_TYPE_DATA 2u
+#define WIDE_TYPE_BRICK 3u
+#define WIDE_POINTER_MASK 0x7FFFFFFu
+
 
 /**
  * Describes an axis-aligned box by its minimum and maximum corner
@@ -157,8 +194,9 @@ struct Cell {
 
 /**
  * Based on https://developer.nvidia.com/gpugems/GPUGems2/gpugems2_chapter37.html
+ * Index cells at maxLookupDepth are not traversed further, but return the average color of their subtree instead
  */
-Cell treeLookup(vec3 m) {
+Cell treeLookup(vec3 m, float maxLookupDepth) {
     vec4 cellData = vec4(0.0, 0.0, 0.0, 0.0);
     vec3 p;
     float pow2 = 1.0;
@@ -173,7 +211,9 @@ Cell treeLookup(vec3 m) {
             // compute lookup coords. within current node
             // fract(m * pow2) gets the relative lookup position in the current node (cell.xyz)
             vec3 localOffset = fract(m * pow2);
-            p = cellData.xyz + localOffset * invNumberOfIndGrids;
+            // index cells store the 2x2x2 block of the next grid as a byte per axis
+            vec3 block = floor(cellData.xyz * 255.0 + 0.5);
+            p = (block + localOffset) * 2.0 * invTextureSize;
 
             // continue to next depth
             cellData = texture(voxelTexture, p); // maybe offset slightly? + vec3(0.05));
@@ -185,6 +225,12 @@ Cell treeLookup(vec3 m) {
 
             pow2 *= 2.0;
             boxStart += childBoxOffsets[localOffsetIndex] / pow2;
+
+            // the subtree of this index cell is smaller than a pixel
+            if (i + 1 >= maxLookupDepth && cellData.w > 0.1 && cellData.w < 0.9) {
+                cellData = texture(lodTexture, p);
+                break;
+            }
         }
 
         // Check properties of new cell:
@@ -201,6 +247,188 @@ Cell treeLookup(vec3 m) {
     return res;
 }
 
+/**
+ * Same as treeLookup, but follows the integer pool indices of the wide voxel texture with exact texel fetches.
+ * Index cells of a symmetric DAG also store a reflection of the grid they point to, as bits x = 1, y = 2, z = 4,
+ * which is combined with the reflections above it.
+ */
+Cell treeLookupWide(vec3 m) {
+    uint cellValue = 0u;
+    int pointer = 0;
+    uint mirror = 0u;
+    float pow2 = 1.0;
+
+    vec3 boxStart = vec3(0);
+
+    for (int i = 0; i < HRDWTREE_MAX_DEPTH; i++) {
+        // child within the current grid
+        ivec3 child = ivec3(fract(m * pow2) * 2);
+
+        // the 2x2x2 block of the grid in the texture, and the cell of the child in the reflected grid
+        ivec3 block = ivec3(
+            pointer % textureBlocks.x,
+            (pointer / textureBlocks.x) % textureBlocks.y,
+            pointer / (textureBlocks.x * textureBlocks.y));
+        ivec3 reflectedChild = child ^ ivec3(uvec3(mirror) >> uvec3(0, 1, 2) & 1u);
+        cellValue = texelFetch(wideVoxelTexture, block * 2 + reflectedChild, 0).r;
+
+        pow2 *= 2.0;
+        boxStart += vec3(child) / pow2;
+
+        // stop at leaves and empty cells
+        if ((cellValue >> 30) != WIDE_TYPE_INDEX)
+            break;
+        pointer = int(cellValue & WIDE_POINTER_MASK);
+        mirror ^= (cellValue >> 27) & 7u;
+    }
+    Cell res;
+    res.boxStart = boxStart;
+    res.boxEnd = boxStart + vec3(1 / pow2);
+    if ((cellValue >> 30) == WIDE_TYPE_DATA) {
+        uvec3 rgb = (uvec3(cellValue) >> uvec3(16, 8, 0)) & 0xFFu;
+        res.data = vec4(vec3(rgb) / 255.0, 1.0);
+    } else {
+        res.data = vec4(0);
+    }
+    return res;
+}
+
+/**
+ * Same as treeLookupWide, but the last levels are dense bricks of voxels. Within a brick the ray steps from voxel to
+ * voxel (DDA), starting at m, instead of descending from the root again. Returns the box of the voxel that was hit,
+ * or the box of the whole brick if the ray leaves it, so that the next lookup is behind the brick.
+ */
+Cell treeLookupBrick(vec3 m, vec3 dir) {
+    uint cellValue = 0u;
+    uint node = 0u;
+    float pow2 = 1.0;
+
+    vec3 boxStart = vec3(0);
+
+    for (int i = 0; i < HRDWTREE_MAX_DEPTH; i++) {
+        ivec3 child = ivec3(fract(m * pow2) * 2);
+        pow2 *= 2.0;
+        boxStart += vec3(child) / pow2;
+
+        cellValue = brickNodes[node * 8u + uint(child.x + 2 * child.y + 4 * child.z)];
+        if ((cellValue >> 30) != WIDE_TYPE_INDEX)
+            break;
+        node = cellValue & WIDE_POINTER_MASK;
+    }
+    Cell res;
+    res.boxStart = boxStart;
+    res.boxEnd = boxStart + vec3(1 / pow2);
+
+    if ((cellValue >> 30) == WIDE_TYPE_BRICK) {
+        uint brickStart = (cellValue & WIDE_POINTER_MASK) * uint(brickSize * brickSize * brickSize);
+        float voxelSize = 1.0 / (pow2 * float(brickSize));
+
+        ivec3 voxel = clamp(ivec3((m - boxStart) / voxelSize), ivec3(0), ivec3(brickSize - 1));
+        ivec3 stepDir = ivec3(sign(dir));
+        vec3 tDelta = voxelSize / abs(dir);
+        vec3 tMax = (boxStart + (vec3(voxel) + step(0.0, dir)) * voxelSize - m) / dir;
+
+        cellValue = 0u;
+        for (int j = 0; j < 3 * brickSize; j++) {
+            uint value = bricks[brickStart + uint(voxel.x + brickSize * (voxel.y + brickSize * voxel.z))];
+            if (value != 0u) {
+                cellValue = value;
+                res.boxStart = boxStart + vec3(voxel) * voxelSize;
+                res.boxEnd = res.boxStart + vec3(voxelSize);
+                break;
+            }
+
+            // step along the axis with the nearest voxel boundary
+            if (tMax.x < tMax.y && tMax.x < tMax.z) {
+                voxel.x += stepDir.x;
+                tMax.x += tDelta.x;
+            } else if (tMax.y < tMax.z) {
+                voxel.y += stepDir.y;
+                tMax.y += tDelta.y;
+            } else {
+                voxel.z += stepDir.z;
+                tMax.z += tDelta.z;
+            }
+            if (any(lessThan(voxel, ivec3(0))) || any(greaterThanEqual(voxel, ivec3(brickSize))))
+                break;
+        }
+    }
+
+    if ((cellValue >> 30) == WIDE_TYPE_DATA) {
+        uvec3 rgb = (uvec3(cellValue) >> uvec3(16, 8, 0)) & 0xFFu;
+        res.data = vec4(vec3(rgb) / 255.0, 1.0);
+    } else {
+        res.data = vec4(0);
+    }
+    return res;
+}
+
+uint compactByte(uint position) {
+    return (compactNodes[position >> 2] >> ((position & 3u) * 8u)) & 0xFFu;
+}
+
+/**
+ * Same as treeLookupWide, but decodes the compact node stream: a node has a child mask and a leaf mask, followed by
+ * the colors of its leaves and the variable length offsets back to its child nodes
+ */
+Cell treeLookupCompact(vec3 m) {
+    uint node = compactNodes[0];
+    uint mirror = 0u;
+    float pow2 = 1.0;
+
+    vec3 boxStart = vec3(0);
+    vec4 data = vec4(0);
+
+    for (int i = 0; i < HRDWTREE_MAX_DEPTH; i++) {
+        ivec3 child = ivec3(fract(m * pow2) * 2);
+        pow2 *= 2.0;
+        boxStart += vec3(child) / pow2;
+
+        uint c = uint(child.x + 2 * child.y + 4 * child.z) ^ mirror;
+        uint childMask = compactByte(node);
+        uint leafMask = compactByte(node + 1u);
+        if (((childMask >> c) & 1u) == 0u) // empty cell
+            break;
+
+        // skip the children before this one
+        uint p = node + 2u;
+        for (uint j = 0u; j < c; j++) {
+            if (((childMask >> j) & 1u) == 0u)
+                continue;
+            if (((leafMask >> j) & 1u) != 0u) {
+                p += 3u;
+            } else {
+                while ((compactByte(p) & 0x80u) != 0u)
+                    p++;
+                p++;
+            }
+        }
+
+        if (((leafMask >> c) & 1u) != 0u) { // a leaf has been reached
+            data = vec4(compactByte(p) / 255.0, compactByte(p + 1u) / 255.0, compactByte(p + 2u) / 255.0, 1.0);
+            break;
+        }
+
+        // offset back to the child node, with the reflection in the lowest 3 bits
+        uint value = 0u;
+        uint shift = 0u;
+        uint b;
+        do {
+            b = compactByte(p++);
+            value |= (b & 0x7Fu) << shift;
+            shift += 7u;
+        } while ((b & 0x80u) != 0u);
+
+        mirror ^= value & 7u;
+        node -= value >> 3;
+    }
+    Cell res;
+    res.boxStart = boxStart;
+    res.boxEnd = boxStart + vec3(1 / pow2);
+    res.data = data;
+    return res;
+}
+
 bool isInUnitCube(vec3 lookup) {
     return all(lessThan(lookup, vec3(1))) && all(greaterThanEqual(lookup, vec3(0)));
 }
@@ -275,12 +503,22 @@ vec4 trace(vec3 origin, vec3 dir) {
         i++) {
 
         // Look up the color in the middle of the voxel at the 'lookup' position, else you get artifacts
-        // this means: roundedLookup = (lookup * texSize) * invTexSize + half invTexSize
-        vec3 roundedLookup = floor(lookup * textureSize.x) * textureSize.y + textureSize.z;
+        // this means: roundedLookup = (lookup * resolution) * invResolution + half invResolution
+        vec3 roundedLookup = floor(lookup * voxelResolution.x) * voxelResolution.y + voxelResolution.z;
 
-        if (lookupMode == 1) {
+        if (lookupMode == 1 || lookupMode == 4 || lookupMode == 5 || lookupMode == 6) {
             // Look up the value that the current cell is pointing to
-            cell = treeLookup(roundedLookup);
+            if (lookupMode == 1) {
+                // Stop at the depth where a node projects to less than a pixel: 2^-depth < distance * pixelSize
+                float lodDepth = ceil(log2(1.0 / max(distance(lookup, origin) * pixelSize, EPSILON)));
+                cell = treeLookup(roundedLookup, clamp(lodDepth, 1.0, float(HRDWTREE_MAX_DEPTH)));
+            }
+            else if (lookupMode == 4)
+                cell = treeLookupWide(roundedLookup);
+            else if (lookupMode == 6)
+                cell = treeLookupBrick(roundedLookup, dir);
+            else
+                cell = treeLookupCompact(roundedLookup);
 
             // Intersect with the box that was found at the lookup position.
             // Next lookup is beyond the second intersection point
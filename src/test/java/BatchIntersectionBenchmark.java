@@ -0,0 +1,86 @@
+import geometry.Box;
+import geometry.BoxBatch;
+import geometry.Geometry;
+import geometry.Line;
+import geometry.Sphere;
+import org.joml.Vector3f;
+
+import java.util.Random;
+
+/**
+ * Compares the throughput of testing boxes one call at a time with testing them in batches of 8 (the children of a
+ * node) and 32 (the largest batch). The boxes are random cubes of the sizes of nodes near the surface of the
+ * geometries, stored as structure of arrays like in a batch.
+ * Usage: BatchIntersectionBenchmark [numBoxes] [rounds]
+ */
+public class BatchIntersectionBenchmark {
+
+    public static void main(String[] args) {
+        int numBoxes = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 20;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        Random random = new Random(0);
+        float[][] bounds = new float[6][numBoxes];
+        for (int i = 0; i < numBoxes; i++) {
+            float size = 1 + random.nextInt(8);
+            for (int a = 0; a < 3; a++) {
+                bounds[a][i] = 100 * random.nextFloat();
+                bounds[3 + a][i] = bounds[a][i] + size;
+            }
+        }
+
+        Geometry[] geometries = {
+                new Sphere(new Vector3f(50), 30, new Vector3f(0.5f)),
+                new Box(new Vector3f(20), new Vector3f(80), new Vector3f(0.5f)),
+                new Line(new Vector3f(0, 10, 20), new Vector3f(100, 90, 70)),
+        };
+        BoxBatch boxes = new BoxBatch();
+        for (Geometry geometry : geometries) {
+            long bestSingle = Long.MAX_VALUE, best8 = Long.MAX_VALUE, best32 = Long.MAX_VALUE;
+            int hitsSingle = 0, hits8 = 0, hits32 = 0;
+            // The first rounds warm up the JIT, only the fastest round counts
+            for (int round = 0; round < rounds; round++) {
+                long nanoStart = System.nanoTime();
+                hitsSingle = testSingle(geometry, bounds, numBoxes);
+                bestSingle = Math.min(bestSingle, System.nanoTime() - nanoStart);
+
+                nanoStart = System.nanoTime();
+                hits8 = testBatched(geometry, bounds, numBoxes, boxes, 8);
+                best8 = Math.min(best8, System.nanoTime() - nanoStart);
+
+                nanoStart = System.nanoTime();
+                hits32 = testBatched(geometry, bounds, numBoxes, boxes, BoxBatch.MAX_SIZE);
+                best32 = Math.min(best32, System.nanoTime() - nanoStart);
+            }
+            if (hitsSingle != hits8 || hitsSingle != hits32) {
+                throw new IllegalStateException("Batches found " + hits8 + " and " + hits32 + " instead of " + hitsSingle + " hits");
+            }
+            System.out.println(geometry.getClass().getSimpleName() + ", " + hitsSingle + " of " + numBoxes + " boxes hit:");
+            System.out.println("    Single:    " + numBoxes / (bestSingle / 1e3) + " M boxes/s");
+            System.out.println("    Batch 8:   " + numBoxes / (best8 / 1e3) + " M boxes/s");
+            System.out.println("    Batch 32:  " + numBoxes / (best32 / 1e3) + " M boxes/s");
+        }
+    }
+
+    private static int testSingle(Geometry geometry, float[][] bounds, int numBoxes) {
+        int hits = 0;
+        for (int i = 0; i < numBoxes; i++) {
+            if (geometry.intersects(bounds[0][i], bounds[1][i], bounds[2][i], bounds[3][i], bounds[4][i], bounds[5][i])) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    private static int testBatched(Geometry geometry, float[][] bounds, int numBoxes, BoxBatch boxes, int batchSize) {
+        int hits = 0;
+        for (int start = 0; start < numBoxes; start += batchSize) {
+            boxes.clear();
+            for (int i = start; i < Math.min(start + batchSize, numBoxes); i++) {
+                boxes.add(bounds[0][i], bounds[1][i], bounds[2][i], bounds[3][i], bounds[4][i], bounds[5][i]);
+            }
+            hits += Integer.bitCount(geometry.intersects(boxes));
+        }
+        return hits;
+    }
+}
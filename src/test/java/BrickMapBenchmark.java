@@ -0,0 +1,64 @@
+import core.BrickMap;
+import core.SVO;
+import geometry.Sphere;
+import org.joml.Vector3f;
+
+import java.util.Random;
+
+/**
+ * Compares the memory and the traversal steps of the pure octree with brick maps of 4^3 and 8^3 voxels,
+ * for the demo scene and for a scene of many random spheres
+ */
+public class BrickMapBenchmark {
+
+    private static final int IMAGE_SIZE = 256;
+
+    public static void main(String[] args) {
+        for (int maxDepth = 6; maxDepth <= 8; maxDepth++) {
+            SVO svo = new SVO(maxDepth, 100);
+            svo.generateDemoScene();
+            svo.generateSVO();
+            report("Demo scene", svo);
+        }
+
+        SVO svo = new SVO(8, 100);
+        Random random = new Random(0);
+        for (int i = 0; i < 1000; i++) {
+            Vector3f origin = new Vector3f(random.nextFloat(), random.nextFloat(), random.nextFloat()).mul(100);
+            svo.getGeometries().add(new Sphere(origin, 2.5f, new Vector3f(0.5f)));
+        }
+        svo.generateSVO();
+        report("1000 spheres", svo);
+    }
+
+    private static void report(String scene, SVO svo) {
+        long textureBytes = 4L * svo.getTextureWidth() * svo.getTextureHeight() * svo.getTextureDepth();
+        System.out.println(scene + ", depth " + svo.getMaxDepth() + ": " + svo.getIndirectionPool().size()
+                + " grids, texture: " + textureBytes + " bytes");
+
+        for (int brickDepth : new int[] { 0, 2, 3 }) {
+            BrickMap brickMap = BrickMap.create(svo, brickDepth);
+            BrickMap.TraversalSteps steps = new BrickMap.TraversalSteps();
+
+            // Camera at a distance of 1 in front of the volume, so the front face fills the image
+            Vector3f eye = new Vector3f(0.5f, 0.5f, -1);
+            Vector3f dir = new Vector3f();
+            int hits = 0;
+            long nanoStart = System.nanoTime();
+            for (int py = 0; py < IMAGE_SIZE; py++) {
+                for (int px = 0; px < IMAGE_SIZE; px++) {
+                    dir.set((px + 0.5f) / IMAGE_SIZE - 0.5f, (py + 0.5f) / IMAGE_SIZE - 0.5f, 1);
+                    if (brickMap.trace(eye, dir, steps) != 0) hits++;
+                }
+            }
+            long time = System.nanoTime() - nanoStart;
+
+            float numRays = IMAGE_SIZE * IMAGE_SIZE;
+            String name = brickDepth == 0 ? "Octree:     " : "Bricks " + brickMap.getBrickSize() + "^3: ";
+            System.out.println("    " + name + brickMap.getNumNodes() + " nodes, " + brickMap.getNumBricks() + " bricks, "
+                    + (brickMap.getNodeBytes() + brickMap.getBrickBytes()) + " bytes, "
+                    + steps.nodeVisits / numRays + " node visits + " + steps.brickSteps / numRays + " brick steps per ray, "
+                    + hits + " hits, " + time / 1e6 + " ms");
+        }
+    }
+}
@@ -0,0 +1,47 @@
+import core.SVO;
+import geometry.CSG;
+import geometry.SignedDistanceField;
+import org.joml.Vector3f;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Builds a CSG scene of many solid primitives, to compare the number of boxes that were classified with the number
+ * of voxels that are filled. Solid and empty boxes are not subdivided, so the number of classified boxes grows with
+ * the surface of the scene, not with its volume.
+ * Usage: CSGBenchmark [maxDepth] [numPrimitives]
+ */
+public class CSGBenchmark {
+
+    public static void main(String[] args) {
+        int maxDepth = args.length > 0 ? Integer.parseInt(args[0]) : 9;
+        int numPrimitives = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+
+        Random random = new Random(0);
+        Vector3f color = new Vector3f(0.5f);
+        SignedDistanceField scene = SignedDistanceField.box(new Vector3f(5), new Vector3f(95), color);
+        for (int i = 0; i < numPrimitives; i++) {
+            Vector3f center = new Vector3f(random.nextFloat(), random.nextFloat(), random.nextFloat()).mul(100);
+            float size = 3 + 7 * random.nextFloat();
+            SignedDistanceField primitive = random.nextBoolean()
+                    ? SignedDistanceField.sphere(center, size, color)
+                    : SignedDistanceField.torus(center, size, size / 4, color);
+            // Carve half of the primitives out of the block, and add the other half
+            scene = i % 2 == 0 ? CSG.subtraction(scene, primitive) : CSG.union(scene, primitive);
+        }
+
+        SVO svo = new SVO(maxDepth, 100);
+        svo.getGeometries().add(scene);
+        long nanoStart = System.nanoTime();
+        svo.generateSVO(ForkJoinPool.commonPool());
+        long buildTime = System.nanoTime() - nanoStart;
+
+        // Every grid classified its 8 children once
+        long numClassified = 8L * svo.getIndirectionPool().size();
+        long numVoxels = 1L << (3 * maxDepth);
+        System.out.println(numPrimitives + " primitives, depth " + maxDepth + ": " + buildTime / 1e6 + " ms");
+        System.out.println("    Classified boxes: " + numClassified + " of " + numVoxels + " voxels ("
+                + 100.0 * numClassified / numVoxels + "%)");
+    }
+}
@@ -0,0 +1,54 @@
+import core.CompactNodeEncoding;
+import core.SVO;
+import core.WideCellEncoding;
+import geometry.Sphere;
+import org.joml.Vector3f;
+
+import java.util.Random;
+
+/**
+ * Reports the bytes per node of the RGBA8 texture and of the compact node stream,
+ * for the demo scene and for scenes of many random spheres, as a tree and as a DAG
+ */
+public class CompactEncodingBenchmark {
+
+    public static void main(String[] args) {
+        for (int maxDepth = 4; maxDepth <= 8; maxDepth++) {
+            SVO svo = new SVO(maxDepth, 100);
+            svo.generateDemoScene();
+            report("Demo scene", svo);
+        }
+        for (int numSpheres : new int[] { 100, 10000 }) {
+            SVO svo = new SVO(8, 100);
+            Random random = new Random(0);
+            float radius = 100 / (4f * (float) Math.sqrt(numSpheres));
+            for (int i = 0; i < numSpheres; i++) {
+                Vector3f origin = new Vector3f(random.nextFloat(), random.nextFloat(), random.nextFloat()).mul(100);
+                svo.getGeometries().add(new Sphere(origin, radius, new Vector3f(0.5f)));
+            }
+            report(numSpheres + " spheres", svo);
+        }
+    }
+
+    private static void report(String scene, SVO svo) {
+        svo.setMaxTextureBlocks(WideCellEncoding.MAX_TEXTURE_BLOCKS);
+        svo.generateSVO();
+        int numNodes = svo.getIndirectionPool().size();
+        long textureBytes = 4L * svo.getTextureWidth() * svo.getTextureHeight() * svo.getTextureDepth();
+
+        long nanoStart = System.nanoTime();
+        int compactBytes = CompactNodeEncoding.encode(svo).limit();
+        long encodeTime = System.nanoTime() - nanoStart;
+
+        svo.compressToDAG(true);
+        int dagNodes = svo.getIndirectionPool().size();
+        int dagBytes = CompactNodeEncoding.encode(svo).limit();
+
+        System.out.println(scene + ", depth " + svo.getMaxDepth() + ": " + numNodes + " nodes");
+        System.out.println("    Texture: " + textureBytes + " bytes, " + textureBytes / (float) numNodes + " bytes per node");
+        System.out.println("    Compact: " + compactBytes + " bytes, " + compactBytes / (float) numNodes + " bytes per node"
+                + " (encoded in " + encodeTime / 1e6 + " ms)");
+        System.out.println("    Compact symmetric DAG: " + dagNodes + " nodes, " + dagBytes + " bytes, "
+                + dagBytes / (float) dagNodes + " bytes per node");
+    }
+}
@@ -0,0 +1,105 @@
+import core.SVO;
+import core.WideCellEncoding;
+
+import java.util.Arrays;
+
+/**
+ * Builds a simple building out of voxels: floors, and walls that divide every floor into rooms, and a sphere
+ * in the middle of the world. Reports how much the octree shrinks when identical subtrees are merged into a DAG,
+ * and when subtrees that are reflections of each other are merged as well.
+ */
+public class DAGCompressionBenchmark {
+
+    public static void main(String[] args) {
+        int maxDepthStart = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+        int maxDepthEnd = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+
+        for (int maxDepth = maxDepthStart; maxDepth <= maxDepthEnd; maxDepth++) {
+            int resolution = 1 << maxDepth;
+            for (boolean symmetric : new boolean[] { false, true }) {
+                report("Building", maxDepth, createBuilding(resolution), symmetric);
+                report("Sphere", maxDepth, createSphere(resolution), symmetric);
+            }
+        }
+    }
+
+    private static void report(String scene, int maxDepth, int[][] voxels, boolean symmetric) {
+        SVO svo = new SVO(maxDepth, 100);
+        svo.setMaxTextureBlocks(WideCellEncoding.MAX_TEXTURE_BLOCKS);
+        svo.generateSVO(voxels[0], voxels[1]);
+        int numGrids = svo.getIndirectionPool().size();
+
+        long nanoStart = System.nanoTime();
+        float ratio = svo.compressToDAG(symmetric);
+        long compressTime = System.nanoTime() - nanoStart;
+
+        System.out.println(scene + (symmetric ? " (symmetric)" : "") + ", depth " + maxDepth + ": " + voxels[1].length + " voxels, "
+                + numGrids + " -> " + svo.getIndirectionPool().size() + " grids (" + ratio + "x) in " + compressTime / 1e6 + " ms");
+    }
+
+    /**
+     * @return Voxel positions and colors of the surface of a sphere in the middle of the world
+     */
+    private static int[][] createSphere(int resolution) {
+        VoxelList voxels = new VoxelList();
+        float center = resolution / 2f, radius = resolution * 0.4f;
+        for (int z = 0; z < resolution; z++) {
+            for (int y = 0; y < resolution; y++) {
+                for (int x = 0; x < resolution; x++) {
+                    float dx = x + 0.5f - center, dy = y + 0.5f - center, dz = z + 0.5f - center;
+                    float distance = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+                    if (Math.abs(distance - radius) < 1) {
+                        voxels.add(x, y, z, 0xC0C0C0);
+                    }
+                }
+            }
+        }
+        return voxels.toArrays();
+    }
+
+    /**
+     * @return Voxel positions and colors, with a color per floor
+     */
+    private static int[][] createBuilding(int resolution) {
+        int floorHeight = Math.max(resolution / 8, 4);
+        int roomSize = Math.max(resolution / 4, 4);
+
+        VoxelList voxels = new VoxelList();
+        for (int y = 0; y < resolution; y++) {
+            int color = 0x404040 + 0x101010 * (y / floorHeight % 8);
+            for (int z = 0; z < resolution; z++) {
+                for (int x = 0; x < resolution; x++) {
+                    boolean floor = y % floorHeight == 0;
+                    boolean wall = x % roomSize == 0 || z % roomSize == 0;
+                    // Leave a door in every wall
+                    boolean door = y % floorHeight < floorHeight / 2 && (x % roomSize == roomSize / 2 || z % roomSize == roomSize / 2);
+                    if (floor || (wall && !door)) {
+                        voxels.add(x, y, z, color);
+                    }
+                }
+            }
+        }
+        return voxels.toArrays();
+    }
+
+    private static class VoxelList {
+        private int[] positions = new int[3 * 1024];
+        private int[] colors = new int[1024];
+        private int numVoxels = 0;
+
+        void add(int x, int y, int z, int color) {
+            if (numVoxels == colors.length) {
+                positions = Arrays.copyOf(positions, 2 * positions.length);
+                colors = Arrays.copyOf(colors, 2 * colors.length);
+            }
+            positions[3 * numVoxels] = x;
+            positions[3 * numVoxels + 1] = y;
+            positions[3 * numVoxels + 2] = z;
+            colors[numVoxels++] = color;
+        }
+
+        int[][] toArrays() {
+            return new int[][] { Arrays.copyOf(positions, 3 * numVoxels), Arrays.copyOf(colors, numVoxels) };
+        }
+    }
+}
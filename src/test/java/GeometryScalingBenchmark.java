@@ -0,0 +1,60 @@
+import core.SVO;
+import geometry.Sphere;
+import org.joml.Vector3f;
+
+import java.util.Random;
+
+/**
+ * Builds SVOs of scenes with an increasing number of spheres, and reports how many intersection tests are done
+ * compared to testing every geometry for every child box
+ */
+public class GeometryScalingBenchmark {
+
+    private static long numIntersectionTests = 0;
+
+    private static class CountingSphere extends Sphere {
+        CountingSphere(Vector3f origin, float radius, Vector3f color) {
+            super(origin, radius, color);
+        }
+
+        @Override
+        public boolean intersects(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+            numIntersectionTests++;
+            return super.intersects(minX, minY, minZ, maxX, maxY, maxZ);
+        }
+    }
+
+    public static void main(String[] args) {
+        int maxDepth = args.length > 0 ? Integer.parseInt(args[0]) : 7;
+        int worldSize = 100;
+
+        for (int numSpheres : new int[] { 10, 1000, 100000 }) {
+            // Warm up
+            build(maxDepth, worldSize, numSpheres);
+
+            numIntersectionTests = 0;
+            long nanoStart = System.nanoTime();
+            SVO svo = build(maxDepth, worldSize, numSpheres);
+            long buildTime = System.nanoTime() - nanoStart;
+
+            int numNodes = svo.getIndirectionPool().size();
+            long fullScanTests = 8L * numNodes * numSpheres;
+            System.out.println(numSpheres + " spheres, depth " + maxDepth + ": " + numNodes + " nodes in " + buildTime / 1e6 + " ms");
+            System.out.println("    Intersection tests: " + numIntersectionTests + " (" + numIntersectionTests / (float) numNodes + " per node)"
+                    + ", testing every sphere for every child: " + fullScanTests);
+        }
+    }
+
+    private static SVO build(int maxDepth, int worldSize, int numSpheres) {
+        SVO svo = new SVO(maxDepth, worldSize);
+        Random random = new Random(0);
+        // Keep the total surface area of the spheres roughly the same for every scene
+        float radius = worldSize / (4f * (float) Math.sqrt(numSpheres));
+        for (int i = 0; i < numSpheres; i++) {
+            Vector3f origin = new Vector3f(random.nextFloat(), random.nextFloat(), random.nextFloat()).mul(worldSize);
+            svo.getGeometries().add(new CountingSphere(origin, radius, new Vector3f(0.5f)));
+        }
+        svo.generateSVO();
+        return svo;
+    }
+}
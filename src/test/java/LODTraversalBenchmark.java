@@ -0,0 +1,106 @@
+import core.Cell;
+import core.IndirectionGrid;
+import core.SVO;
+
+import java.util.ArrayList;
+
+/**
+ * Casts a ray per pixel through the demo scene on the CPU, the same way as treeLookup in the shader, and reports the
+ * number of visited nodes per ray with and without stopping at the depth where a node projects to less than a pixel.
+ * The image always covers the front of the volume, so smaller images mean larger pixels.
+ */
+public class LODTraversalBenchmark {
+
+    public static void main(String[] args) {
+        SVO svo = new SVO(8, 100);
+        svo.generateDemoScene();
+        svo.generateSVO();
+
+        for (int imageSize : new int[] { 1024, 256, 64, 16 }) {
+            // Camera at a distance of 1 in front of the volume, so the front face is imageSize pixels wide
+            float pixelSize = 1f / imageSize;
+            float[] eye = { 0.5f, 0.5f, -1 };
+            for (boolean lod : new boolean[] { false, true }) {
+                long nanoStart = System.nanoTime();
+                long visits = 0;
+                int hits = 0;
+                for (int py = 0; py < imageSize; py++) {
+                    for (int px = 0; px < imageSize; px++) {
+                        float[] dir = { (px + 0.5f - imageSize / 2f) * pixelSize, (py + 0.5f - imageSize / 2f) * pixelSize, 1 };
+                        long rayVisits = trace(svo, eye, dir, lod ? pixelSize : 0);
+                        visits += Math.abs(rayVisits);
+                        if (rayVisits < 0) hits++;
+                    }
+                }
+                long time = System.nanoTime() - nanoStart;
+                System.out.println(imageSize + "x" + imageSize + (lod ? ", LOD:    " : ", no LOD: ")
+                        + visits / (float) (imageSize * imageSize) + " nodes per ray, "
+                        + hits + " hits, " + time / 1e6 + " ms");
+            }
+        }
+    }
+
+    /**
+     * @param pixelSize Size of a pixel at a distance of 1 from the eye, or 0 to always traverse down to max depth
+     * @return The number of visited nodes, negative if the ray hit a voxel
+     */
+    private static long trace(SVO svo, float[] eye, float[] dir, float pixelSize) {
+        ArrayList<IndirectionGrid> pool = svo.getIndirectionPool();
+        float[] pos = new float[3];
+        float[] boxStart = new float[3];
+
+        // Start at the front face of the unit cube
+        float tEnter = -eye[2] / dir[2];
+        for (int a = 0; a < 3; a++) pos[a] = eye[a] + dir[a] * tEnter;
+
+        long visits = 0;
+        for (int step = 0; step < 4096; step++) {
+            if (!isInUnitCube(pos)) return visits;
+
+            int maxLookupDepth = svo.getMaxDepth();
+            if (pixelSize > 0) {
+                float distance = (float) Math.sqrt(sq(pos[0] - eye[0]) + sq(pos[1] - eye[1]) + sq(pos[2] - eye[2]));
+                int lodDepth = (int) Math.ceil(Math.log(1 / (distance * pixelSize)) / Math.log(2));
+                maxLookupDepth = Math.max(1, Math.min(lodDepth, maxLookupDepth));
+            }
+
+            IndirectionGrid ig = pool.get(0);
+            float size = 1;
+            boxStart[0] = boxStart[1] = boxStart[2] = 0;
+            for (int depth = 1; depth <= svo.getMaxDepth(); depth++) {
+                size /= 2;
+                int childIndex = 0;
+                for (int a = 0; a < 3; a++) {
+                    int offset = pos[a] - boxStart[a] >= size ? 1 : 0;
+                    boxStart[a] += offset * size;
+                    childIndex |= offset << a;
+                }
+                visits++;
+
+                Cell cell = ig.getChildren()[childIndex];
+                if (cell.getNodeType() == Cell.NodeType.DATA) return -visits;
+                if (cell.getNodeType() == Cell.NodeType.EMPTY) break;
+                // The average color of the subtree is used for nodes smaller than a pixel
+                if (depth == maxLookupDepth) return -visits;
+                ig = pool.get(cell.getPointer());
+            }
+
+            // Continue just behind the box that was found
+            float tExit = Float.MAX_VALUE;
+            for (int a = 0; a < 3; a++) {
+                if (dir[a] > 0) tExit = Math.min(tExit, (boxStart[a] + size - pos[a]) / dir[a]);
+                else if (dir[a] < 0) tExit = Math.min(tExit, (boxStart[a] - pos[a]) / dir[a]);
+            }
+            for (int a = 0; a < 3; a++) pos[a] += dir[a] * tExit * 1.0001f + Math.signum(dir[a]) * 1e-6f;
+        }
+        return visits;
+    }
+
+    private static boolean isInUnitCube(float[] p) {
+        return p[0] >= 0 && p[1] >= 0 && p[2] >= 0 && p[0] < 1 && p[1] < 1 && p[2] < 1;
+    }
+
+    private static float sq(float x) {
+        return x * x;
+    }
+}
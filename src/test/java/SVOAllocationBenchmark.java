@@ -0,0 +1,73 @@
+import core.Cell;
+import core.IndirectionGrid;
+import core.SVO;
+import org.joml.Vector3f;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+
+/**
+ * Measures the bytes allocated while building the SVO, compared to the bytes of the pool storage itself
+ * (the indirection grids and cells that end up in the indirection pool).
+ * Requires a JVM that supports com.sun.management.ThreadMXBean, e.g. HotSpot
+ */
+public class SVOAllocationBenchmark {
+
+    private static final com.sun.management.ThreadMXBean threadMXBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        int maxDepth = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+
+        // Warm up so that the measured build runs compiled code
+        for (int i = 0; i < 5; i++) {
+            build(maxDepth);
+        }
+
+        long start = allocatedBytes();
+        long nanoStart = System.nanoTime();
+        SVO svo = build(maxDepth);
+        long buildTime = System.nanoTime() - nanoStart;
+        long buildBytes = allocatedBytes() - start;
+
+        start = allocatedBytes();
+        ArrayList<IndirectionGrid> copy = copyPool(svo);
+        long poolBytes = allocatedBytes() - start;
+
+        int numNodes = copy.size();
+        System.out.println("Max depth: " + maxDepth + ", IndirectionPool size: " + numNodes);
+        System.out.println("Build time: " + buildTime / 1e6 + " ms");
+        System.out.println("Allocated while building: " + buildBytes + " bytes (" + buildBytes / numNodes + " bytes/node)");
+        System.out.println("Pool storage:             " + poolBytes + " bytes (" + poolBytes / numNodes + " bytes/node)");
+        System.out.println("Garbage per node:         " + (buildBytes - poolBytes) / (float) numNodes + " bytes");
+    }
+
+    private static SVO build(int maxDepth) {
+        SVO svo = new SVO(maxDepth, 100);
+        svo.generateDemoScene();
+        svo.generateSVO();
+        return svo;
+    }
+
+    /** Allocates the same grids and cells as in the pool of the svo, which is the minimum a build has to allocate */
+    private static ArrayList<IndirectionGrid> copyPool(SVO svo) {
+        ArrayList<IndirectionGrid> pool = new ArrayList<>(8 * svo.getMaxDepth() * svo.getMaxDepth());
+        for (IndirectionGrid original : svo.getIndirectionPool()) {
+            IndirectionGrid ig = new IndirectionGrid();
+            pool.add(ig);
+            for (int i = 0; i < 8; i++) {
+                Cell cell = original.getChildren()[i];
+                if (cell.getNodeType() == Cell.NodeType.INDEX) {
+                    ig.setNode(i, Cell.createIndex(0, 0, 0, cell.getPointer()));
+                } else if (cell.getNodeType() == Cell.NodeType.DATA) {
+                    ig.setNode(i, Cell.createData(new Vector3f(), cell.getRealLocation()));
+                }
+            }
+        }
+        return pool;
+    }
+
+    private static long allocatedBytes() {
+        return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,77 @@
+import core.SVO;
+import core.SVOArchive;
+import core.SVOFile;
+import geometry.Sphere;
+import org.joml.Vector3f;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares building a scene of random spheres with loading its packed texture from an SVO file and an SVO archive.
+ * Loading the file only maps it, reading every byte of the mapped texture shows the cost of paging it in.
+ * Archives are decompressed with 1 thread and with all cores.
+ * Usage: SVOFileBenchmark [maxDepth] [numSpheres]
+ */
+public class SVOFileBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int maxDepth = args.length > 0 ? Integer.parseInt(args[0]) : 9;
+        int numSpheres = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+
+        SVO svo = new SVO(maxDepth, 100);
+        Random random = new Random(0);
+        float radius = 100 / (4f * (float) Math.sqrt(numSpheres));
+        for (int i = 0; i < numSpheres; i++) {
+            Vector3f origin = new Vector3f(random.nextFloat(), random.nextFloat(), random.nextFloat()).mul(100);
+            svo.getGeometries().add(new Sphere(origin, radius, new Vector3f(0.5f)));
+        }
+
+        long nanoStart = System.nanoTime();
+        svo.generateSVO(ForkJoinPool.commonPool());
+        long buildTime = System.nanoTime() - nanoStart;
+
+        Path path = Files.createTempFile("svo-benchmark", ".svo");
+        path.toFile().deleteOnExit();
+        nanoStart = System.nanoTime();
+        SVOFile.write(svo, path);
+        long writeTime = System.nanoTime() - nanoStart;
+
+        nanoStart = System.nanoTime();
+        SVOFile file = SVOFile.load(path);
+        long loadTime = System.nanoTime() - nanoStart;
+
+        nanoStart = System.nanoTime();
+        ByteBuffer textureData = file.getTextureData();
+        long checksum = 0;
+        for (int i = 0; i < textureData.limit(); i += 8) {
+            checksum += textureData.getLong(i);
+        }
+        long readTime = System.nanoTime() - nanoStart;
+
+        System.out.println(numSpheres + " spheres, depth " + maxDepth + ": " + file.getNumIndirectionGrids()
+                + " indirection grids, " + Files.size(path) / 1e6 + " MB file");
+        System.out.println("    Build: " + buildTime / 1e6 + " ms");
+        System.out.println("    Write: " + writeTime / 1e6 + " ms");
+        System.out.println("    Load:  " + loadTime / 1e6 + " ms");
+        System.out.println("    Read every byte of the mapped texture: " + readTime / 1e6 + " ms (checksum " + checksum + ")");
+
+        Path archivePath = Files.createTempFile("svo-benchmark", ".svoa");
+        archivePath.toFile().deleteOnExit();
+        nanoStart = System.nanoTime();
+        SVOArchive.write(svo, archivePath, SVOFile.FORMAT_RGBA8);
+        long compressTime = System.nanoTime() - nanoStart;
+        System.out.println("    Archive: " + Files.size(archivePath) / 1e6 + " MB, compressed in " + compressTime / 1e6 + " ms");
+
+        for (ForkJoinPool pool : new ForkJoinPool[] { new ForkJoinPool(1), ForkJoinPool.commonPool() }) {
+            nanoStart = System.nanoTime();
+            SVOArchive.load(archivePath, pool);
+            long decompressTime = System.nanoTime() - nanoStart;
+            System.out.println("    Decompress with " + pool.getParallelism() + " threads: " + decompressTime / 1e6 + " ms, "
+                    + Files.size(path) / (decompressTime / 1e3) + " MB/s");
+        }
+    }
+}
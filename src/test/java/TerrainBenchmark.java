@@ -0,0 +1,43 @@
+import core.SVO;
+import geometry.Terrain;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Builds an SVO of a procedural terrain, the standard heavy workload for build times and memory.
+ * The terrain has a column per voxel, so at depth 12 it has 4096 by 4096 columns.
+ * Reports the time to generate the heights, the time to build the SVO and the memory that the SVO holds.
+ * Usage: TerrainBenchmark [maxDepth] [threads]
+ */
+public class TerrainBenchmark {
+
+    public static void main(String[] args) {
+        int maxDepth = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+
+        long memoryStart = usedMemory();
+        SVO svo = new SVO(maxDepth, 1 << maxDepth);
+        long nanoStart = System.nanoTime();
+        svo.generateTerrainScene(0, pool);
+        long generateTime = System.nanoTime() - nanoStart;
+        long terrainMemory = usedMemory() - memoryStart;
+
+        nanoStart = System.nanoTime();
+        svo.generateSVO(pool);
+        long buildTime = System.nanoTime() - nanoStart;
+        long svoMemory = usedMemory() - memoryStart - terrainMemory;
+
+        Terrain terrain = (Terrain) svo.getGeometries().get(0);
+        System.out.println("Terrain of " + terrain.getResolution() + "^2 columns, depth " + maxDepth + ", " + threads + " threads:");
+        System.out.println("    Generate heights: " + generateTime / 1e6 + " ms, " + terrainMemory / (1 << 20) + " MB");
+        System.out.println("    Build SVO:        " + buildTime / 1e6 + " ms, " + svoMemory / (1 << 20) + " MB");
+        System.out.println("    Indirection grids: " + svo.getIndirectionPool().size());
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
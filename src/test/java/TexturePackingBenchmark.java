@@ -0,0 +1,60 @@
+import core.IndirectionGrid;
+import core.SVO;
+import org.joml.Vector3i;
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares packing the indirection pool of a terrain into texture data cell by cell with the parallel bulk packing
+ * of {@link SVO#getTextureData(ForkJoinPool)}. The default depth of 11 gives 2.9M grids in a texture of 506x246x186
+ * texels, a bit more than 256^3. It needs a heap of about 4 GB; depth 10 is a quarter of the size.
+ * On one core the bulk packing is only about 10% faster: 189 ms against 211 ms cell by cell for the 23M texels of
+ * depth 11, in an earlier run 182 ms against 197 ms. The parallel speedup on more cores is not measured yet.
+ * Usage: TexturePackingBenchmark [maxDepth] [rounds]
+ */
+public class TexturePackingBenchmark {
+
+    public static void main(String[] args) {
+        int maxDepth = args.length > 0 ? Integer.parseInt(args[0]) : 11;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        SVO svo = new SVO(maxDepth, 1 << maxDepth);
+        svo.generateTerrainScene(0, ForkJoinPool.commonPool());
+        svo.generateSVO(ForkJoinPool.commonPool());
+        int numTexels = svo.getTextureWidth() * svo.getTextureHeight() * svo.getTextureDepth();
+
+        long bestCells = Long.MAX_VALUE, bestBulk = Long.MAX_VALUE;
+        // The first rounds warm up the JIT, only the fastest round counts
+        for (int round = 0; round < rounds; round++) {
+            long nanoStart = System.nanoTime();
+            ByteBuffer cells = packCellByCell(svo);
+            bestCells = Math.min(bestCells, System.nanoTime() - nanoStart);
+
+            nanoStart = System.nanoTime();
+            ByteBuffer bulk = svo.getTextureData(ForkJoinPool.commonPool());
+            bestBulk = Math.min(bestBulk, System.nanoTime() - nanoStart);
+
+            if (!cells.equals(bulk)) {
+                throw new IllegalStateException("Bulk packing differs from packing cell by cell");
+            }
+        }
+        System.out.println(svo.getIndirectionPool().size() + " grids in " + svo.getTextureWidth() + "x"
+                + svo.getTextureHeight() + "x" + svo.getTextureDepth() + " texels:");
+        System.out.println("    Cell by cell: " + bestCells / 1e6 + " ms, " + numTexels / (bestCells / 1e3) + " M texels/s");
+        System.out.println("    Bulk:         " + bestBulk / 1e6 + " ms, " + numTexels / (bestBulk / 1e3) + " M texels/s");
+    }
+
+    private static ByteBuffer packCellByCell(SVO svo) {
+        ByteBuffer textureData = BufferUtils.createByteBuffer(svo.getTextureWidth() * svo.getTextureHeight() * svo.getTextureDepth() * 4);
+        Vector3i index = new Vector3i();
+        for (int i = 0; i < svo.getIndirectionPool().size(); i++) {
+            IndirectionGrid ig = svo.getIndirectionPool().get(i);
+            int blocksX = svo.getTextureWidth() / 2, blocksY = svo.getTextureHeight() / 2;
+            index.set(i % blocksX * 2, i / blocksX % blocksY * 2, i / (blocksX * blocksY) * 2);
+            ig.get(svo.getTextureWidth(), svo.getTextureHeight(), index.x, index.y, index.z, textureData);
+        }
+        return textureData;
+    }
+}
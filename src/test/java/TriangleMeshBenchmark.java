@@ -0,0 +1,74 @@
+import core.SVO;
+import geometry.TriangleMesh;
+import org.joml.Vector3f;
+
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Voxelizes a triangle mesh with pools of several sizes, by default 1 thread and all cores.
+ * Without a mesh file, a bumpy sphere of about numTriangles triangles is generated.
+ * Usage: TriangleMeshBenchmark [maxDepth] [numTriangles | mesh.obj | mesh.ply] [threads, e.g. 1,2,4,8]
+ * With 1 thread, depth 10 and 1M triangles take about 11 s. The scaling with the number of threads is not measured
+ * yet: the runs on one core got faster with each pool only because of the JIT warm-up.
+ */
+public class TriangleMeshBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int maxDepth = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        String source = args.length > 1 ? args[1] : "1000000";
+        String threads = args.length > 2 ? args[2] : "1," + Runtime.getRuntime().availableProcessors();
+
+        long nanoStart = System.nanoTime();
+        TriangleMesh mesh = source.matches("\\d+")
+                ? createSphere(Integer.parseInt(source))
+                : TriangleMesh.load(Paths.get(source), new Vector3f(0.5f));
+        mesh.fitInto(new Vector3f(), 100);
+        System.out.println(mesh.getNumTriangles() + " triangles, loaded and indexed in " + (System.nanoTime() - nanoStart) / 1e6 + " ms");
+
+        for (String numThreads : threads.split(",")) {
+            ForkJoinPool pool = new ForkJoinPool(Integer.parseInt(numThreads.trim()));
+            try {
+                SVO svo = new SVO(maxDepth, 100);
+                svo.getGeometries().add(mesh);
+                nanoStart = System.nanoTime();
+                svo.generateSVO(pool);
+                System.out.println("    Depth " + maxDepth + " with " + pool.getParallelism() + " threads: "
+                        + (System.nanoTime() - nanoStart) / 1e6 + " ms, " + svo.getIndirectionPool().size() + " indirection grids");
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Latitude-longitude sphere with a bumpy radius, so that neighbouring triangles are not coplanar
+     */
+    private static TriangleMesh createSphere(int numTriangles) {
+        int rings = Math.max(2, (int) Math.sqrt(numTriangles / 4.0));
+        int segments = 2 * rings;
+        float[] vertices = new float[3 * (rings + 1) * segments];
+        for (int r = 0; r <= rings; r++) {
+            double theta = Math.PI * r / rings;
+            for (int s = 0; s < segments; s++) {
+                double phi = 2 * Math.PI * s / segments;
+                double radius = 1 + 0.05 * Math.sin(7 * theta) * Math.cos(5 * phi);
+                int v = 3 * (r * segments + s);
+                vertices[v] = (float) (radius * Math.sin(theta) * Math.cos(phi));
+                vertices[v + 1] = (float) (radius * Math.cos(theta));
+                vertices[v + 2] = (float) (radius * Math.sin(theta) * Math.sin(phi));
+            }
+        }
+        int[] triangles = new int[6 * rings * segments];
+        int t = 0;
+        for (int r = 0; r < rings; r++) {
+            for (int s = 0; s < segments; s++) {
+                int a = r * segments + s, b = r * segments + (s + 1) % segments;
+                int c = a + segments, d = b + segments;
+                triangles[t++] = a; triangles[t++] = c; triangles[t++] = b;
+                triangles[t++] = b; triangles[t++] = c; triangles[t++] = d;
+            }
+        }
+        return new TriangleMesh(vertices, triangles, new Vector3f(0.5f));
+    }
+}
@@ -0,0 +1,69 @@
+import core.SVO;
+import core.VoxReader;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Imports .vox files of a 256x256 terrain of increasing thickness, to show that the import time per voxel stays the
+ * same as the number of voxels grows.
+ * Usage: VoxReaderBenchmark [maxLayers]
+ */
+public class VoxReaderBenchmark {
+
+    private static final int SIZE = 256;
+
+    public static void main(String[] args) throws IOException {
+        int maxLayers = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+
+        Path path = Files.createTempFile("vox-benchmark", ".vox");
+        path.toFile().deleteOnExit();
+        for (int layers = 8; layers <= maxLayers; layers *= 2) {
+            int numVoxels = writeTerrain(path, layers);
+
+            System.gc();
+            long nanoStart = System.nanoTime();
+            SVO svo = VoxReader.read(path);
+            long importTime = System.nanoTime() - nanoStart;
+
+            System.out.println(numVoxels + " voxels, " + Files.size(path) / 1e6 + " MB: " + importTime / 1e6 + " ms, "
+                    + importTime / numVoxels + " ns per voxel, " + svo.getIndirectionPool().size() + " indirection grids");
+        }
+    }
+
+    /**
+     * Writes a single model of layers of voxels below a wavy surface
+     * @return The number of voxels
+     */
+    private static int writeTerrain(Path path, int layers) throws IOException {
+        int numVoxels = SIZE * SIZE * layers;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path), 1 << 16)) {
+            ByteBuffer header = ByteBuffer.allocate(56).order(ByteOrder.LITTLE_ENDIAN);
+            header.put("VOX ".getBytes(StandardCharsets.US_ASCII)).putInt(150)
+                    .put("MAIN".getBytes(StandardCharsets.US_ASCII)).putInt(0).putInt(24 + 16 + 4 * numVoxels)
+                    .put("SIZE".getBytes(StandardCharsets.US_ASCII)).putInt(12).putInt(0).putInt(SIZE).putInt(SIZE).putInt(SIZE)
+                    .put("XYZI".getBytes(StandardCharsets.US_ASCII)).putInt(4 + 4 * numVoxels).putInt(0);
+            out.write(header.array());
+
+            ByteBuffer voxels = ByteBuffer.allocate(4 + 4 * SIZE * layers).order(ByteOrder.LITTLE_ENDIAN);
+            voxels.putInt(numVoxels);
+            for (int x = 0; x < SIZE; x++) {
+                for (int y = 0; y < SIZE; y++) {
+                    int height = (int) ((SIZE - layers) * (0.5 + 0.25 * Math.sin(x * 0.05) + 0.25 * Math.cos(y * 0.07)));
+                    for (int z = height; z < height + layers; z++) {
+                        voxels.put((byte) x).put((byte) y).put((byte) z).put((byte) (1 + z % 255));
+                    }
+                }
+                out.write(voxels.array(), 0, voxels.position());
+                voxels.clear();
+            }
+        }
+        return numVoxels;
+    }
+}
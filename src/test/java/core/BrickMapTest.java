@@ -0,0 +1,143 @@
+package core;
+
+import org.joml.Vector3f;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class BrickMapTest {
+
+    @Test
+    public void lookupFindsEveryVoxel() {
+        SVO svo = new SVO(5, 100);
+        svo.generateDemoScene();
+        svo.generateSVO();
+
+        for (int brickDepth = 0; brickDepth <= 3; brickDepth++) {
+            assertLookupMatches(svo, BrickMap.create(svo, brickDepth));
+        }
+    }
+
+    private static void assertLookupMatches(SVO svo, BrickMap brickMap) {
+        int resolution = 1 << svo.getMaxDepth();
+        for (int x = 0; x < resolution; x++) {
+            for (int y = 0; y < resolution; y++) {
+                for (int z = 0; z < resolution; z++) {
+                    int expected = svo.lookup(x, y, z, svo.getMaxDepth());
+                    int value = brickMap.lookup(x, y, z);
+                    if (expected == 0) {
+                        assertEquals("Voxel " + x + ", " + y + ", " + z, 0, value);
+                    } else {
+                        assertEquals(WideCellEncoding.TYPE_DATA, WideCellEncoding.getType(value));
+                        assertEquals(expected & 0xFFFFFF, WideCellEncoding.getColor(value));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void gridsSharedAcrossDepthsAreBricksOnlyAtTheBrickLevel() {
+        // A leaf grid with its 4 voxels at x = 0, and a grid of the next octant up in which the boxes at x = 4 are
+        // filled and collapsed. Both have data cells in children 0, 2, 4 and 6, so the DAG merges them
+        SVO svo = new SVO(3, 100);
+        svo.setCollapseUniform(true);
+        ArrayList<Integer> positions = new ArrayList<>();
+        for (int y = 0; y < 2; y++) {
+            for (int z = 0; z < 2; z++) {
+                positions.add(0); positions.add(y); positions.add(z);
+            }
+        }
+        for (int x = 4; x < 6; x++) {
+            for (int y = 0; y < 4; y++) {
+                for (int z = 0; z < 4; z++) {
+                    positions.add(x); positions.add(y); positions.add(z);
+                }
+            }
+        }
+        int[] voxelPositions = positions.stream().mapToInt(Integer::intValue).toArray();
+        int[] voxelColors = new int[voxelPositions.length / 3];
+        Arrays.fill(voxelColors, 0xFF0000);
+        svo.generateSVO(voxelPositions, voxelColors);
+        svo.compressToDAG();
+
+        for (int brickDepth = 0; brickDepth <= 2; brickDepth++) {
+            assertLookupMatches(svo, BrickMap.create(svo, brickDepth));
+        }
+    }
+
+    @Test
+    public void bricksReplaceLastLevels() {
+        SVO svo = new SVO(6, 100);
+        svo.generateDemoScene();
+        svo.generateSVO();
+
+        // Without bricks, every grid is a node
+        BrickMap octree = BrickMap.create(svo, 0);
+        assertEquals(svo.getIndirectionPool().size(), octree.getNumNodes());
+        assertEquals(0, octree.getNumBricks());
+
+        // A brick of 4^3 replaces a grid and the grids below it
+        BrickMap brickMap = BrickMap.create(svo, 2);
+        assertTrue(brickMap.getNumNodes() < octree.getNumNodes());
+        assertEquals(svo.getIndirectionPool().size(), brickMap.getNumNodes() + brickMap.getNumBricks()
+                + countGridsBelowBricks(svo, 0, 0, svo.getMaxDepth() - 2));
+    }
+
+    /**
+     * @return The number of grids below the grids at the top of the bricks
+     */
+    private static int countGridsBelowBricks(SVO svo, int igIndex, int depth, int brickLevel) {
+        int count = depth > brickLevel ? 1 : 0;
+        for (Cell cell : svo.getIndirectionPool().get(igIndex).getChildren()) {
+            if (cell.getNodeType() == Cell.NodeType.INDEX) {
+                count += countGridsBelowBricks(svo, cell.getPointer(), depth + 1, brickLevel);
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void traceHitsSameVoxels() {
+        SVO svo = new SVO(6, 100);
+        svo.generateDemoScene();
+        svo.generateSVO();
+        BrickMap octree = BrickMap.create(svo, 0);
+        BrickMap brickMap = BrickMap.create(svo, 3);
+
+        BrickMap.TraversalSteps octreeSteps = new BrickMap.TraversalSteps();
+        BrickMap.TraversalSteps brickSteps = new BrickMap.TraversalSteps();
+        Vector3f origin = new Vector3f(-0.5f, 0.1f, -0.7f);
+        int numHits = 0;
+        for (int i = 0; i < 32; i++) {
+            for (int j = 0; j < 32; j++) {
+                Vector3f dir = new Vector3f(1, i / 32f, j / 32f + 0.3f).sub(origin).normalize();
+                int hit = octree.trace(origin, dir, octreeSteps);
+                assertEquals(hit, brickMap.trace(origin, dir, brickSteps));
+                if (hit != 0) numHits++;
+            }
+        }
+        assertTrue(numHits > 0);
+        // Bricks are entered once, instead of descending from the root for every voxel
+        assertTrue(brickSteps.nodeVisits < octreeSteps.nodeVisits);
+    }
+
+    @Test
+    public void dagSharesBricks() {
+        SVO svo = DAGTest.createUniformSVO(6);
+        int numBricks = BrickMap.create(svo, 2).getNumBricks();
+        svo.compressToDAG();
+        assertTrue(BrickMap.create(svo, 2).getNumBricks() < numBricks);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bricksMustFitInTree() {
+        SVO svo = new SVO(3, 100);
+        svo.generateDemoScene();
+        svo.generateSVO();
+        BrickMap.create(svo, 3);
+    }
+}
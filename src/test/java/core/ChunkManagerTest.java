@@ -0,0 +1,125 @@
+package core;
+
+import geometry.Sphere;
+import org.joml.Vector3f;
+import org.joml.Vector3i;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+
+import static org.junit.Assert.*;
+
+public class ChunkManagerTest {
+
+    @Test
+    public void chunksAroundCameraAreBuilt() {
+        // Builds the chunks on the calling thread
+        ChunkManager chunkManager = new ChunkManager(4, 100, 1, Long.MAX_VALUE, Runnable::run);
+        chunkManager.update(new Vector3f(150, 50, 50));
+        chunkManager.awaitPendingChunks();
+        assertEquals(27, chunkManager.getNumResident());
+        assertEquals(27, chunkManager.getNumBuilt());
+        assertEquals(0, chunkManager.getNumPending());
+        assertTrue(chunkManager.getResidentChunks().containsKey(new Vector3i(0, -1, -1)));
+        assertTrue(chunkManager.getResidentChunks().containsKey(new Vector3i(2, 1, 1)));
+
+        // Moving within the same chunk requests the same chunks again
+        chunkManager.update(new Vector3f(199, 99, 0));
+        assertEquals(27, chunkManager.getNumHits());
+        assertEquals(27, chunkManager.getNumMisses());
+        assertEquals(0.5f, chunkManager.getHitRate(), 0);
+    }
+
+    @Test
+    public void leastRecentlyUsedChunksAreEvicted() {
+        ChunkManager chunkManager = new ChunkManager(4, 100, 0, Long.MAX_VALUE, Runnable::run);
+        for (int x = 0; x < 4; x++) {
+            chunkManager.update(new Vector3f(x * 100 + 50, 50, 50));
+            chunkManager.awaitPendingChunks();
+        }
+        // Use the first chunk again
+        chunkManager.update(new Vector3f(50, 50, 50));
+        long chunkBytes = ChunkManager.getChunkBytes(chunkManager.getResidentChunks().get(new Vector3i(0, 0, 0)));
+        assertEquals(4 * chunkBytes, chunkManager.getResidentBytes());
+
+        chunkManager.setMemoryBudget(2 * chunkBytes);
+        chunkManager.update(new Vector3f(50, 50, 50));
+        assertEquals(2, chunkManager.getNumEvicted());
+        assertEquals(2 * chunkBytes, chunkManager.getResidentBytes());
+        assertTrue(chunkManager.getResidentChunks().containsKey(new Vector3i(0, 0, 0)));
+        assertTrue(chunkManager.getResidentChunks().containsKey(new Vector3i(3, 0, 0)));
+
+        // Evicted chunks are built again when they are needed
+        chunkManager.update(new Vector3f(150, 50, 50));
+        chunkManager.awaitPendingChunks();
+        assertEquals(5, chunkManager.getNumBuilt());
+        assertTrue(chunkManager.getResidentChunks().containsKey(new Vector3i(1, 0, 0)));
+        assertFalse(chunkManager.getResidentChunks().containsKey(new Vector3i(3, 0, 0)));
+    }
+
+    @Test
+    public void chunkIsBuiltAtItsOrigin() {
+        ChunkManager chunkManager = new ChunkManager(5, 100, 0, Long.MAX_VALUE, Runnable::run);
+        chunkManager.getGeometries().add(new Sphere(new Vector3f(130, 240, 60), 25, new Vector3f(0.5f)));
+        chunkManager.getGeometries().add(new Sphere(new Vector3f(-300, 0, 0), 25, new Vector3f(0.5f)));
+        chunkManager.update(new Vector3f(150, 250, 50));
+        chunkManager.awaitPendingChunks();
+        SVO chunk = chunkManager.getResidentChunks().get(new Vector3i(1, 2, 0));
+        assertEquals(1, chunk.getGeometries().size());
+
+        // The same sphere relative to the origin of the chunk
+        SVO svo = new SVO(5, 100);
+        svo.getGeometries().add(new Sphere(new Vector3f(30, 40, 60), 25, new Vector3f(0.5f)));
+        svo.generateSVO();
+        assertEquals(svo.getIndirectionPool().size(), chunk.getIndirectionPool().size());
+        assertEquals(svo.getTextureData(), chunk.getTextureData());
+    }
+
+    @Test
+    public void failedChunksAreRequestedAgain() {
+        int[] numAttempts = new int[1];
+        ChunkManager chunkManager = new ChunkManager(4, 100, 0, Long.MAX_VALUE, Runnable::run) {
+            @Override
+            protected SVO buildChunk(Vector3i chunk) {
+                if (numAttempts[0]++ == 0) throw new IllegalStateException("First build fails");
+                return super.buildChunk(chunk);
+            }
+        };
+        chunkManager.update(new Vector3f(50, 50, 50));
+        chunkManager.awaitPendingChunks();
+        assertEquals(1, chunkManager.getNumFailed());
+        assertTrue(chunkManager.getLastFailure() instanceof IllegalStateException);
+        assertEquals(0, chunkManager.getNumResident());
+        assertEquals(0, chunkManager.getNumPending());
+
+        chunkManager.update(new Vector3f(50, 50, 50));
+        chunkManager.awaitPendingChunks();
+        assertEquals(1, chunkManager.getNumResident());
+        assertEquals(1, chunkManager.getNumBuilt());
+    }
+
+    @Test
+    public void pendingChunksCountAgainstBudget() {
+        // Builds run when the test runs them
+        ArrayDeque<Runnable> builds = new ArrayDeque<>();
+        ChunkManager chunkManager = new ChunkManager(4, 100, 0, Long.MAX_VALUE, builds::add);
+        chunkManager.update(new Vector3f(50, 50, 50));
+        builds.poll().run();
+        chunkManager.update(new Vector3f(50, 50, 50));
+        assertEquals(1, chunkManager.getNumResident());
+        long chunkBytes = chunkManager.getResidentBytes();
+        SVO chunk = chunkManager.getResidentChunks().get(new Vector3i(0, 0, 0));
+        assertTrue(chunkBytes > ChunkManager.INDIRECTION_GRID_BYTES * chunk.getIndirectionPool().size());
+
+        // The budget fits one chunk, so the resident chunk makes room for the chunk that is being built
+        chunkManager.setMemoryBudget(chunkBytes);
+        chunkManager.update(new Vector3f(150, 50, 50));
+        assertEquals(1, chunkManager.getNumPending());
+        assertEquals(0, chunkManager.getNumResident());
+
+        builds.poll().run();
+        chunkManager.update(new Vector3f(150, 50, 50));
+        assertTrue(chunkManager.getResidentChunks().containsKey(new Vector3i(1, 0, 0)));
+        assertEquals(1, chunkManager.getNumEvicted());
+    }
+}
@@ -0,0 +1,56 @@
+package core;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class CompactNodeEncodingTest {
+
+    private static SVO createDemoSVO(int maxDepth) {
+        SVO svo = new SVO(maxDepth, 100);
+        svo.generateDemoScene();
+        svo.generateSVO();
+        return svo;
+    }
+
+    private static void assertSameVoxels(ByteBuffer wide, int width, int height, SVO svo) {
+        ByteBuffer compact = CompactNodeEncoding.encode(svo);
+        assertEquals(0, compact.limit() % 4);
+
+        int resolution = 1 << svo.getMaxDepth();
+        for (int z = 0; z < resolution; z++) {
+            for (int y = 0; y < resolution; y++) {
+                for (int x = 0; x < resolution; x++) {
+                    assertEquals(WideCellEncoding.lookup(wide, width, height, svo.getMaxDepth(), x, y, z),
+                            CompactNodeEncoding.lookup(compact, svo.getMaxDepth(), x, y, z));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void compactLookupMatchesTexture() {
+        SVO svo = createDemoSVO(6);
+        assertSameVoxels(svo.getWideTextureData(), svo.getTextureWidth(), svo.getTextureHeight(), svo);
+
+        // Most offsets fit in a single byte, so nodes are smaller than the 8 cells of 4 bytes in the texture
+        int bytesPerNode = CompactNodeEncoding.encode(svo).limit() / svo.getIndirectionPool().size();
+        assertTrue("Bytes per node: " + bytesPerNode, bytesPerNode < 8 * 4);
+    }
+
+    @Test
+    public void sharedNodesAreWrittenOnce() {
+        for (boolean symmetric : new boolean[] { false, true }) {
+            SVO svo = DAGTest.createUniformSVO(6);
+            ByteBuffer wide = svo.getWideTextureData();
+            int width = svo.getTextureWidth(), height = svo.getTextureHeight();
+            int treeSize = CompactNodeEncoding.encode(svo).limit();
+
+            svo.compressToDAG(symmetric);
+            assertSameVoxels(wide, width, height, svo);
+            assertTrue(CompactNodeEncoding.encode(svo).limit() < treeSize);
+        }
+    }
+}
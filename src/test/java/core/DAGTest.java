@@ -0,0 +1,132 @@
+package core;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class DAGTest {
+
+    /**
+     * Voxels of the demo scene, all with the same color
+     */
+    static SVO createUniformSVO(int maxDepth) {
+        SVO geometrySVO = new SVO(maxDepth, 100);
+        geometrySVO.generateDemoScene();
+        geometrySVO.generateSVO();
+
+        int resolution = 1 << maxDepth;
+        ArrayList<Integer> positions = new ArrayList<>();
+        for (IndirectionGrid ig : geometrySVO.getIndirectionPool()) {
+            for (Cell cell : ig.getChildren()) {
+                if (cell.getNodeType() == Cell.NodeType.DATA) {
+                    positions.add(Math.round(cell.getRealLocation().x * resolution));
+                    positions.add(Math.round(cell.getRealLocation().y * resolution));
+                    positions.add(Math.round(cell.getRealLocation().z * resolution));
+                }
+            }
+        }
+        int[] voxelPositions = positions.stream().mapToInt(Integer::intValue).toArray();
+        int[] voxelColors = new int[voxelPositions.length / 3];
+        Arrays.fill(voxelColors, 0x808080);
+
+        SVO svo = new SVO(maxDepth, 100);
+        svo.generateSVO(voxelPositions, voxelColors);
+        return svo;
+    }
+
+    @Test
+    public void dagContainsSameVoxels() {
+        SVO svo = createUniformSVO(6);
+        ByteBuffer expected = svo.getWideTextureData();
+        int expectedWidth = svo.getTextureWidth(), expectedHeight = svo.getTextureHeight();
+        int numGrids = svo.getIndirectionPool().size();
+
+        float ratio = svo.compressToDAG();
+        assertTrue(svo.isDag());
+        assertEquals(numGrids / (float) svo.getIndirectionPool().size(), ratio, 1e-6f);
+        assertTrue("Compression ratio " + ratio, ratio > 2);
+
+        ByteBuffer actual = svo.getWideTextureData();
+        int resolution = 1 << svo.getMaxDepth();
+        for (int z = 0; z < resolution; z++) {
+            for (int y = 0; y < resolution; y++) {
+                for (int x = 0; x < resolution; x++) {
+                    int expectedCell = WideCellEncoding.lookup(expected, expectedWidth, expectedHeight, svo.getMaxDepth(), x, y, z);
+                    int actualCell = WideCellEncoding.lookup(actual, svo.getTextureWidth(), svo.getTextureHeight(), svo.getMaxDepth(), x, y, z);
+                    assertEquals(expectedCell, actualCell);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void symmetricDagContainsSameVoxels() {
+        SVO dag = createUniformSVO(6);
+        dag.compressToDAG();
+
+        SVO svo = createUniformSVO(6);
+        ByteBuffer expected = svo.getWideTextureData();
+        int expectedWidth = svo.getTextureWidth(), expectedHeight = svo.getTextureHeight();
+
+        svo.compressToDAG(true);
+        assertTrue(svo.isSymmetricDag());
+        assertTrue(svo.getIndirectionPool().size() < dag.getIndirectionPool().size());
+
+        ByteBuffer actual = svo.getWideTextureData();
+        int resolution = 1 << svo.getMaxDepth();
+        for (int z = 0; z < resolution; z++) {
+            for (int y = 0; y < resolution; y++) {
+                for (int x = 0; x < resolution; x++) {
+                    int expectedCell = WideCellEncoding.lookup(expected, expectedWidth, expectedHeight, svo.getMaxDepth(), x, y, z);
+                    int actualCell = WideCellEncoding.lookup(actual, svo.getTextureWidth(), svo.getTextureHeight(), svo.getMaxDepth(), x, y, z);
+                    assertEquals(expectedCell, actualCell);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void compressingTwiceKeepsVoxels() {
+        SVO svo = createUniformSVO(6);
+        int resolution = 1 << svo.getMaxDepth();
+        int[] expected = new int[resolution * resolution * resolution];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = svo.lookup(i % resolution, i / resolution % resolution, i / (resolution * resolution), svo.getMaxDepth());
+        }
+
+        // Grids that are shared by the first compression are reached more than once by the second
+        svo.compressToDAG();
+        int numGrids = svo.getIndirectionPool().size();
+        assertEquals(1, svo.compressToDAG(), 1e-6f);
+        svo.compressToDAG(true);
+        assertTrue(svo.getIndirectionPool().size() < numGrids);
+        svo.compressToDAG(true);
+        for (int i = 0; i < expected.length; i++) {
+            int actual = svo.lookup(i % resolution, i / resolution % resolution, i / (resolution * resolution), svo.getMaxDepth());
+            assertEquals("Voxel " + i, expected[i], actual);
+        }
+    }
+
+    @Test
+    public void uniqueSubtreesAreKept() {
+        // Every data cell has a different color in the geometry build, so no leaf grids can be shared
+        SVO svo = new SVO(5, 100);
+        svo.generateDemoScene();
+        svo.generateSVO();
+        int numGrids = svo.getIndirectionPool().size();
+
+        assertEquals(1, svo.compressToDAG(), 1e-6f);
+        assertEquals(numGrids, svo.getIndirectionPool().size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void dagCannotBeEdited() {
+        SVO svo = createUniformSVO(5);
+        svo.compressToDAG();
+        svo.setVoxel(0, 0, 0, 0xFFFFFF);
+    }
+}
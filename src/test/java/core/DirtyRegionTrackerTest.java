@@ -0,0 +1,88 @@
+package core;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class DirtyRegionTrackerTest {
+
+    @Test
+    public void editsOnlyUpdateDirtyGrids() {
+        SVO svo = new SVO(6, 100);
+        svo.generateDemoScene();
+        svo.generateSVO();
+        svo.packTexture(svo.getMaxDepth());
+        ByteBuffer textureData = svo.getTextureData();
+
+        // A voxel in an empty corner creates a grid at every depth below the root
+        int poolSize = svo.getIndirectionPool().size();
+        svo.setVoxel(63, 63, 63, 0xFF8000);
+        assertEquals(poolSize + svo.getMaxDepth() - 1, svo.getIndirectionPool().size());
+        assertEquals(svo.getMaxDepth(), svo.getDirtyRegions().getNumDirty());
+        svo.getDirtyRegions().apply(svo, textureData);
+        assertEquals(svo.getTextureData(), textureData);
+
+        // Clearing it frees those grids again
+        svo.clearVoxel(63, 63, 63);
+        assertEquals(svo.getMaxDepth(), svo.getDirtyRegions().getNumDirty());
+        svo.getDirtyRegions().apply(svo, textureData);
+        assertEquals(svo.getTextureData(), textureData);
+
+        // Which are reused by the next edit
+        svo.setVoxel(62, 63, 60, 0x00FF00);
+        assertEquals(poolSize + svo.getMaxDepth() - 1, svo.getIndirectionPool().size());
+
+        svo.getDirtyRegions().apply(svo, textureData);
+
+        // Editing an existing voxel only changes its own grid
+        svo.setVoxel(62, 63, 60, 0x0000FF);
+        assertEquals(1, svo.getDirtyRegions().getNumDirty());
+        svo.getDirtyRegions().apply(svo, textureData);
+        assertEquals(svo.getTextureData(), textureData);
+        assertEquals(0, svo.getDirtyRegions().getNumDirty());
+    }
+
+    @Test
+    public void packingKeepsDirtyGrids() {
+        SVO svo = new SVO(6, 100);
+        svo.generateDemoScene();
+        svo.generateSVO();
+        svo.packTexture(2 * svo.getMaxDepth());
+        ByteBuffer textureData = svo.getTextureData();
+
+        svo.setVoxel(63, 63, 63, 0xFF8000);
+        assertEquals(svo.getMaxDepth(), svo.getDirtyRegions().getNumDirty());
+
+        // The same number of grids in total, so the size stays the same and the edit still has to be uploaded
+        int width = svo.getTextureWidth(), height = svo.getTextureHeight(), depth = svo.getTextureDepth();
+        svo.packTexture(svo.getMaxDepth() + 1);
+        assertEquals(width, svo.getTextureWidth());
+        assertEquals(height, svo.getTextureHeight());
+        assertEquals(depth, svo.getTextureDepth());
+        assertEquals(svo.getMaxDepth(), svo.getDirtyRegions().getNumDirty());
+        svo.getDirtyRegions().apply(svo, textureData);
+        assertEquals(svo.getTextureData(), textureData);
+    }
+
+    @Test
+    public void clearingEmptyVoxelChangesNothing() {
+        SVO svo = new SVO(5, 100);
+        svo.generateDemoScene();
+        svo.generateSVO();
+
+        svo.clearVoxel(31, 31, 31);
+        assertEquals(0, svo.getDirtyRegions().getNumDirty());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void editsNeedRoomInPackedTexture() {
+        SVO svo = new SVO(6, 100);
+        svo.generateDemoScene();
+        svo.generateSVO();
+        svo.packTexture(svo.getMaxDepth() - 2);
+
+        svo.setVoxel(63, 63, 63, 0xFF8000);
+    }
+}
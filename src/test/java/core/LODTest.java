@@ -0,0 +1,94 @@
+package core;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class LODTest {
+
+    @Test
+    public void uniformColorHasUniformAverages() {
+        SVO svo = DAGTest.createUniformSVO(5);
+        for (IndirectionGrid ig : svo.getIndirectionPool()) {
+            assertEquals(0x808080, ig.getAverageColor() & 0xFFFFFF);
+            assertTrue(ig.getAverageColor() >>> 24 > 0);
+        }
+
+        // The averages are kept when merging subtrees
+        svo.compressToDAG();
+        for (IndirectionGrid ig : svo.getIndirectionPool()) {
+            assertEquals(0x808080, ig.getAverageColor() & 0xFFFFFF);
+        }
+    }
+
+    @Test
+    public void editsMatchFullUpdate() {
+        SVO svo = new SVO(5, 100);
+        svo.generateDemoScene();
+        svo.generateSVO();
+        svo.packTexture(2 * svo.getMaxDepth());
+
+        svo.setVoxel(31, 31, 31, 0xFF0000);
+        svo.setVoxel(30, 31, 31, 0x0000FF);
+        svo.clearVoxel(31, 31, 31);
+        svo.setVoxel(16, 16, 16, 0x00FF00);
+        svo.clearVoxel(0, 0, 0);
+        ByteBuffer lodData = svo.getLODTextureData();
+
+        svo.updateLOD();
+        assertEquals(svo.getLODTextureData(), lodData);
+    }
+
+    @Test
+    public void lookupCoversSubtree() {
+        SVO svo = new SVO(5, 100);
+        svo.generateDemoScene();
+        svo.generateSVO();
+
+        int resolution = 1 << svo.getMaxDepth();
+        int depth = 2;
+        int nodeSize = resolution >> depth;
+        for (int x = 0; x < resolution; x += nodeSize) {
+            for (int y = 0; y < resolution; y += nodeSize) {
+                for (int z = 0; z < resolution; z += nodeSize) {
+                    int numVoxels = 0;
+                    for (int i = 0; i < nodeSize * nodeSize * nodeSize; i++) {
+                        int voxel = svo.lookup(x + i % nodeSize, y + i / nodeSize % nodeSize, z + i / (nodeSize * nodeSize), svo.getMaxDepth());
+                        if (voxel != 0) {
+                            assertEquals(0xFF, voxel >>> 24);
+                            numVoxels++;
+                        }
+                    }
+                    // A node is only visible at a lower level of detail if it contains voxels
+                    assertEquals(numVoxels > 0, svo.lookup(x, y, z, depth) != 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void lookupFollowsReflections() {
+        SVO svo = DAGTest.createUniformSVO(6);
+        int resolution = 1 << svo.getMaxDepth();
+        int[] expected = new int[resolution * resolution * resolution];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = svo.lookup(i % resolution, i / resolution % resolution, i / (resolution * resolution), svo.getMaxDepth());
+        }
+
+        // The scene is symmetric, so some index cells point to reflected grids
+        svo.compressToDAG(true);
+        boolean reflected = false;
+        for (IndirectionGrid ig : svo.getIndirectionPool()) {
+            for (Cell cell : ig.getChildren()) {
+                if (cell.getMirror() != 0) reflected = true;
+            }
+        }
+        assertTrue(reflected);
+        for (int i = 0; i < expected.length; i++) {
+            int actual = svo.lookup(i % resolution, i / resolution % resolution, i / (resolution * resolution), svo.getMaxDepth());
+            assertEquals("Voxel " + i, expected[i], actual);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package core;
+
+import geometry.SignedDistanceField;
+import org.joml.Vector3f;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class NormalVolumeTest {
+
+    private static int getTexel(ByteBuffer buffer, int size, int x, int y, int z) {
+        int position = 4 * ((z * size + y) * size + x);
+        return (buffer.get(position + 3) & 0xFF) << 24 | (buffer.get(position) & 0xFF) << 16
+                | (buffer.get(position + 1) & 0xFF) << 8 | (buffer.get(position + 2) & 0xFF);
+    }
+
+    /** Spheres with a solid sphere, so that some data cells end above max depth */
+    private static SVO createSVO(int maxDepth) {
+        SVO svo = new SVO(maxDepth, 100);
+        svo.generateDemoScene();
+        svo.getGeometries().add(SignedDistanceField.sphere(new Vector3f(70), 25, new Vector3f(0.2f, 0.4f, 0.8f)));
+        svo.generateSVO();
+        return svo;
+    }
+
+    @Test
+    public void volumeMatchesLookups() {
+        SVO svo = createSVO(6);
+        int size = svo.getMaxTextureSize();
+        assertEquals(1 << svo.getMaxDepth(), size);
+        ByteBuffer volume = svo.getNormalVolumeTextureData();
+
+        int numFilled = 0;
+        for (int z = 0; z < size; z++) {
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    assertEquals("Texel " + x + ", " + y + ", " + z, svo.lookup(x, y, z, svo.getMaxDepth()), getTexel(volume, size, x, y, z));
+                    if (getTexel(volume, size, x, y, z) != 0) numFilled++;
+                }
+            }
+        }
+        assertTrue(numFilled > 0);
+
+        // The export does not change the tree
+        assertEquals(volume, svo.getNormalVolumeTextureData());
+    }
+
+    @Test
+    public void mipLevelsReduceLevelBelow() {
+        SVO svo = createSVO(6);
+        ByteBuffer[] mipmaps = svo.getNormalVolumeMipmaps(ForkJoinPool.commonPool());
+        assertEquals(svo.getMaxDepth() + 1, mipmaps.length);
+
+        int[] coverage = new int[1];
+        for (int level = 1; level < mipmaps.length; level++) {
+            int size = svo.getMaxTextureSize() >> level;
+            assertEquals(size * size * size * 4, mipmaps[level].capacity());
+            for (int z = 0; z < size; z++) {
+                for (int y = 0; y < size; y++) {
+                    for (int x = 0; x < size; x++) {
+                        int texel = getTexel(mipmaps[level], size, x, y, z);
+                        // A texel is filled when any texel below it is, and full when all of them are full
+                        int numFilled = 0, numFull = 0;
+                        for (int i = 0; i < 8; i++) {
+                            int child = getTexel(mipmaps[level - 1], 2 * size, 2 * x + (i & 1), 2 * y + (i >> 1 & 1), 2 * z + (i >> 2));
+                            if (child != 0) numFilled++;
+                            if (child >>> 24 == 255) numFull++;
+                        }
+                        assertEquals(numFilled > 0, texel != 0);
+                        if (numFull == 8) assertEquals(255, texel >>> 24);
+                        if (numFilled < 8) assertTrue(texel >>> 24 < 255);
+                        if (level == mipmaps.length - 1) coverage[0] = texel >>> 24;
+                    }
+                }
+            }
+        }
+
+        // The last level holds the fraction of voxels that are filled
+        ByteBuffer volume = mipmaps[0];
+        int numFilled = 0;
+        for (int i = 0; i < volume.capacity() / 4; i++) {
+            if (volume.get(4 * i + 3) != 0) numFilled++;
+        }
+        assertEquals(Math.round(255.0 * numFilled / (volume.capacity() / 4)), coverage[0]);
+    }
+
+    @Test
+    public void parallelExportMatchesSerialExport() {
+        SVO svo = createSVO(7);
+        ForkJoinPool serialPool = new ForkJoinPool(1), parallelPool = new ForkJoinPool(4);
+        try {
+            ByteBuffer[] serial = svo.getNormalVolumeMipmaps(serialPool);
+            ByteBuffer[] parallel = svo.getNormalVolumeMipmaps(parallelPool);
+            assertArrayEquals(serial, parallel);
+        } finally {
+            serialPool.shutdown();
+            parallelPool.shutdown();
+        }
+    }
+
+    @Test
+    public void symmetricDagExportsReflectedGrids() {
+        SVO svo = DAGTest.createUniformSVO(6);
+        ByteBuffer[] expected = svo.getNormalVolumeMipmaps(ForkJoinPool.commonPool());
+
+        svo.compressToDAG(true);
+        assertTrue(svo.isSymmetricDag());
+        assertArrayEquals(expected, svo.getNormalVolumeMipmaps(ForkJoinPool.commonPool()));
+    }
+
+    @Test
+    public void texelsLargerThanVoxelsHoldAnyVoxel() {
+        // At depth 9 the texture has 256 texels per axis, so every texel holds 2x2x2 voxels
+        SVO svo = createSVO(9);
+        int size = svo.getMaxTextureSize();
+        assertEquals(256, size);
+        ByteBuffer volume = svo.getNormalVolumeTextureData();
+
+        Random random = new Random(0);
+        for (int i = 0; i < 100000; i++) {
+            int x = random.nextInt(size), y = random.nextInt(size), z = random.nextInt(size);
+            boolean filled = svo.lookup(2 * x, 2 * y, 2 * z, svo.getMaxDepth() - 1) != 0;
+            assertEquals("Texel " + x + ", " + y + ", " + z, filled, getTexel(volume, size, x, y, z) != 0);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class SVOArchiveTest {
+
+    private static Path createTempFile() throws IOException {
+        Path path = Files.createTempFile("svo-test", ".svoa");
+        path.toFile().deleteOnExit();
+        return path;
+    }
+
+    @Test
+    public void decompressedArchiveMatchesTexture() throws Exception {
+        SVO svo = new SVO(6, 100);
+        svo.generateDemoScene();
+        svo.generateSVO();
+        Path path = createTempFile();
+
+        // Small chunks, so that the texture is split into many chunks and a smaller last one
+        SVOArchive.write(svo, path, SVOFile.FORMAT_RGBA8, 1000, ForkJoinPool.commonPool());
+        assertTrue(Files.size(path) < svo.getTextureData().capacity());
+        SVOFile file = SVOArchive.load(path);
+        assertEquals(svo.getMaxDepth(), file.getMaxDepth());
+        assertEquals(svo.getTextureWidth(), file.getTextureWidth());
+        assertEquals(svo.getTextureHeight(), file.getTextureHeight());
+        assertEquals(svo.getTextureDepth(), file.getTextureDepth());
+        assertEquals(svo.getIndirectionPool().size(), file.getNumIndirectionGrids());
+        assertEquals(svo.getTextureData(), file.getTextureData());
+
+        SVOArchive.write(svo, path, SVOFile.FORMAT_R32UI);
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            file = SVOArchive.load(path, pool);
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(SVOFile.FORMAT_R32UI, file.getFormat());
+        assertEquals(svo.getWideTextureData(), file.getTextureData());
+    }
+
+    @Test(expected = IOException.class)
+    public void corruptChunksAreRejected() throws Exception {
+        SVO svo = new SVO(5, 100);
+        svo.generateDemoScene();
+        svo.generateSVO();
+        Path path = createTempFile();
+        SVOArchive.write(svo, path, SVOFile.FORMAT_RGBA8, 1000, ForkJoinPool.commonPool());
+
+        byte[] bytes = Files.readAllBytes(path);
+        for (int i = bytes.length - 100; i < bytes.length; i++) {
+            bytes[i] ^= 0x5A;
+        }
+        Files.write(path, bytes);
+        SVOArchive.load(path);
+    }
+
+    @Test(expected = IOException.class)
+    public void svoFilesAreNotArchives() throws Exception {
+        SVO svo = new SVO(4, 100);
+        svo.generateDemoScene();
+        svo.generateSVO();
+        Path path = createTempFile();
+        SVOFile.write(svo, path);
+        SVOArchive.load(path);
+    }
+}
@@ -0,0 +1,96 @@
+package core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class SVOFileTest {
+
+    private static Path createTempFile() throws IOException {
+        Path path = Files.createTempFile("svo-test", ".svo");
+        path.toFile().deleteOnExit();
+        return path;
+    }
+
+    @Test
+    public void loadedFileMatchesTexture() throws Exception {
+        SVO svo = new SVO(6, 100);
+        svo.generateDemoScene();
+        svo.generateSVO();
+        Path path = createTempFile();
+
+        SVOFile.write(svo, path);
+        SVOFile file = SVOFile.load(path);
+        assertEquals(SVOFile.VERSION, file.getVersion());
+        assertEquals(SVOFile.FORMAT_RGBA8, file.getFormat());
+        assertEquals(svo.getMaxDepth(), file.getMaxDepth());
+        assertEquals(svo.getTextureWidth(), file.getTextureWidth());
+        assertEquals(svo.getTextureHeight(), file.getTextureHeight());
+        assertEquals(svo.getTextureDepth(), file.getTextureDepth());
+        assertEquals(svo.getIndirectionPool().size(), file.getNumIndirectionGrids());
+        assertEquals(svo.getTextureData(), file.getTextureData());
+
+        SVOFile.write(svo, path, SVOFile.FORMAT_R32UI);
+        file = SVOFile.load(path);
+        assertEquals(SVOFile.FORMAT_R32UI, file.getFormat());
+        ByteBuffer wideData = svo.getWideTextureData();
+        assertEquals(ByteOrder.LITTLE_ENDIAN, file.getTextureData().order());
+        for (int i = 0; i < wideData.capacity(); i += 4) {
+            assertEquals("Cell " + i / 4, wideData.getInt(i), file.getTextureData().getInt(i));
+        }
+
+        // The mapped data can be traversed directly
+        assertEquals(WideCellEncoding.lookup(wideData, svo.getTextureWidth(), svo.getTextureHeight(), svo.getMaxDepth(), 20, 20, 10),
+                WideCellEncoding.lookup(file.getTextureData(), file.getTextureWidth(), file.getTextureHeight(), file.getMaxDepth(), 20, 20, 10));
+    }
+
+    @Test(expected = IOException.class)
+    public void otherFilesAreRejected() throws Exception {
+        Path path = createTempFile();
+        Files.write(path, new byte[128]);
+        SVOFile.load(path);
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedFilesAreRejected() throws Exception {
+        SVO svo = new SVO(4, 100);
+        svo.generateDemoScene();
+        svo.generateSVO();
+        Path path = createTempFile();
+        SVOFile.write(svo, path);
+
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 4));
+        SVOFile.load(path);
+    }
+
+    @Test
+    public void unknownVersionsAndFormatsAreRejected() throws Exception {
+        SVO svo = new SVO(4, 100);
+        svo.generateDemoScene();
+        svo.generateSVO();
+        Path path = createTempFile();
+        SVOFile.write(svo, path);
+        byte[] valid = Files.readAllBytes(path);
+
+        // Version 0, a version from the future, and an unknown format
+        int[][] headers = {{0, SVOFile.FORMAT_RGBA8}, {SVOFile.VERSION + 1, SVOFile.FORMAT_RGBA8}, {SVOFile.VERSION, 2}, {SVOFile.VERSION, -1}};
+        for (int[] header : headers) {
+            byte[] bytes = valid.clone();
+            ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(4, header[0]).putInt(8, header[1]);
+            Files.write(path, bytes);
+            try {
+                SVOFile.load(path);
+                fail("Version " + header[0] + " and format " + header[1] + " should be rejected");
+            } catch (IOException expected) {
+            }
+        }
+    }
+}
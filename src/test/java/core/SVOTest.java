@@ -0,0 +1,208 @@
+package core;
+
+import geometry.Box;
+import geometry.Sphere;
+import org.joml.Vector3f;
+import org.joml.Vector3i;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class SVOTest {
+
+    private static SVO createDemoSVO(int maxDepth) {
+        SVO svo = new SVO(maxDepth, 100);
+        svo.generateDemoScene();
+        return svo;
+    }
+
+    @Test
+    public void parallelBuildMatchesSerialBuild() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertParallelBuildMatchesSerialBuild(pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void assertParallelBuildMatchesSerialBuild(ForkJoinPool pool) {
+        for (int maxDepth = 2; maxDepth <= 6; maxDepth++) {
+            SVO serial = createDemoSVO(maxDepth);
+            serial.generateSVO();
+            SVO parallel = createDemoSVO(maxDepth);
+            parallel.generateSVO(pool);
+
+            assertEquals(serial.getIndirectionPool().size(), parallel.getIndirectionPool().size());
+            for (int i = 0; i < serial.getIndirectionPool().size(); i++) {
+                Cell[] expected = serial.getIndirectionPool().get(i).getChildren();
+                Cell[] actual = parallel.getIndirectionPool().get(i).getChildren();
+                for (int j = 0; j < 8; j++) {
+                    assertEquals(expected[j].getNodeType(), actual[j].getNodeType());
+                    assertEquals(expected[j].getPointer(), actual[j].getPointer());
+                }
+            }
+
+            ByteBuffer expected = serial.getTextureData();
+            ByteBuffer actual = parallel.getTextureData();
+            assertEquals("Texture data at depth " + maxDepth, expected, actual);
+        }
+    }
+
+    @Test
+    public void voxelListBuildMatchesGeometryBuild() {
+        SVO expected = createDemoSVO(6);
+        expected.generateSVO();
+
+        // Collect the voxels of the geometry build in reverse order, to make sure the builder sorts them
+        int resolution = 1 << expected.getMaxDepth();
+        ArrayList<Integer> positions = new ArrayList<>();
+        ArrayList<Integer> colors = new ArrayList<>();
+        for (int i = expected.getIndirectionPool().size() - 1; i >= 0; i--) {
+            for (Cell cell : expected.getIndirectionPool().get(i).getChildren()) {
+                if (cell.getNodeType() == Cell.NodeType.DATA) {
+                    positions.add(Math.round(cell.getRealLocation().x * resolution));
+                    positions.add(Math.round(cell.getRealLocation().y * resolution));
+                    positions.add(Math.round(cell.getRealLocation().z * resolution));
+                    colors.add(cell.getRGB());
+                }
+            }
+        }
+        int[] voxelPositions = positions.stream().mapToInt(Integer::intValue).toArray();
+        int[] voxelColors = colors.stream().mapToInt(Integer::intValue).toArray();
+
+        SVO actual = new SVO(expected.getMaxDepth(), expected.getWorldSize());
+        actual.generateSVO(voxelPositions, voxelColors);
+
+        assertEquals(expected.getIndirectionPool().size(), actual.getIndirectionPool().size());
+        for (int i = 0; i < expected.getIndirectionPool().size(); i++) {
+            Cell[] expectedCells = expected.getIndirectionPool().get(i).getChildren();
+            Cell[] actualCells = actual.getIndirectionPool().get(i).getChildren();
+            for (int j = 0; j < 8; j++) {
+                assertEquals(expectedCells[j].getNodeType(), actualCells[j].getNodeType());
+                assertEquals(expectedCells[j].getPointer(), actualCells[j].getPointer());
+            }
+        }
+
+        // Same colors and texture indices as well
+        ByteBuffer expectedData = expected.getTextureData();
+        ByteBuffer actualData = actual.getTextureData();
+        assertEquals(expectedData.capacity(), actualData.capacity());
+        for (int i = 0; i < expectedData.capacity(); i++) {
+            assertEquals("Byte " + i, expectedData.get(i), actualData.get(i));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void voxelListBuildNeedsAGridBelowTheRoot() {
+        new SVO(0, 100).generateSVO(new int[]{0, 0, 0}, new int[]{0xFFFFFF});
+    }
+
+    @Test
+    public void textureBlocksFitExactly() {
+        assertEquals(new Vector3i(1, 1, 1), SVO.getTextureBlocks(1));
+        assertEquals(new Vector3i(31, 1, 1), SVO.getTextureBlocks(31));
+        assertEquals(new Vector3i(4, 4, 4), SVO.getTextureBlocks(64));
+        assertEquals(new Vector3i(5, 5, 4), SVO.getTextureBlocks(100));
+        assertEquals(new Vector3i(64, 64, 32), SVO.getTextureBlocks(256 * 256 * 2));
+
+        // A prime number of grids larger than the maximum width does not fit exactly, but wastes little
+        Vector3i blocks = SVO.getTextureBlocks(65537);
+        assertTrue(blocks.x * blocks.y * blocks.z - 65537 < 8);
+    }
+
+    @Test
+    public void parallelPackingMatchesCellData() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int maxDepth = 3; maxDepth <= 7; maxDepth++) {
+                SVO svo = createDemoSVO(maxDepth);
+                svo.generateSVO();
+
+                // Every grid written cell by cell, in both byte orders
+                for (ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+                    ByteBuffer expected = ByteBuffer.allocate(svo.getTextureCapacity() * 8 * 4).order(order);
+                    Vector3i index = new Vector3i();
+                    for (int i = 0; i < svo.getIndirectionPool().size(); i++) {
+                        svo.getTextureIndex(i, index);
+                        svo.getIndirectionPool().get(i).get(svo.getTextureWidth(), svo.getTextureHeight(), index.x, index.y, index.z, expected);
+                    }
+                    ByteBuffer actual = svo.getTextureData(pool);
+                    for (int i = 0; i < expected.capacity(); i++) {
+                        assertEquals("Byte " + i, expected.get(i), actual.get(i));
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void packedTextureFollowsPoolSize() {
+        for (int maxDepth = 3; maxDepth <= 7; maxDepth++) {
+            SVO svo = createDemoSVO(maxDepth);
+            svo.generateSVO();
+            int numGrids = svo.getIndirectionPool().size();
+            assertTrue(svo.getTextureCapacity() >= numGrids);
+            assertTrue(svo.getTextureCapacity() <= numGrids + numGrids / 100);
+            assertEquals(svo.getTextureCapacity() * 8 * 4, svo.getTextureData().limit());
+
+            // Every INDEX cell holds the block of the grid it points to
+            Vector3i index = new Vector3i();
+            for (IndirectionGrid ig : svo.getIndirectionPool()) {
+                for (Cell cell : ig.getChildren()) {
+                    if (cell.getNodeType() != Cell.NodeType.INDEX) continue;
+                    ByteBuffer data = ByteBuffer.allocate(4);
+                    cell.getData(0, data);
+                    svo.getTextureIndex(cell.getPointer(), index);
+                    assertEquals(index.x / 2, data.get(0) & 0xFF);
+                    assertEquals(index.y / 2, data.get(1) & 0xFF);
+                    assertEquals(index.z / 2, data.get(2) & 0xFF);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void manyGeometriesBuildMatchesParallelBuild() {
+        // More geometries than the threshold of the geometry index, so that the candidates are found through it
+        SVO serial = new SVO(6, 100);
+        SVO parallel = new SVO(6, 100);
+        for (int i = 0; i < 100; i++) {
+            Vector3f center = new Vector3f(10 + 8 * (i % 10), 10 + 8 * (i / 10), 10 + 7 * (i % 7));
+            serial.getGeometries().add(new Sphere(center, 3 + i % 4, new Vector3f(0.5f)));
+            parallel.getGeometries().add(new Sphere(center, 3 + i % 4, new Vector3f(0.5f)));
+        }
+        serial.generateSVO();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            parallel.generateSVO(pool);
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(serial.getIndirectionPool().size(), parallel.getIndirectionPool().size());
+        assertEquals(serial.getTextureData(), parallel.getTextureData());
+    }
+
+    @Test
+    public void pickingFindsTheNearestHit() {
+        SVO svo = new SVO(6, 100);
+        // The ray enters the bounds of the sphere first, but passes its corner and misses the sphere itself
+        svo.getGeometries().add(new Sphere(new Vector3f(30, 30, 50), 10, new Vector3f(0.5f)));
+        Box box = new Box(new Vector3f(60, 15, 40), new Vector3f(70, 25, 55), new Vector3f(0.5f));
+        svo.getGeometries().add(box);
+        assertSame(box, svo.pickGeometry(new Vector3f(0, 21, 42), new Vector3f(1, 0, 0)));
+
+        // Along the axes, with the ray in the planes of the faces of the bounds
+        assertSame(box, svo.pickGeometry(new Vector3f(0, 15, 40), new Vector3f(1, 0, 0)));
+        assertSame(svo.getGeometries().get(0), svo.pickGeometry(new Vector3f(30, 30, 0), new Vector3f(0, 0, 1)));
+        assertNull(svo.pickGeometry(new Vector3f(0, 90, 50), new Vector3f(1, 0, 0)));
+        assertNull(svo.pickGeometry(new Vector3f(50, 21, 42), new Vector3f(-1, 0, 0)));
+    }
+}
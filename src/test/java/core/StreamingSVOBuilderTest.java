@@ -0,0 +1,56 @@
+package core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class StreamingSVOBuilderTest {
+
+    @Test
+    public void streamedTextureMatchesPoolTexture() throws Exception {
+        for (int maxDepth = 3; maxDepth <= 6; maxDepth++) {
+            SVO svo = new SVO(maxDepth, 100);
+            svo.generateDemoScene();
+            svo.generateSVO();
+            ByteBuffer expected = svo.getTextureData();
+
+            StreamingSVOBuilder builder = new StreamingSVOBuilder(svo);
+            assertEquals("Texture data at depth " + maxDepth, expected, builder.build());
+            assertEquals(svo.getIndirectionPool().size(), builder.getNumIndirectionGrids());
+
+            // Force the texture to be written to a memory mapped file
+            Path spillFile = Files.createTempFile("svo-test", ".bin");
+            spillFile.toFile().deleteOnExit();
+            builder.setHeapBudget(0);
+            builder.setSpillFile(spillFile);
+            assertEquals("Mapped texture data at depth " + maxDepth, expected, builder.build());
+        }
+    }
+
+    @Test
+    public void temporarySpillFileIsDeleted() throws Exception {
+        SVO svo = new SVO(5, 100);
+        svo.generateDemoScene();
+        svo.generateSVO();
+        Path tempDirectory = Paths.get(System.getProperty("java.io.tmpdir"));
+        long numFilesBefore = countSpillFiles(tempDirectory);
+
+        StreamingSVOBuilder builder = new StreamingSVOBuilder(svo);
+        builder.setHeapBudget(0);
+        assertEquals(svo.getTextureData(), builder.build());
+        assertEquals(numFilesBefore, countSpillFiles(tempDirectory));
+    }
+
+    private static long countSpillFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().matches("svo[0-9]+\\.bin")).count();
+        }
+    }
+}
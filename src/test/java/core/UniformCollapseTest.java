@@ -0,0 +1,104 @@
+package core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class UniformCollapseTest {
+
+    /**
+     * A solid cube of 8^3 voxels in the corner of a 32^3 volume
+     */
+    private static SVO createCubeSVO() {
+        return createCubeSVO(false);
+    }
+
+    private static SVO createCubeSVO(boolean collapseUniform) {
+        int size = 8;
+        int[] voxelPositions = new int[3 * size * size * size];
+        int[] voxelColors = new int[size * size * size];
+        for (int i = 0; i < voxelColors.length; i++) {
+            voxelPositions[3 * i] = i % size;
+            voxelPositions[3 * i + 1] = i / size % size;
+            voxelPositions[3 * i + 2] = i / (size * size);
+            voxelColors[i] = 0x20A040;
+        }
+        SVO svo = new SVO(5, 100);
+        svo.setCollapseUniform(collapseUniform);
+        svo.generateSVO(voxelPositions, voxelColors);
+        return svo;
+    }
+
+    private static void assertSameVoxels(SVO expected, SVO actual) {
+        int resolution = 1 << expected.getMaxDepth();
+        for (int x = 0; x < resolution; x++) {
+            for (int y = 0; y < resolution; y++) {
+                for (int z = 0; z < resolution; z++) {
+                    assertEquals(expected.lookup(x, y, z, expected.getMaxDepth()), actual.lookup(x, y, z, actual.getMaxDepth()));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void solidCubeCollapsesToSingleCell() {
+        SVO svo = createCubeSVO();
+        // The root, a grid at depth 1 and 2, 8 grids at depth 3 and 64 at depth 4
+        assertEquals(75, svo.getIndirectionPool().size());
+
+        assertEquals(73, svo.collapseUniformSubtrees());
+        assertEquals(2, svo.getIndirectionPool().size());
+        assertEquals(Cell.NodeType.DATA, svo.getIndirectionPool().get(1).getChildren()[0].getNodeType());
+        assertSameVoxels(createCubeSVO(), svo);
+
+        // Nothing is left to collapse
+        assertEquals(0, svo.collapseUniformSubtrees());
+    }
+
+    @Test
+    public void collapsedSubtreesContainSameVoxels() {
+        SVO svo = DAGTest.createUniformSVO(5);
+        int poolSize = svo.getIndirectionPool().size();
+        int numRemoved = svo.collapseUniformSubtrees();
+        assertTrue(numRemoved > 0);
+        assertEquals(poolSize - numRemoved, svo.getIndirectionPool().size());
+        assertSameVoxels(DAGTest.createUniformSVO(5), svo);
+
+        // Collapsing the DAG gives the same voxels as well
+        SVO dag = DAGTest.createUniformSVO(5);
+        dag.compressToDAG();
+        dag.collapseUniformSubtrees();
+        assertSameVoxels(svo, dag);
+    }
+
+    @Test
+    public void buildCanCollapse() {
+        SVO collapsed = createCubeSVO();
+        collapsed.collapseUniformSubtrees();
+
+        SVO svo = createCubeSVO(true);
+        assertEquals(collapsed.getIndirectionPool().size(), svo.getIndirectionPool().size());
+        assertEquals(collapsed.getTextureData(), svo.getTextureData());
+    }
+
+    @Test
+    public void uniqueColorsAreKept() {
+        SVO svo = new SVO(5, 100);
+        svo.generateDemoScene();
+        svo.generateSVO();
+        assertEquals(0, svo.collapseUniformSubtrees());
+    }
+
+    @Test
+    public void collapsedCellsCanBeEdited() {
+        SVO svo = createCubeSVO();
+        svo.collapseUniformSubtrees();
+        svo.packTexture(svo.getMaxDepth());
+
+        svo.setVoxel(3, 4, 5, 0xFF0000);
+        SVO expected = createCubeSVO();
+        expected.packTexture(expected.getMaxDepth());
+        expected.setVoxel(3, 4, 5, 0xFF0000);
+        assertSameVoxels(expected, svo);
+    }
+}
@@ -0,0 +1,175 @@
+package core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class VoxReaderTest {
+
+    /**
+     * Writes .vox files chunk by chunk, children of MAIN are added as they are written
+     */
+    private static class VoxWriter {
+        private final ByteArrayOutputStream children = new ByteArrayOutputStream();
+
+        VoxWriter chunk(String id, int... content) {
+            ByteBuffer buffer = ByteBuffer.allocate(12 + 4 * content.length).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.put(id.getBytes(StandardCharsets.US_ASCII)).putInt(4 * content.length).putInt(0);
+            for (int value : content) buffer.putInt(value);
+            children.write(buffer.array(), 0, buffer.capacity());
+            return this;
+        }
+
+        VoxWriter model(int sizeX, int sizeY, int sizeZ, int... voxels) {
+            chunk("SIZE", sizeX, sizeY, sizeZ);
+            int[] content = new int[1 + voxels.length / 4];
+            content[0] = voxels.length / 4;
+            for (int i = 0; i < voxels.length / 4; i++) {
+                content[1 + i] = voxels[4 * i] | voxels[4 * i + 1] << 8 | voxels[4 * i + 2] << 16 | voxels[4 * i + 3] << 24;
+            }
+            return chunk("XYZI", content);
+        }
+
+        ByteArrayInputStream toStream() {
+            ByteBuffer header = ByteBuffer.allocate(20).order(ByteOrder.LITTLE_ENDIAN);
+            header.put("VOX ".getBytes(StandardCharsets.US_ASCII)).putInt(150)
+                    .put("MAIN".getBytes(StandardCharsets.US_ASCII)).putInt(0).putInt(children.size());
+            ByteArrayOutputStream file = new ByteArrayOutputStream();
+            file.write(header.array(), 0, header.capacity());
+            file.write(children.toByteArray(), 0, children.size());
+            return new ByteArrayInputStream(file.toByteArray());
+        }
+    }
+
+    private static int[] stringChunk(String... strings) {
+        // Chunks are written as ints, so the strings must add up to whole ints
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (String s : strings) {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = ByteBuffer.allocate(4 + b.length).order(ByteOrder.LITTLE_ENDIAN).putInt(b.length).put(b);
+            bytes.write(buffer.array(), 0, buffer.capacity());
+        }
+        ByteBuffer content = ByteBuffer.wrap(bytes.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+        int[] ints = new int[content.capacity() / 4];
+        for (int i = 0; i < ints.length; i++) ints[i] = content.getInt();
+        return ints;
+    }
+
+    @Test
+    public void voxelsUseTheDefaultPaletteAndZUp() throws IOException {
+        // Voxels at the corners of a 4x4x4 model, with palette index 1 (white) and 216 (the brightest red)
+        SVO svo = VoxReader.read(new VoxWriter().model(4, 4, 4,
+                0, 0, 0, 1,
+                3, 0, 0, 216,
+                0, 0, 3, 1,
+                0, 3, 0, 1).toStream());
+
+        assertEquals(2, svo.getMaxDepth());
+        int depth = svo.getMaxDepth();
+        // MagicaVoxel z becomes y, and y becomes -z
+        assertEquals(0xFFFFFFFF, svo.lookup(0, 0, 3, depth));
+        assertEquals(0xFFEE0000, svo.lookup(3, 0, 3, depth));
+        assertEquals(0xFFFFFFFF, svo.lookup(0, 3, 3, depth));
+        assertEquals(0xFFFFFFFF, svo.lookup(0, 0, 0, depth));
+        assertEquals(0, svo.lookup(1, 1, 1, depth));
+    }
+
+    @Test
+    public void paletteAfterTheVoxelsIsUsed() throws IOException {
+        int[] palette = new int[256];
+        palette[0] = 0xFF332211; // Color of palette index 1, as bytes r, g, b, a
+        palette[4] = 0xFF665544; // Color of palette index 5
+        SVO svo = VoxReader.read(new VoxWriter().model(2, 2, 2,
+                0, 0, 0, 1,
+                1, 1, 1, 5)
+                .chunk("RGBA", palette).toStream());
+
+        assertEquals(1, svo.getMaxDepth());
+        assertEquals(0xFF112233, svo.lookup(0, 0, 1, 1));
+        assertEquals(0xFF445566, svo.lookup(1, 1, 0, 1));
+    }
+
+    @Test
+    public void sceneGraphPlacesModels() throws IOException {
+        VoxWriter writer = new VoxWriter()
+                .model(2, 2, 2, 0, 0, 0, 1)
+                .model(2, 2, 2, 1, 1, 1, 1);
+        // Root transform -> group -> transforms at x = 1 and x = 9 -> shapes of model 0 and 1
+        int[] noAttributes = { 0 };
+        writer.chunk("nTRN", concat(new int[] { 0 }, noAttributes, new int[] { 1, -1, 0, 1 }, noAttributes));
+        writer.chunk("nGRP", concat(new int[] { 1 }, noAttributes, new int[] { 2, 2, 4 }));
+        writer.chunk("nTRN", concat(new int[] { 2 }, noAttributes, new int[] { 3, -1, 0, 1, 1 }, stringChunk("_t", "1 0  0")));
+        writer.chunk("nSHP", concat(new int[] { 3 }, noAttributes, new int[] { 1, 0 }, noAttributes));
+        writer.chunk("nTRN", concat(new int[] { 4 }, noAttributes, new int[] { 5, -1, 0, 1, 1 }, stringChunk("_t", "9 0  0")));
+        writer.chunk("nSHP", concat(new int[] { 5 }, noAttributes, new int[] { 1, 1 }, noAttributes));
+
+        SVO svo = VoxReader.read(writer.toStream());
+        // Model 0 starts at x = 0 and model 1 at x = 8, so the scene is 10 voxels wide
+        assertEquals(4, svo.getMaxDepth());
+        int depth = svo.getMaxDepth();
+        assertEquals(0xFFFFFFFF, svo.lookup(0, 0, 1, depth));
+        assertEquals(0xFFFFFFFF, svo.lookup(9, 1, 0, depth));
+        assertEquals(0, svo.lookup(1, 1, 0, depth));
+    }
+
+    @Test
+    public void voxelReaderMatchesVoxelListBuild() throws IOException {
+        int size = 40;
+        VoxWriter writer = new VoxWriter();
+        int[] voxels = new int[4 * size * size];
+        int[] positions = new int[3 * size * size];
+        int[] colors = new int[size * size];
+        int[] palette = VoxReader.createDefaultPalette();
+        for (int x = 0, i = 0; x < size; x++) {
+            for (int y = 0; y < size; y++, i++) {
+                // A height field with palette indices from 1 to 255
+                int z = (x * y) % size;
+                int index = 1 + (x + y) % 255;
+                voxels[4 * i] = x;
+                voxels[4 * i + 1] = y;
+                voxels[4 * i + 2] = z;
+                voxels[4 * i + 3] = index;
+                positions[3 * i] = x;
+                positions[3 * i + 1] = z;
+                positions[3 * i + 2] = size - 1 - y;
+                colors[i] = palette[index];
+            }
+        }
+        SVO svo = VoxReader.read(writer.model(size, size, size, voxels).toStream());
+        SVO expected = new SVO(6, 64);
+        expected.generateSVO(positions, colors);
+
+        assertEquals(expected.getIndirectionPool().size(), svo.getIndirectionPool().size());
+        assertEquals(expected.getTextureData(), svo.getTextureData());
+    }
+
+    @Test(expected = IOException.class)
+    public void otherFilesAreRejected() throws IOException {
+        VoxReader.read(new ByteArrayInputStream("not a vox file".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedVoxelsAreRejected() throws IOException {
+        // XYZI chunk that claims more voxels than it contains
+        VoxReader.read(new VoxWriter().chunk("SIZE", 2, 2, 2).chunk("XYZI", 3, 0).toStream());
+    }
+
+    private static int[] concat(int[]... arrays) {
+        int length = 0;
+        for (int[] array : arrays) length += array.length;
+        int[] result = new int[length];
+        int offset = 0;
+        for (int[] array : arrays) {
+            System.arraycopy(array, 0, result, offset, array.length);
+            offset += array.length;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,80 @@
+package core;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class WideCellEncodingTest {
+
+    @Test
+    public void cellsRoundTrip() {
+        int index = WideCellEncoding.encodeIndex(WideCellEncoding.MAX_POINTER);
+        assertEquals(WideCellEncoding.TYPE_INDEX, WideCellEncoding.getType(index));
+        assertEquals(WideCellEncoding.MAX_POINTER, WideCellEncoding.getPointer(index));
+
+        int data = WideCellEncoding.encode(Cell.createData(0x12AB7F));
+        assertEquals(WideCellEncoding.TYPE_DATA, WideCellEncoding.getType(data));
+        assertEquals(0x12AB7F, WideCellEncoding.getColor(data));
+
+        assertEquals(WideCellEncoding.TYPE_EMPTY, WideCellEncoding.getType(WideCellEncoding.encode(Cell.createEmpty())));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pointerMustFit() {
+        WideCellEncoding.encodeIndex(WideCellEncoding.MAX_POINTER + 1);
+    }
+
+    @Test
+    public void lookupFindsEveryVoxel() {
+        SVO svo = new SVO(6, 100);
+        svo.generateDemoScene();
+        svo.generateSVO();
+        assertLookupFindsEveryVoxel(svo);
+    }
+
+    @Test
+    public void lookupBeyondByteAddressing() {
+        SVO svo = new SVO(6, 100);
+        svo.generateDemoScene();
+        svo.generateSVO();
+
+        // Place the grids in a single row, which needs more blocks along x than an RGBA8 index cell can address
+        svo.setMaxTextureBlocks(WideCellEncoding.MAX_TEXTURE_BLOCKS);
+        svo.setTextureSize(2 * 1000, 2 * 2, 2);
+        assertTrue(svo.getTextureCapacity() >= svo.getIndirectionPool().size());
+        assertLookupFindsEveryVoxel(svo);
+
+        try {
+            svo.getTextureData();
+            fail("RGBA8 texture data with " + svo.getTextureWidth() / 2 + " blocks along x");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    private static void assertLookupFindsEveryVoxel(SVO svo) {
+        ByteBuffer textureData = svo.getWideTextureData();
+        int resolution = 1 << svo.getMaxDepth();
+
+        int numVoxels = 0;
+        for (IndirectionGrid ig : svo.getIndirectionPool()) {
+            for (Cell cell : ig.getChildren()) {
+                if (cell.getNodeType() != Cell.NodeType.DATA) continue;
+                int value = WideCellEncoding.lookup(textureData, svo.getTextureWidth(), svo.getTextureHeight(), svo.getMaxDepth(),
+                        Math.round(cell.getRealLocation().x * resolution),
+                        Math.round(cell.getRealLocation().y * resolution),
+                        Math.round(cell.getRealLocation().z * resolution));
+                assertEquals(WideCellEncoding.TYPE_DATA, WideCellEncoding.getType(value));
+                assertEquals(cell.getRGB(), WideCellEncoding.getColor(value));
+                numVoxels++;
+            }
+        }
+        assertTrue(numVoxels > 0);
+
+        // The corner opposite of the spheres is empty
+        int value = WideCellEncoding.lookup(textureData, svo.getTextureWidth(), svo.getTextureHeight(), svo.getMaxDepth(),
+                resolution - 1, resolution - 1, resolution - 1);
+        assertEquals(WideCellEncoding.TYPE_EMPTY, WideCellEncoding.getType(value));
+    }
+}
@@ -0,0 +1,153 @@
+package geometry;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BVHTest {
+
+    /** Ray test that hits the bounds of every item where the ray enters them */
+    private static BVH.RayTest boundsTest(BVH bvh) {
+        return (item, originX, originY, originZ, dirX, dirY, dirZ, tMin, tMax) -> {
+            float t = Math.max(tMin, BVH.intersectRay(bvh.getItemBounds(), 6 * item, originX, originY, originZ,
+                    BVH.inverse(dirX), BVH.inverse(dirY), BVH.inverse(dirZ)));
+            return t <= tMax ? t : Float.POSITIVE_INFINITY;
+        };
+    }
+
+    @Test
+    public void unlimitedRayThatMissesFindsNothing() {
+        float[] bounds = new float[6 * 10];
+        for (int i = 0; i < 10; i++) {
+            bounds[6 * i] = i;
+            bounds[6 * i + 3] = i + 0.5f;
+            bounds[6 * i + 4] = 1;
+            bounds[6 * i + 5] = 1;
+        }
+        BVH bvh = new BVH(bounds, 10);
+
+        // The ray passes the bounds of the root, but misses every item
+        assertEquals(-1, bvh.findNearest(0.75f, 0.5f, -1, 0, 0, 1, 0, Float.POSITIVE_INFINITY, boundsTest(bvh)));
+        // No exact hit either
+        assertEquals(-1, bvh.findNearest(0.25f, 0.5f, -1, 0, 0, 1, 0, Float.POSITIVE_INFINITY,
+                (item, originX, originY, originZ, dirX, dirY, dirZ, tMin, tMax) -> Float.POSITIVE_INFINITY));
+        assertEquals(0, bvh.findNearest(0.25f, 0.5f, -1, 0, 0, 1, 0, Float.POSITIVE_INFINITY, boundsTest(bvh)));
+    }
+
+    /** Boxes on an integer grid, so that rays along the axes often run in the planes of their faces */
+    private static float[] randomBounds(Random random, int numItems) {
+        float[] bounds = new float[6 * numItems];
+        for (int i = 0; i < numItems; i++) {
+            randomBox(random, bounds, 6 * i);
+        }
+        return bounds;
+    }
+
+    private static void randomBox(Random random, float[] bounds, int offset) {
+        for (int axis = 0; axis < 3; axis++) {
+            bounds[offset + axis] = random.nextInt(20);
+            bounds[offset + 3 + axis] = bounds[offset + axis] + random.nextInt(4);
+        }
+    }
+
+    private static boolean overlaps(float[] bounds, int item, float[] box) {
+        for (int axis = 0; axis < 3; axis++) {
+            if (bounds[6 * item + axis] > box[3 + axis] || bounds[6 * item + 3 + axis] < box[axis]) return false;
+        }
+        return true;
+    }
+
+    /** Compares all queries of the BVH with a scan over all items, for random boxes and rays */
+    private static void assertMatchesBruteForce(BVH bvh, Random random) {
+        float[] bounds = bvh.getItemBounds();
+        int numItems = bvh.getNumItems();
+        int[] result = new int[numItems];
+        float[] box = new float[6];
+        BVH.BoxTest evenItems = (item, minX, minY, minZ, maxX, maxY, maxZ) -> item % 2 == 0;
+        for (int n = 0; n < 200; n++) {
+            randomBox(random, box, 0);
+            int[] expected = new int[numItems];
+            int numExpected = 0, numExpectedEven = 0;
+            for (int item = 0; item < numItems; item++) {
+                if (overlaps(bounds, item, box)) {
+                    expected[numExpected++] = item;
+                    if (item % 2 == 0) numExpectedEven++;
+                }
+            }
+
+            int numFound = bvh.query(box[0], box[1], box[2], box[3], box[4], box[5], result);
+            Arrays.sort(result, 0, numFound);
+            assertArrayEquals(Arrays.copyOf(expected, numExpected), Arrays.copyOf(result, numFound));
+
+            numFound = bvh.query(box[0], box[1], box[2], box[3], box[4], box[5], evenItems, result);
+            Arrays.sort(result, 0, numFound);
+            assertArrayEquals(Arrays.stream(expected, 0, numExpected).filter(item -> item % 2 == 0).toArray(), Arrays.copyOf(result, numFound));
+
+            int first = bvh.findFirst(box[0], box[1], box[2], box[3], box[4], box[5], evenItems);
+            if (numExpectedEven == 0) {
+                assertEquals(-1, first);
+            } else {
+                assertTrue("Item " + first, first % 2 == 0 && overlaps(bounds, first, box));
+            }
+        }
+
+        BVH.RayTest rayTest = boundsTest(bvh);
+        for (int n = 0; n < 200; n++) {
+            float originX = random.nextInt(24) - 2, originY = random.nextInt(24) - 2, originZ = random.nextInt(24) - 2;
+            float dirX = random.nextInt(3) - 1, dirY = random.nextInt(3) - 1, dirZ = random.nextInt(3) - 1;
+            if (n % 2 == 0) {
+                // Not only along axes and diagonals
+                dirX += random.nextFloat() - 0.5f;
+                dirY += random.nextFloat() - 0.5f;
+            }
+            if (dirX == 0 && dirY == 0 && dirZ == 0) dirZ = 1;
+            float tMax = n % 3 == 0 ? Float.POSITIVE_INFINITY : random.nextInt(30);
+
+            int expected = -1;
+            float nearestT = Float.POSITIVE_INFINITY;
+            for (int item = 0; item < numItems; item++) {
+                float t = rayTest.intersectRay(item, originX, originY, originZ, dirX, dirY, dirZ, 0, tMax);
+                if (t < nearestT) {
+                    nearestT = t;
+                    expected = item;
+                }
+            }
+            assertEquals("Ray " + n, expected,
+                    bvh.findNearest(originX, originY, originZ, dirX, dirY, dirZ, 0, tMax, rayTest));
+        }
+    }
+
+    @Test
+    public void queriesMatchBruteForce() {
+        Random random = new Random(7);
+        for (int numItems : new int[]{0, 1, 3, 4, 5, 100, 1000}) {
+            BVH bvh = new BVH(randomBounds(random, numItems), numItems);
+            assertMatchesBruteForce(bvh, random);
+        }
+    }
+
+    @Test
+    public void refitAndRebuildFollowMovedItems() {
+        Random random = new Random(11);
+        int numItems = 500;
+        BVH bvh = new BVH(randomBounds(random, numItems), numItems);
+
+        // Move some of the items, refit, and then move all of them and rebuild
+        for (int i = 0; i < numItems; i += 3) {
+            randomBox(random, bvh.getItemBounds(), 6 * i);
+        }
+        bvh.refit();
+        assertMatchesBruteForce(bvh, random);
+
+        for (int i = 0; i < numItems; i++) {
+            randomBox(random, bvh.getItemBounds(), 6 * i);
+        }
+        bvh.refit();
+        assertMatchesBruteForce(bvh, random);
+        bvh.rebuild();
+        assertMatchesBruteForce(bvh, random);
+    }
+}
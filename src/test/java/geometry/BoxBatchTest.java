@@ -0,0 +1,83 @@
+package geometry;
+
+import org.joml.Vector3f;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class BoxBatchTest {
+
+    /**
+     * Fills a batch with random boxes on a coarse grid, so that many boxes touch the geometries exactly
+     */
+    private static void fillRandom(BoxBatch boxes, Random random, int size) {
+        boxes.clear();
+        for (int i = 0; i < size; i++) {
+            float boxSize = 1 << random.nextInt(5);
+            float x = random.nextInt(40) - 4, y = random.nextInt(40) - 4, z = random.nextInt(40) - 4;
+            boxes.add(x, y, z, x + boxSize, y + boxSize, z + boxSize);
+        }
+    }
+
+    private static void assertBatchMatchesSingleTests(Geometry geometry) {
+        Random random = new Random(0);
+        BoxBatch boxes = new BoxBatch();
+        int numHits = 0;
+        for (int round = 0; round < 2000; round++) {
+            fillRandom(boxes, random, 1 + random.nextInt(BoxBatch.MAX_SIZE));
+            int mask = geometry.intersects(boxes);
+            int classifyMask = geometry.classify(boxes);
+            int solidMask = boxes.getSolidMask();
+            for (int i = 0; i < boxes.getSize(); i++) {
+                Geometry.Classification expected = geometry.classify(boxes.minX[i], boxes.minY[i], boxes.minZ[i], boxes.maxX[i], boxes.maxY[i], boxes.maxZ[i]);
+                boolean intersects = geometry.intersects(boxes.minX[i], boxes.minY[i], boxes.minZ[i], boxes.maxX[i], boxes.maxY[i], boxes.maxZ[i]);
+                assertEquals("Box " + i + " of round " + round, intersects, (mask >> i & 1) != 0);
+                assertEquals(expected != Geometry.Classification.EMPTY, (classifyMask >> i & 1) != 0);
+                assertEquals(expected == Geometry.Classification.SOLID, (solidMask >> i & 1) != 0);
+                if (intersects) numHits++;
+            }
+            if (boxes.getSize() < BoxBatch.MAX_SIZE) assertEquals(0, mask >>> boxes.getSize());
+        }
+        assertTrue(numHits > 0);
+    }
+
+    @Test
+    public void sphereBatchMatchesSingleTests() {
+        assertBatchMatchesSingleTests(new Sphere(new Vector3f(16), 12, new Vector3f(1)));
+    }
+
+    @Test
+    public void boxBatchMatchesSingleTests() {
+        assertBatchMatchesSingleTests(new Box(new Vector3f(8), new Vector3f(24, 20, 28), new Vector3f(1)));
+    }
+
+    @Test
+    public void lineBatchMatchesSingleTests() {
+        assertBatchMatchesSingleTests(new Line(new Vector3f(2, 3, 4), new Vector3f(30, 25, 4)));
+        // Parallel to two axes
+        assertBatchMatchesSingleTests(new Line(new Vector3f(8, 8, 0), new Vector3f(8, 8, 30)));
+    }
+
+    @Test
+    public void solidBatchMatchesSingleTests() {
+        assertBatchMatchesSingleTests(CSG.subtraction(
+                SignedDistanceField.sphere(new Vector3f(16), 14, new Vector3f(1)),
+                SignedDistanceField.box(new Vector3f(10), new Vector3f(20), new Vector3f(1))));
+    }
+
+    @Test
+    public void terrainBatchMatchesSingleTests() {
+        assertBatchMatchesSingleTests(new Terrain(new Vector3f(0), 32, 5, 24, 3, ForkJoinPool.commonPool(), new Vector3f(1)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void batchIsLimited() {
+        BoxBatch boxes = new BoxBatch();
+        for (int i = 0; i <= BoxBatch.MAX_SIZE; i++) {
+            boxes.add(0, 0, 0, 1, 1, 1);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package geometry;
+
+import core.SVO;
+import org.joml.Vector3f;
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static geometry.Geometry.Classification.*;
+import static org.junit.Assert.*;
+
+public class SignedDistanceFieldTest {
+
+    /** Counts the distance evaluations of a field */
+    private static class CountingField extends SignedDistanceField {
+        final SignedDistanceField field;
+        final AtomicLong evaluations = new AtomicLong();
+
+        CountingField(SignedDistanceField field) {
+            super(field.getColor());
+            this.field = field;
+        }
+
+        @Override
+        public float distance(float x, float y, float z) {
+            evaluations.incrementAndGet();
+            return field.distance(x, y, z);
+        }
+
+        @Override
+        public void getBounds(Vector3f min, Vector3f max) {
+            field.getBounds(min, max);
+        }
+    }
+
+    /** A rounded box with a hole through it and a ring around it */
+    private static SignedDistanceField createScene() {
+        Vector3f color = new Vector3f(1);
+        SignedDistanceField body = CSG.intersection(
+                SignedDistanceField.box(new Vector3f(20), new Vector3f(80), color),
+                SignedDistanceField.sphere(new Vector3f(50), 38, color));
+        SignedDistanceField hole = SignedDistanceField.box(new Vector3f(40, 0, 40), new Vector3f(60, 100, 60), color);
+        return CSG.union(CSG.subtraction(body, hole), SignedDistanceField.torus(new Vector3f(50), 40, 6, color));
+    }
+
+    @Test
+    public void classifyBoxes() {
+        SignedDistanceField sphere = SignedDistanceField.sphere(new Vector3f(0), 10, new Vector3f(1));
+        assertEquals(SOLID, sphere.classify(-2, -2, -2, 2, 2, 2));
+        assertEquals(EMPTY, sphere.classify(20, 20, 20, 22, 22, 22));
+        assertEquals(SURFACE, sphere.classify(8, -1, -1, 12, 1, 1));
+
+        SignedDistanceField box = SignedDistanceField.box(new Vector3f(-1, -1, -1), new Vector3f(1, 1, 1), new Vector3f(1));
+        assertEquals(0.5f, box.distance(1.5f, 0, 0), 1e-6f);
+        assertEquals(-0.5f, box.distance(0.5f, 0, 0), 1e-6f);
+
+        // A box inside the sphere but also inside the subtracted box is empty
+        CSG shell = CSG.subtraction(sphere, box);
+        assertEquals(EMPTY, shell.classify(-0.5f, -0.5f, -0.5f, 0.5f, 0.5f, 0.5f));
+        assertEquals(SOLID, shell.classify(4, 4, -1, 5, 5, 1));
+        assertEquals(SURFACE, shell.classify(0.5f, -0.5f, -0.5f, 1.5f, 0.5f, 0.5f));
+    }
+
+    @Test
+    public void prunedBuildMatchesVoxelClassification() {
+        SignedDistanceField scene = createScene();
+        SVO svo = new SVO(6, 100);
+        svo.getGeometries().add(scene);
+        svo.generateSVO();
+
+        // Every voxel is filled exactly when its own box is not empty, also inside nodes that were not subdivided
+        int resolution = 1 << svo.getMaxDepth();
+        float voxelSize = 100f / resolution;
+        int numFilled = 0;
+        for (int x = 0; x < resolution; x++) {
+            for (int y = 0; y < resolution; y++) {
+                for (int z = 0; z < resolution; z++) {
+                    boolean expected = scene.classify(x * voxelSize, y * voxelSize, z * voxelSize,
+                            (x + 1) * voxelSize, (y + 1) * voxelSize, (z + 1) * voxelSize) != EMPTY;
+                    assertEquals("Voxel " + x + ", " + y + ", " + z, expected, svo.lookup(x, y, z, svo.getMaxDepth()) != 0);
+                    if (expected) numFilled++;
+                }
+            }
+        }
+        assertTrue(numFilled > 0);
+    }
+
+    @Test
+    public void solidNodesAreNotSubdivided() {
+        CountingField field = new CountingField(SignedDistanceField.sphere(new Vector3f(50), 40, new Vector3f(1)));
+        SVO svo = new SVO(7, 100);
+        svo.getGeometries().add(field);
+        svo.generateSVO();
+
+        // The sphere fills over a quarter of the 2^21 voxels, but only the children of grids near the surface are evaluated
+        int resolution = 1 << svo.getMaxDepth();
+        int numFilled = 0;
+        for (int x = 0; x < resolution; x++) {
+            for (int y = 0; y < resolution; y++) {
+                for (int z = 0; z < resolution; z++) {
+                    if (svo.lookup(x, y, z, svo.getMaxDepth()) != 0) numFilled++;
+                }
+            }
+        }
+        assertTrue(numFilled > resolution * resolution * resolution / 4);
+        assertTrue("Evaluations: " + field.evaluations.get(), field.evaluations.get() < numFilled / 2);
+        assertTrue(field.evaluations.get() < 8L * svo.getIndirectionPool().size() + 8);
+    }
+
+    @Test
+    public void parallelBuildMatchesSerialBuild() {
+        SVO serial = new SVO(6, 100);
+        serial.getGeometries().add(createScene());
+        serial.generateSVO();
+        SVO parallel = new SVO(6, 100);
+        parallel.getGeometries().add(createScene());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            parallel.generateSVO(pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(serial.getIndirectionPool().size(), parallel.getIndirectionPool().size());
+        assertEquals(serial.getTextureData(), parallel.getTextureData());
+    }
+}
@@ -0,0 +1,104 @@
+package geometry;
+
+import core.SVO;
+import org.joml.Vector3f;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static geometry.Geometry.Classification.*;
+import static org.junit.Assert.*;
+
+public class TerrainTest {
+
+    private static Terrain createTerrain(int levels, long seed, ForkJoinPool pool) {
+        return new Terrain(new Vector3f(0), 100, levels, 50, seed, pool, new Vector3f(1));
+    }
+
+    @Test
+    public void generationIsDeterministic() {
+        Terrain serial, parallel, other;
+        ForkJoinPool serialPool = new ForkJoinPool(1), parallelPool = new ForkJoinPool(4);
+        try {
+            serial = createTerrain(7, 42, serialPool);
+            parallel = createTerrain(7, 42, parallelPool);
+            other = createTerrain(7, 43, parallelPool);
+        } finally {
+            serialPool.shutdown();
+            parallelPool.shutdown();
+        }
+        int numDifferent = 0;
+        float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+        for (int z = 0; z < serial.getResolution(); z++) {
+            for (int x = 0; x < serial.getResolution(); x++) {
+                assertEquals(serial.getHeight(x, z), parallel.getHeight(x, z), 0);
+                if (serial.getHeight(x, z) != other.getHeight(x, z)) numDifferent++;
+                min = Math.min(min, serial.getHeight(x, z));
+                max = Math.max(max, serial.getHeight(x, z));
+            }
+        }
+        assertTrue(numDifferent > 0);
+        assertTrue(min >= 0 && max <= 50 && max - min > 10);
+    }
+
+    @Test
+    public void classifyMatchesColumns() {
+        Terrain terrain = createTerrain(5, 1, ForkJoinPool.commonPool());
+        float columnSize = 100f / terrain.getResolution();
+        Random random = new Random(0);
+        int[] counts = new int[3];
+        for (int i = 0; i < 10000; i++) {
+            // Boxes of the octree, which each cover a square of columns
+            int size = 1 << random.nextInt(5);
+            int x0 = random.nextInt(terrain.getResolution() / size) * size, z0 = random.nextInt(terrain.getResolution() / size) * size;
+            float minY = random.nextInt(60), maxY = minY + random.nextInt(20) + 1;
+            float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+            for (int z = z0; z < z0 + size; z++) {
+                for (int x = x0; x < x0 + size; x++) {
+                    min = Math.min(min, terrain.getHeight(x, z));
+                    max = Math.max(max, terrain.getHeight(x, z));
+                }
+            }
+            Geometry.Classification expected = minY >= max ? EMPTY : maxY <= min ? SOLID : SURFACE;
+            Geometry.Classification classification = terrain.classify(x0 * columnSize, minY, z0 * columnSize,
+                    (x0 + size) * columnSize, maxY, (z0 + size) * columnSize);
+            assertEquals("Box " + i, expected, classification);
+            counts[classification.ordinal()]++;
+        }
+        for (int count : counts) assertTrue(count > 0);
+
+        // Boxes that are not aligned to the columns are classified conservatively
+        assertEquals(SURFACE, terrain.classify(-10, 0, -10, 110, 50, 110));
+        assertEquals(EMPTY, terrain.classify(-10, 50, -10, 110, 60, 110));
+        assertEquals(EMPTY, terrain.classify(110, 0, 0, 120, 10, 10));
+    }
+
+    @Test
+    public void buildMatchesColumnOccupancy() {
+        SVO svo = new SVO(6, 100);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            svo.generateTerrainScene(7, pool);
+            svo.generateSVO(pool);
+        } finally {
+            pool.shutdown();
+        }
+        Terrain terrain = (Terrain) svo.getGeometries().get(0);
+
+        // A voxel is filled when the bottom of the voxel is below the top of its column
+        int resolution = 1 << svo.getMaxDepth();
+        float voxelSize = 100f / resolution;
+        int numFilled = 0;
+        for (int x = 0; x < resolution; x++) {
+            for (int z = 0; z < resolution; z++) {
+                for (int y = 0; y < resolution; y++) {
+                    boolean expected = y * voxelSize < terrain.getHeight(x, z);
+                    assertEquals("Voxel " + x + ", " + y + ", " + z, expected, svo.lookup(x, y, z, svo.getMaxDepth()) != 0);
+                    if (expected) numFilled++;
+                }
+            }
+        }
+        assertTrue(numFilled > resolution * resolution);
+    }
+}
@@ -0,0 +1,196 @@
+package geometry;
+
+import core.SVO;
+import org.joml.Vector3f;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class TriangleMeshTest {
+
+    /** The 8 corners of a cube from min to max */
+    private static float[] cubeVertices(float min, float max) {
+        float[] vertices = new float[24];
+        for (int i = 0; i < 8; i++) {
+            vertices[3 * i] = (i & 1) == 0 ? min : max;
+            vertices[3 * i + 1] = (i & 2) == 0 ? min : max;
+            vertices[3 * i + 2] = (i & 4) == 0 ? min : max;
+        }
+        return vertices;
+    }
+
+    /** The 6 faces of the cube of {@link #cubeVertices} as quads */
+    private static final int[][] CUBE_FACES = {
+            { 0, 2, 3, 1 }, { 4, 5, 7, 6 }, { 0, 1, 5, 4 }, { 2, 6, 7, 3 }, { 0, 4, 6, 2 }, { 1, 3, 7, 5 }
+    };
+
+    private static int[] cubeTriangles() {
+        int[] triangles = new int[36];
+        for (int f = 0; f < 6; f++) {
+            int[] q = CUBE_FACES[f];
+            System.arraycopy(new int[] { q[0], q[1], q[2], q[0], q[2], q[3] }, 0, triangles, 6 * f, 6);
+        }
+        return triangles;
+    }
+
+    private static Path createTempFile(String suffix) throws IOException {
+        Path path = Files.createTempFile("mesh-test", suffix);
+        path.toFile().deleteOnExit();
+        return path;
+    }
+
+    @Test
+    public void triangleBoxOverlap() {
+        // Triangle in the plane z = 0.5, through the unit box
+        assertTrue(TriangleMesh.triangleIntersectsBox(-1, -1, 0.5f, 3, -1, 0.5f, -1, 3, 0.5f, 0, 0, 0, 1, 1, 1));
+        // Touching a face
+        assertTrue(TriangleMesh.triangleIntersectsBox(-1, -1, 1, 3, -1, 1, -1, 3, 1, 0, 0, 0, 1, 1, 1));
+        // Above the box
+        assertFalse(TriangleMesh.triangleIntersectsBox(-1, -1, 1.1f, 3, -1, 1.1f, -1, 3, 1.1f, 0, 0, 0, 1, 1, 1));
+        // Fully inside the box
+        assertTrue(TriangleMesh.triangleIntersectsBox(0.2f, 0.2f, 0.2f, 0.8f, 0.2f, 0.5f, 0.2f, 0.8f, 0.8f, 0, 0, 0, 1, 1, 1));
+        // The bounds overlap and the plane cuts the box, but an edge separates them: only a cross product axis finds it
+        assertFalse(TriangleMesh.triangleIntersectsBox(-0.5f, 0.5f, 0.5f, -0.5f, -0.5f, -0.5f, 0.5f, 0, -1, 0, 0, 0, 1, 1, 1));
+        // Plane of the triangle passes beside the box corner, although the bounds overlap
+        assertFalse(TriangleMesh.triangleIntersectsBox(2, 0, 0, 0, 2, 0, 0, 0, 2, -1, -1, -1, 0.5f, 0.5f, 0.5f));
+        assertTrue(TriangleMesh.triangleIntersectsBox(2, 0, 0, 0, 2, 0, 0, 0, 2, -1, -1, -1, 0.7f, 0.7f, 0.7f));
+    }
+
+    @Test
+    public void cubeMeshMatchesBoxGeometry() {
+        // The cube lies exactly on voxel boundaries, where both geometries count touching boxes as intersecting
+        SVO expected = new SVO(5, 100);
+        expected.getGeometries().add(new Box(new Vector3f(12.5f), new Vector3f(75), new Vector3f(1)));
+        expected.generateSVO();
+
+        SVO svo = new SVO(5, 100);
+        svo.getGeometries().add(new TriangleMesh(cubeVertices(12.5f, 75), cubeTriangles(), new Vector3f(1)));
+        svo.generateSVO();
+
+        assertEquals(expected.getIndirectionPool().size(), svo.getIndirectionPool().size());
+        assertEquals(expected.getTextureData(), svo.getTextureData());
+    }
+
+    @Test
+    public void parallelBuildMatchesSerialBuild() {
+        // Random triangles in a box, so the triangle index has many levels
+        Random random = new Random(0);
+        int numTriangles = 500;
+        float[] vertices = new float[9 * numTriangles];
+        for (int t = 0; t < numTriangles; t++) {
+            float x = 10 + 80 * random.nextFloat(), y = 10 + 80 * random.nextFloat(), z = 10 + 80 * random.nextFloat();
+            for (int v = 0; v < 3; v++) {
+                vertices[9 * t + 3 * v] = x + 8 * random.nextFloat();
+                vertices[9 * t + 3 * v + 1] = y + 8 * random.nextFloat();
+                vertices[9 * t + 3 * v + 2] = z + 8 * random.nextFloat();
+            }
+        }
+        int[] triangles = new int[3 * numTriangles];
+        Arrays.setAll(triangles, i -> i);
+        TriangleMesh mesh = new TriangleMesh(vertices, triangles, new Vector3f(1));
+
+        SVO serial = new SVO(6, 100);
+        serial.getGeometries().add(mesh);
+        serial.generateSVO();
+        SVO parallel = new SVO(6, 100);
+        parallel.getGeometries().add(mesh);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            parallel.generateSVO(pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(serial.getTextureData(), parallel.getTextureData());
+    }
+
+    @Test
+    public void loadOBJ() throws IOException {
+        Path path = createTempFile(".obj");
+        StringBuilder obj = new StringBuilder("# cube\no cube\n");
+        float[] vertices = cubeVertices(-1, 1);
+        for (int v = 0; v < 8; v++) {
+            obj.append("v ").append(vertices[3 * v]).append(' ').append(vertices[3 * v + 1]).append(' ').append(vertices[3 * v + 2]).append('\n');
+        }
+        obj.append("vn 0 0 1\n");
+        // One face with texture and normal indices, one with negative indices, the rest as plain quads
+        obj.append("f 1/1/1 3/1/1 4/1/1 2/1/1\n");
+        obj.append("f -4//1 -3//1 -1//1 -2//1\n");
+        for (int f = 2; f < 6; f++) {
+            int[] q = CUBE_FACES[f];
+            obj.append("f ").append(q[0] + 1).append(' ').append(q[1] + 1).append(' ').append(q[2] + 1).append(' ').append(q[3] + 1).append('\n');
+        }
+        Files.write(path, obj.toString().getBytes(StandardCharsets.UTF_8));
+
+        TriangleMesh mesh = TriangleMesh.load(path, new Vector3f(1));
+        assertArrayEquals(vertices, mesh.getVertices(), 0);
+        assertArrayEquals(cubeTriangles(), mesh.getTriangles());
+    }
+
+    @Test
+    public void loadPLY() throws IOException {
+        float[] vertices = cubeVertices(-1, 1);
+
+        // ASCII, with an extra vertex property and quads
+        StringBuilder ply = new StringBuilder("ply\nformat ascii 1.0\ncomment cube\nelement vertex 8\n"
+                + "property float x\nproperty float y\nproperty float z\nproperty uchar red\n"
+                + "element face 6\nproperty list uchar int vertex_indices\nend_header\n");
+        for (int v = 0; v < 8; v++) {
+            ply.append(vertices[3 * v]).append(' ').append(vertices[3 * v + 1]).append(' ').append(vertices[3 * v + 2]).append(" 255\n");
+        }
+        for (int[] q : CUBE_FACES) {
+            ply.append("4 ").append(q[0]).append(' ').append(q[1]).append(' ').append(q[2]).append(' ').append(q[3]).append('\n');
+        }
+        Path path = createTempFile(".ply");
+        Files.write(path, ply.toString().getBytes(StandardCharsets.US_ASCII));
+        TriangleMesh mesh = TriangleMesh.load(path, new Vector3f(1));
+        assertArrayEquals(vertices, mesh.getVertices(), 0);
+        assertArrayEquals(cubeTriangles(), mesh.getTriangles());
+
+        // Binary little endian, with double coordinates and triangles
+        byte[] header = ("ply\nformat binary_little_endian 1.0\nelement vertex 8\n"
+                + "property double x\nproperty double y\nproperty double z\n"
+                + "element face 12\nproperty list uchar uint vertex_indices\nend_header\n").getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer data = ByteBuffer.allocate(header.length + 8 * 24 + 12 * 13).order(ByteOrder.LITTLE_ENDIAN);
+        data.put(header);
+        for (float value : vertices) data.putDouble(value);
+        int[] triangles = cubeTriangles();
+        for (int t = 0; t < 12; t++) {
+            data.put((byte) 3).putInt(triangles[3 * t]).putInt(triangles[3 * t + 1]).putInt(triangles[3 * t + 2]);
+        }
+        Files.write(path, data.array());
+        mesh = TriangleMesh.load(path, new Vector3f(1));
+        assertArrayEquals(vertices, mesh.getVertices(), 0);
+        assertArrayEquals(triangles, mesh.getTriangles());
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidVertexIndicesAreRejected() throws IOException {
+        Path path = createTempFile(".obj");
+        Files.write(path, "v 0 0 0\nv 1 0 0\nv 0 1 0\nf 1 2 4\n".getBytes(StandardCharsets.UTF_8));
+        TriangleMesh.load(path, new Vector3f(1));
+    }
+
+    @Test
+    public void fitIntoCentersTheMesh() {
+        TriangleMesh mesh = new TriangleMesh(new float[] { 0, 0, 0, 4, 0, 0, 0, 2, 0 }, new int[] { 0, 1, 2 }, new Vector3f(1));
+        mesh.fitInto(new Vector3f(10), 8);
+        Vector3f min = new Vector3f(), max = new Vector3f();
+        mesh.getBounds(min, max);
+        assertArrayEquals(new float[] { 10, 12, 14 }, new float[] { min.x, min.y, min.z }, 0);
+        assertArrayEquals(new float[] { 18, 16, 14 }, new float[] { max.x, max.y, max.z }, 0);
+        // The triangle index follows the vertices
+        assertTrue(mesh.intersects(10, 12, 13, 11, 13, 15));
+        assertFalse(mesh.intersects(0, 0, 0, 1, 1, 1));
+    }
+}